@@ -0,0 +1,60 @@
+package gov.ihd.apiservice.batch;
+
+import gov.ihd.apiservice.benchmark.FeedbackDataGenerator;
+import gov.ihd.apiservice.model.FeedbackItem;
+import gov.ihd.apiservice.service.LocationResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-record work of {@link FeedbackItemProcessor}, without the id allocator and the
+ * progress reporting
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FeedbackItemProcessorBenchmark {
+
+    private static final int RECORDS = 1024;
+
+    private List<FeedbackItem> items;
+    private LocationResolver locationResolver;
+    private int next;
+    private long feedbackId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        items = new FeedbackDataGenerator(1, FeedbackDataGenerator.Profile.DEFAULT)
+                .items(RECORDS, FeedbackDataGenerator.objectMapper());
+        locationResolver = new LocationResolver(RECORDS);
+    }
+
+    private FeedbackItem nextItem() {
+        return items.get(next++ & (RECORDS - 1));
+    }
+
+    @Benchmark
+    public List<String> normalizeHashtags() {
+        return FeedbackItemProcessor.normalize(nextItem().getHashtags(), '#');
+    }
+
+    @Benchmark
+    public List<String> normalizeMentions() {
+        return FeedbackItemProcessor.normalize(nextItem().getMentions(), '@');
+    }
+
+    @Benchmark
+    public FeedbackBatchItem toBatchItem() {
+        return FeedbackItemProcessor.toBatchItem(nextItem(), feedbackId++, locationResolver);
+    }
+}
@@ -0,0 +1,75 @@
+package gov.ihd.apiservice.batch;
+
+import gov.ihd.apiservice.benchmark.FeedbackDataGenerator;
+import gov.ihd.apiservice.entity.FactFeedback;
+import gov.ihd.apiservice.model.FeedbackItem;
+import gov.ihd.apiservice.service.LocationResolver;
+import gov.ihd.apiservice.util.BridgeRowBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory part of {@link FeedbackItemWriter} for one chunk: dropping tweets that are
+ * already stored and collecting the bridge rows of the others
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FeedbackItemWriterBenchmark {
+
+    @Param({"250", "1000"})
+    private int chunkSize;
+
+    // Share of the chunk that is already stored
+    @Param({"0.0", "0.2"})
+    private double duplicateRatio;
+
+    private List<FeedbackBatchItem> chunk;
+    private List<String> existingTweetIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<FeedbackItem> items = new FeedbackDataGenerator(1, FeedbackDataGenerator.Profile.DEFAULT)
+                .items(chunkSize, FeedbackDataGenerator.objectMapper());
+        chunk = new ArrayList<>(chunkSize);
+        existingTweetIds = new ArrayList<>();
+        LocationResolver locationResolver = new LocationResolver(chunkSize);
+        long feedbackId = 0;
+        for (FeedbackItem item : items) {
+            FeedbackBatchItem batchItem = FeedbackItemProcessor.toBatchItem(item, feedbackId++, locationResolver);
+            // Dimension ids as DimensionResolutionWriter leaves them, made up
+            batchItem.setHashtagIds(batchItem.getHashtags().stream().mapToInt(String::hashCode).toArray());
+            batchItem.setAgencyIds(batchItem.getAgencyAccounts().stream().mapToInt(String::hashCode).toArray());
+            chunk.add(batchItem);
+            if (existingTweetIds.size() < chunkSize * duplicateRatio) {
+                existingTweetIds.add(item.getTweet_id());
+            }
+        }
+    }
+
+    @Benchmark
+    public void dedupAndMatchBridges(Blackhole blackhole) {
+        // Built from the query result on every chunk in the writer as well
+        List<FactFeedback> feedbacks = new ArrayList<>(chunk.size());
+        BridgeRowBuffer hashtagBridges = new BridgeRowBuffer(chunk.size() * 2);
+        BridgeRowBuffer agencyBridges = new BridgeRowBuffer(chunk.size());
+        FeedbackItemWriter.collect(chunk, new HashSet<>(existingTweetIds), feedbacks, hashtagBridges, agencyBridges);
+        blackhole.consume(feedbacks);
+        blackhole.consume(hashtagBridges);
+        blackhole.consume(agencyBridges);
+    }
+}
@@ -0,0 +1,87 @@
+package gov.ihd.apiservice.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import gov.ihd.apiservice.benchmark.FeedbackDataGenerator;
+import gov.ihd.apiservice.model.FeedbackItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of feedback records: one record with the reader the import step uses, and a
+ * whole NDJSON file through {@link NdjsonItemReader}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonParsingBenchmark {
+
+    private static final int RECORDS = 1024;
+
+    @Param({"12", "48"})
+    private int textWords;
+
+    @Param({"10000"})
+    private int fileRecords;
+
+    private ObjectReader reader;
+    private List<byte[]> records;
+    private Path file;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = FeedbackDataGenerator.objectMapper();
+        reader = objectMapper.readerFor(FeedbackItem.class);
+        FeedbackDataGenerator.Profile profile = FeedbackDataGenerator.Profile.DEFAULT.withTextWords(textWords);
+        records = new FeedbackDataGenerator(1, profile).encodedRecords(RECORDS, objectMapper);
+        file = Files.createTempFile("feedback-bench", ".ndjson");
+        new FeedbackDataGenerator(2, profile).writeFile(file, fileRecords, objectMapper);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public FeedbackItem parseRecord() throws IOException {
+        byte[] record = records.get(next++ & (RECORDS - 1));
+        return reader.readValue(record, 0, record.length);
+    }
+
+    /**
+     * Time for the whole file; divide by fileRecords for the time per record
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void readNdjsonFile(Blackhole blackhole) throws Exception {
+        NdjsonItemReader<FeedbackItem> itemReader = new NdjsonItemReader<>(file, reader, 4 * 1024 * 1024);
+        itemReader.setName("benchmarkReader");
+        itemReader.open(new ExecutionContext());
+        try {
+            FeedbackItem item;
+            while ((item = itemReader.read()) != null) {
+                blackhole.consume(item);
+            }
+        } finally {
+            itemReader.close();
+        }
+    }
+}
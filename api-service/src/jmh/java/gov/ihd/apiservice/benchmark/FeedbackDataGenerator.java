@@ -0,0 +1,271 @@
+package gov.ihd.apiservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.luben.zstd.ZstdOutputStream;
+import gov.ihd.apiservice.config.WebConfig;
+import gov.ihd.apiservice.model.FeedbackItem;
+import gov.ihd.apiservice.util.FileUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Deterministic generator of feedback records shaped like the uploaded files. Users,
+ * hashtags and agencies are drawn with a skew, so a few of them appear in most records as
+ * in real traffic; location strings come in the formats seen in user profiles. The same
+ * seed and profile always give the same records.
+ *
+ * <p>Also a command line tool writing a file for load tests:
+ * {@code FeedbackDataGenerator <out.ndjson|out.json>[.gz|.zst] <records> [seed] [days]}
+ */
+public class FeedbackDataGenerator {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private static final String[] CITIES = {"Cairo", "Alexandria", "Giza", "Riyadh", "Jeddah", "Dubai", "Abu Dhabi",
+            "Amman", "Beirut", "Casablanca", "Tunis", "Lagos", "Nairobi", "London", "Paris", "New York", "S\u00e3o Paulo"};
+    private static final String[] REGIONS = {"Cairo Governorate", "Makkah Province", "Ontario", "\u00cele-de-France", "NY"};
+    private static final String[] COUNTRIES = {"Egypt", "Saudi Arabia", "UAE", "Jordan", "Lebanon", "Morocco",
+            "Tunisia", "Nigeria", "Kenya", "UK", "France", "USA", "Brazil"};
+    private static final String[] WORDS = {"the", "service", "was", "slow", "today", "thanks", "please", "fix", "road",
+            "water", "outage", "again", "office", "queue", "permit", "clinic", "great", "support", "why", "still",
+            "\"broken\"", "#urgent", "@help", "\\n", "ok",
+            // Arabic words and emoji, so texts exercise multi-byte UTF-8
+            "\u0645\u0631\u062d\u0628\u0627", "\u0634\u0643\u0631\u0627", "\u0627\u0644\u062e\u062f\u0645\u0629", "\ud83d\ude21", "\ud83d\udc4d"};
+    private static final String[] LANGUAGES = {"en", "en", "en", "ar", "ar", "fr"};
+    private static final String[] PLATFORMS = {"twitter", "twitter", "twitter", "facebook", "instagram"};
+
+    /**
+     * Shape of the generated data
+     *
+     * @param users Distinct users
+     * @param hashtags Distinct hashtags
+     * @param agencies Distinct agency accounts
+     * @param issues Distinct issue ids
+     * @param textWords Average number of words in a text
+     * @param days Days between the first and the last created_at
+     */
+    public record Profile(int users, int hashtags, int agencies, int issues, int textWords, int days) {
+
+        public static final Profile DEFAULT = new Profile(5000, 500, 60, 40, 24, 365);
+
+        public Profile withTextWords(int textWords) {
+            return new Profile(users, hashtags, agencies, issues, textWords, days);
+        }
+
+        public Profile withDays(int days) {
+            return new Profile(users, hashtags, agencies, issues, textWords, days);
+        }
+    }
+
+    /**
+     * Records are created within profile.days() days from this instant
+     */
+    public static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final SplittableRandom random;
+    private final Profile profile;
+    private final String seedPrefix;
+    private long sequence = 0;
+
+    public FeedbackDataGenerator(long seed, Profile profile) {
+        this.random = new SplittableRandom(seed);
+        this.profile = profile;
+        this.seedPrefix = Long.toString(seed, 36) + "-";
+    }
+
+    /**
+     * The next record in upload format, as a JSON tree
+     */
+    public Map<String, Object> nextRecord() {
+        long id = sequence++;
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("tweet_id", seedPrefix + id);
+        record.put("text", text());
+        record.put("created_at", START.plusSeconds(random.nextLong(profile.days() * 86_400L)).format(TIMESTAMP));
+        record.put("platform", pick(PLATFORMS));
+        record.put("language", pick(LANGUAGES));
+        record.put("hashtags", names("#tag", profile.hashtags(), random.nextInt(4)));
+        record.put("mentions", names("@agency", profile.agencies(), random.nextInt(3)));
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("retweet_count", skewed(500));
+        metrics.put("reply_count", skewed(100));
+        metrics.put("like_count", skewed(2000));
+        metrics.put("quote_count", skewed(50));
+        metrics.put("bookmark_count", skewed(50));
+        metrics.put("impression_count", skewed(100_000));
+        record.put("metrics", metrics);
+
+        if (random.nextInt(10) < 8) {
+            int issueId = 1 + random.nextInt(profile.issues());
+            Map<String, Object> issueClass = new LinkedHashMap<>();
+            issueClass.put("issue_class_key", 1 + issueId % 8);
+            issueClass.put("issue_class_code", "IC" + (1 + issueId % 8));
+            Map<String, Object> issue = new LinkedHashMap<>();
+            issue.put("issue_id", issueId);
+            issue.put("issue_class", issueClass);
+            record.put("issue", issue);
+        }
+
+        int userId = skewed(profile.users());
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("user_id", "u" + userId);
+        user.put("username", "user_" + userId);
+        user.put("created_at", START.minusDays(30 + userId % 3000).format(TIMESTAMP));
+        user.put("followers_count", skewed(50_000));
+        user.put("following_count", skewed(2_000));
+        user.put("tweet_count", skewed(20_000));
+        user.put("listed_count", skewed(100));
+        user.put("location_string", locationString(userId));
+        record.put("user", user);
+        return record;
+    }
+
+    public List<Map<String, Object>> records(int count) {
+        List<Map<String, Object>> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(nextRecord());
+        }
+        return records;
+    }
+
+    /**
+     * Records serialized as single-line JSON, one byte array per record
+     */
+    public List<byte[]> encodedRecords(int count, ObjectMapper objectMapper) throws IOException {
+        ObjectWriter writer = objectMapper.writer();
+        List<byte[]> encoded = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            encoded.add(writer.writeValueAsBytes(nextRecord()));
+        }
+        return encoded;
+    }
+
+    /**
+     * Records decoded with the same reader configuration as the import step
+     */
+    public List<FeedbackItem> items(int count, ObjectMapper objectMapper) throws IOException {
+        List<FeedbackItem> items = new ArrayList<>(count);
+        for (byte[] record : encodedRecords(count, objectMapper)) {
+            items.add(objectMapper.readValue(record, FeedbackItem.class));
+        }
+        return items;
+    }
+
+    /**
+     * Write records to a file; a .json file gets a single array, anything else one record per line.
+     * A .gz or .zst suffix compresses the file, as in {@link FileUtils#openDecompressed}.
+     */
+    public void writeFile(Path file, int count, ObjectMapper objectMapper) throws IOException {
+        ObjectWriter writer = objectMapper.writer();
+        String name = file.getFileName().toString();
+        boolean array = FileUtils.isValidJsonFile(name) && !FileUtils.isNdjsonFile(name);
+        try (OutputStream out = new BufferedOutputStream(openCompressed(file), 1 << 16)) {
+            out.write(array ? "[\n".getBytes() : new byte[0]);
+            for (int i = 0; i < count; i++) {
+                if (array && i > 0) {
+                    out.write(",\n".getBytes());
+                }
+                out.write(writer.writeValueAsBytes(nextRecord()));
+                if (!array) {
+                    out.write('\n');
+                }
+            }
+            out.write(array ? "\n]\n".getBytes() : new byte[0]);
+        }
+    }
+
+    private static OutputStream openCompressed(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase();
+        OutputStream out = Files.newOutputStream(file);
+        try {
+            if (name.endsWith(".gz")) {
+                return new GZIPOutputStream(out, 1 << 16);
+            }
+            if (name.endsWith(".zst")) {
+                return new ZstdOutputStream(out);
+            }
+            return out;
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    public static ObjectMapper objectMapper() {
+        return new WebConfig().objectMapper();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: FeedbackDataGenerator <out.ndjson|out.json>[.gz|.zst] <records> [seed] [days]");
+            System.exit(2);
+        }
+        Path out = Path.of(args[0]);
+        int count = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1L;
+        Profile profile = args.length > 3 ? Profile.DEFAULT.withDays(Integer.parseInt(args[3])) : Profile.DEFAULT;
+        new FeedbackDataGenerator(seed, profile).writeFile(out, count, objectMapper());
+        System.out.printf("Wrote %d records to %s (%d bytes)%n", count, out, Files.size(out));
+    }
+
+    private String text() {
+        int words = Math.max(1, profile.textWords() / 2 + random.nextInt(profile.textWords() + 1));
+        StringBuilder text = new StringBuilder(words * 7);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(pick(WORDS));
+        }
+        return text.toString();
+    }
+
+    private String locationString(int userId) {
+        // Fixed per user, like a profile field
+        SplittableRandom userRandom = new SplittableRandom(userId);
+        String city = CITIES[userRandom.nextInt(CITIES.length)];
+        String country = COUNTRIES[userRandom.nextInt(COUNTRIES.length)];
+        return switch (userRandom.nextInt(10)) {
+            case 0 -> null;
+            case 1 -> country;
+            case 2 -> city + ", " + REGIONS[userRandom.nextInt(REGIONS.length)] + ", " + country;
+            case 3 -> "  " + city + " ,  " + country + " ";
+            case 4 -> city.toUpperCase() + ", " + country;
+            default -> city + ", " + country;
+        };
+    }
+
+    private List<String> names(String prefix, int distinct, int count) {
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(prefix + skewed(distinct));
+        }
+        return names;
+    }
+
+    /**
+     * A value in [0, bound) where small values are much more likely than large ones
+     */
+    private int skewed(int bound) {
+        double u = random.nextDouble();
+        return (int) (bound * u * u * u);
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,79 @@
+package gov.ihd.apiservice.service;
+
+import gov.ihd.apiservice.benchmark.FeedbackDataGenerator;
+import gov.ihd.apiservice.entity.DimLocation;
+import gov.ihd.apiservice.model.FeedbackItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning profile location strings into location rows with their key: the former split and
+ * trim of FeedbackItemProcessor, the single pass parse of {@link LocationResolver}, and
+ * resolve, which reuses the parse of a repeated string. The strings are those of the
+ * generated users, with their mix of formats and repetition.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LocationResolverBenchmark {
+
+    private static final int RECORDS = 4096;
+
+    private String[] locations;
+    private LocationResolver resolver;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<FeedbackItem> items = new FeedbackDataGenerator(1, FeedbackDataGenerator.Profile.DEFAULT)
+                .items(RECORDS, FeedbackDataGenerator.objectMapper());
+        locations = new String[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            String location = items.get(i).getUser().getLocation_string();
+            locations[i] = location != null ? location : "Cairo, Egypt";
+        }
+        resolver = new LocationResolver(RECORDS);
+    }
+
+    private String nextLocation() {
+        return locations[next++ & (RECORDS - 1)];
+    }
+
+    @Benchmark
+    public DimLocation legacySplit() {
+        String locationString = nextLocation();
+        DimLocation location = new DimLocation();
+        location.setLocationString(locationString);
+        if (locationString.contains(",")) {
+            String[] parts = locationString.split(",", 2);
+            location.setCity(parts[0].trim());
+            location.setCountry(parts[1].trim());
+        } else {
+            location.setCountry(locationString.trim());
+        }
+        // The key the writer then built for every record
+        location.setLocationKey(DimensionCacheService.locationKey(
+                location.getCountry(), location.getCity(), location.getRegion()));
+        return location;
+    }
+
+    @Benchmark
+    public DimLocation parse() {
+        return resolver.parse(nextLocation());
+    }
+
+    @Benchmark
+    public DimLocation resolve() {
+        return resolver.resolve(nextLocation());
+    }
+}
@@ -0,0 +1,63 @@
+package gov.ihd.apiservice.service;
+
+import gov.ihd.apiservice.entity.DimTime;
+import gov.ihd.apiservice.util.CalendarIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computing the calendar attributes of a dim_time row, and resolving a date to its time_id
+ * through the calendar index compared with the concurrent map of the former time cache
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimeServiceBenchmark {
+
+    private static final int DATES = 1024;
+
+    private LocalDate[] dates;
+    private CalendarIndex calendar;
+    private Map<LocalDate, Integer> timeIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dates = new LocalDate[DATES];
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < DATES; i++) {
+            dates[i] = start.plusDays(i);
+        }
+        timeIds = new ConcurrentHashMap<>();
+        for (LocalDate day = start; day.getYear() <= 2026; day = day.plusDays(1)) {
+            timeIds.put(day, timeIds.size() + 1);
+        }
+        calendar = CalendarIndex.of(2024, 2026, timeIds);
+    }
+
+    @Benchmark
+    public DimTime buildTimeForDate() {
+        return TimeService.buildTimeForDate(dates[next++ & (DATES - 1)]);
+    }
+
+    @Benchmark
+    public int calendarIndexLookup() {
+        return calendar.timeId(dates[next++ & (DATES - 1)]);
+    }
+
+    @Benchmark
+    public Integer concurrentMapLookup() {
+        return timeIds.get(dates[next++ & (DATES - 1)]);
+    }
+}
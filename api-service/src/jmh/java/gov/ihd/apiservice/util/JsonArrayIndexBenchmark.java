@@ -0,0 +1,83 @@
+package gov.ihd.apiservice.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.ihd.apiservice.benchmark.FeedbackDataGenerator;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scan throughput of {@link JsonArrayIndex} over a generated JSON array file of a few hundred
+ * MB, reported as megabytes per second in the megabytes counter; 1024 divided by it is the
+ * time per GB. A small mapping window measures the cost of carrying the scan across windows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class JsonArrayIndexBenchmark {
+
+    @Param({"512"})
+    private int fileMegabytes;
+
+    // Default mapping window, and one that splits the file into several windows
+    @Param({"1024", "64"})
+    private int windowMegabytes;
+
+    private Path file;
+    private long fileSize;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = FeedbackDataGenerator.objectMapper();
+        FeedbackDataGenerator generator = new FeedbackDataGenerator(1, FeedbackDataGenerator.Profile.DEFAULT);
+        int recordBytes = generator.encodedRecords(1000, objectMapper).stream().mapToInt(r -> r.length + 2).sum() / 1000;
+        file = Files.createTempFile("feedback-array-bench", ".json");
+        generator.writeFile(file, (int) ((long) fileMegabytes * (1 << 20) / recordBytes), objectMapper);
+        fileSize = Files.size(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public JsonArrayIndex buildIndex(ScannedBytes scanned) throws IOException {
+        JsonArrayIndex index = JsonArrayIndex.build(file, windowMegabytes << 20);
+        scanned.megabytes += fileSize / (double) (1 << 20);
+        return index;
+    }
+
+    /**
+     * Megabytes scanned, reported per second next to the index builds per second
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ScannedBytes {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+}
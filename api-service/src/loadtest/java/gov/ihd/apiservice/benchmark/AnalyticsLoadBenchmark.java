@@ -0,0 +1,321 @@
+package gov.ihd.apiservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.ihd.apiservice.ApiServiceApplication;
+import gov.ihd.apiservice.dto.JobStatus;
+import gov.ihd.apiservice.dto.ProcessingJobDto;
+import gov.ihd.apiservice.service.FileProcessingService;
+import gov.ihd.apiservice.service.JobProgressService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the analytics API under concurrent load. Imports one generated file into a
+ * fresh schema, starts the service on a random port and, for each concurrency level, lets
+ * that many virtual threads call the four report endpoints back to back for a while, in
+ * three modes: repeated queries served from the report cache, revalidation with
+ * If-None-Match, and random date ranges and languages that miss the cache. Results are
+ * written as JSON; a mode whose p99 latency is above its target fails the benchmark.
+ *
+ * <p>Options are {@code --name=value}, see {@link #DEFAULTS}; lists are comma separated.
+ */
+@Slf4j
+public class AnalyticsLoadBenchmark {
+
+    static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("records", "100000");
+        DEFAULTS.put("seed", "1");
+        DEFAULTS.put("days", "365");
+        DEFAULTS.put("concurrency", "8,64");
+        DEFAULTS.put("modes", "cached,revalidate,uncached");
+        DEFAULTS.put("warmup-seconds", "5");
+        DEFAULTS.put("duration-seconds", "20");
+        // p99 targets in milliseconds; uncached is the target for requests that miss the cache
+        DEFAULTS.put("p99-target-ms", "50");
+        DEFAULTS.put("uncached-p99-target-ms", "250");
+        DEFAULTS.put("timeout-minutes", "60");
+        DEFAULTS.put("init-scripts", "../database/init-scripts");
+        DEFAULTS.put("work-dir", "build/load");
+        DEFAULTS.put("out", "build/results/analytics/results.json");
+        DEFAULTS.put("jdbc-url", "");
+        DEFAULTS.put("username", "postgres");
+        DEFAULTS.put("password", "");
+        DEFAULTS.put("version", "unknown");
+    }
+
+    private static final String[] REPORTS = {"daily", "issues", "hashtags", "agencies"};
+    private static final String[] LANGUAGES = {null, "en", "ar", "fr"};
+
+    /**
+     * One mode at one concurrency level
+     *
+     * @param notModified Responses that were 304 Not Modified
+     * @param errors Responses other than 200 and 304, and failed requests
+     */
+    record ScenarioResult(String mode, int concurrency, long requests, long notModified, long errors,
+                          double requestsPerSecond, double p50Ms, double p99Ms, double maxMs,
+                          double p99TargetMs, boolean targetMet) {
+    }
+
+    record Report(String version, Instant startedAt, String database, String java, int cores, long seed,
+                  int records, long factRows, List<ScenarioResult> scenarios) {
+    }
+
+    private final Map<String, String> options;
+    private final ObjectMapper objectMapper = FeedbackDataGenerator.objectMapper();
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final Map<String, String> etags = new ConcurrentHashMap<>();
+
+    AnalyticsLoadBenchmark(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : null;
+            if (name == null || !DEFAULTS.containsKey(name)) {
+                System.err.println("Unknown option " + arg + "; options and defaults: " + DEFAULTS);
+                System.exit(2);
+            }
+            options.put(name, arg.substring(equals + 1));
+        }
+        System.exit(new AnalyticsLoadBenchmark(options).run() ? 0 : 1);
+    }
+
+    /**
+     * @return false if the import failed, a request failed or a p99 target was missed
+     */
+    boolean run() throws Exception {
+        Path workDir = Files.createDirectories(Path.of(options.get("work-dir")).toAbsolutePath());
+        Instant startedAt = Instant.now();
+        int records = Integer.parseInt(options.get("records"));
+        long seed = Long.parseLong(options.get("seed"));
+        List<ScenarioResult> results = new ArrayList<>();
+
+        try (BenchmarkDatabase database = options.get("jdbc-url").isBlank()
+                ? BenchmarkDatabase.embedded()
+                : BenchmarkDatabase.external(options.get("jdbc-url"), options.get("username"), options.get("password"))) {
+            database.initialize(Path.of(options.get("init-scripts")));
+            String databaseName = database.createRunDatabase();
+            Path uploadDir = Files.createDirectories(workDir.resolve("uploads-" + databaseName));
+
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(ApiServiceApplication.class)
+                    .run(applicationProperties(database, databaseName, uploadDir).entrySet().stream()
+                            .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                            .toArray(String[]::new));
+            long factRows;
+            try {
+                Path file = LoadBenchmark.dataFile(workDir, records, seed, Integer.parseInt(options.get("days")),
+                        "ndjson", objectMapper);
+                Path upload = Files.copy(file, uploadDir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                String jobId = context.getBean(FileProcessingService.class)
+                        .startProcessingJob(upload.toFile(), upload.getFileName().toString()).getJobId();
+                ProcessingJobDto job = LoadBenchmark.awaitJob(context.getBean(JobProgressService.class), jobId,
+                        Long.parseLong(options.get("timeout-minutes")));
+                if (job.getStatus() != JobStatus.COMPLETED) {
+                    log.error("Import failed: {}", job.getErrorMessage());
+                    return false;
+                }
+                factRows = job.getRecordsProcessed() != null ? job.getRecordsProcessed() : 0;
+
+                String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort()
+                        + "/api/v1/analytics/";
+                for (int concurrency : integers("concurrency")) {
+                    for (String mode : list("modes")) {
+                        ScenarioResult result = runScenario(baseUrl, mode, concurrency);
+                        log.info("{} x{}: {} requests, {} req/s, p50 {} ms, p99 {} ms (target {} ms), max {} ms, {} errors",
+                                mode, concurrency, result.requests(), round(result.requestsPerSecond()),
+                                round(result.p50Ms()), round(result.p99Ms()), round(result.p99TargetMs()),
+                                round(result.maxMs()), result.errors());
+                        results.add(result);
+                    }
+                }
+            } finally {
+                context.close();
+                database.dropDatabase(databaseName);
+            }
+
+            Report report = new Report(options.get("version"), startedAt, database.describe(),
+                    System.getProperty("java.version"), Runtime.getRuntime().availableProcessors(), seed,
+                    records, factRows, results);
+            Path out = Path.of(options.get("out")).toAbsolutePath();
+            Files.createDirectories(out.getParent());
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(out.toFile(), report);
+            log.info("Wrote {} scenarios to {}", results.size(), out);
+        }
+
+        boolean ok = true;
+        for (ScenarioResult result : results) {
+            if (!result.targetMet() || result.errors() > 0) {
+                log.error("MISSED {} x{}: p99 {} ms against a target of {} ms, {} errors", result.mode(),
+                        result.concurrency(), round(result.p99Ms()), round(result.p99TargetMs()), result.errors());
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    private ScenarioResult runScenario(String baseUrl, String mode, int concurrency) throws Exception {
+        // Warm up with the same load, then measure
+        runClients(baseUrl, mode, concurrency, Long.parseLong(options.get("warmup-seconds")));
+        long seconds = Long.parseLong(options.get("duration-seconds"));
+        List<ClientResult> clients = runClients(baseUrl, mode, concurrency, seconds);
+
+        long requests = clients.stream().mapToLong(client -> client.count).sum();
+        long[] latencies = new long[(int) requests];
+        int offset = 0;
+        for (ClientResult client : clients) {
+            System.arraycopy(client.latencies, 0, latencies, offset, client.count);
+            offset += client.count;
+        }
+        Arrays.sort(latencies);
+        double target = Double.parseDouble(options.get(mode.equals("uncached") ? "uncached-p99-target-ms" : "p99-target-ms"));
+        double p99 = percentileMs(latencies, 0.99);
+        return new ScenarioResult(mode, concurrency, requests,
+                clients.stream().mapToLong(client -> client.notModified).sum(),
+                clients.stream().mapToLong(client -> client.errors).sum(),
+                requests / (double) seconds, percentileMs(latencies, 0.5), p99,
+                latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6, target, p99 <= target);
+    }
+
+    private List<ClientResult> runClients(String baseUrl, String mode, int concurrency, long seconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<ClientResult>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                SplittableRandom random = new SplittableRandom(i);
+                futures.add(executor.submit(() -> runClient(baseUrl, mode, random, deadline)));
+            }
+        }
+        List<ClientResult> clients = new ArrayList<>();
+        for (Future<ClientResult> future : futures) {
+            clients.add(future.get());
+        }
+        return clients;
+    }
+
+    private ClientResult runClient(String baseUrl, String mode, SplittableRandom random, long deadline) {
+        ClientResult result = new ClientResult();
+        while (System.nanoTime() < deadline) {
+            String url = baseUrl + query(mode, random);
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url)).GET();
+            String etag = mode.equals("revalidate") ? etags.get(url) : null;
+            if (etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            long start = System.nanoTime();
+            try {
+                HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+                result.add(System.nanoTime() - start);
+                if (response.statusCode() == 304) {
+                    result.notModified++;
+                } else if (response.statusCode() != 200) {
+                    result.errors++;
+                } else if (mode.equals("revalidate")) {
+                    response.headers().firstValue("ETag").ifPresent(value -> etags.put(url, value));
+                }
+            } catch (Exception e) {
+                result.errors++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A report and its filters: one of a few fixed queries per report when the cache should
+     * answer, otherwise a random date range and language
+     */
+    private String query(String mode, SplittableRandom random) {
+        String report = REPORTS[random.nextInt(REPORTS.length)];
+        LocalDate first = FeedbackDataGenerator.START.toLocalDate();
+        int days = Integer.parseInt(options.get("days"));
+        if (!mode.equals("uncached")) {
+            int month = random.nextInt(Math.max(days / 31, 1));
+            return report + "?from=" + first.plusMonths(month) + "&to=" + first.plusMonths(month + 1).minusDays(1);
+        }
+        int from = random.nextInt(days);
+        int to = from + random.nextInt(days - from);
+        String language = LANGUAGES[random.nextInt(LANGUAGES.length)];
+        return report + "?from=" + first.plusDays(from) + "&to=" + first.plusDays(to)
+                + (language != null ? "&language=" + language : "");
+    }
+
+    private Map<String, Object> applicationProperties(BenchmarkDatabase database, String databaseName, Path uploadDir) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url", database.urlOf(databaseName));
+        properties.put("spring.datasource.username", database.getUsername());
+        properties.put("spring.datasource.password", database.getPassword());
+        properties.put("app.upload.dir", uploadDir.toString());
+        properties.put("app.batch.writer", "copy");
+        properties.put("server.port", 0);
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level." + AnalyticsLoadBenchmark.class.getPackageName(), "INFO");
+        return properties;
+    }
+
+    private static double percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    private List<String> list(String option) {
+        return Arrays.stream(options.get(option).split(",")).map(String::trim).filter(value -> !value.isEmpty()).toList();
+    }
+
+    private List<Integer> integers(String option) {
+        return list(option).stream().map(Integer::parseInt).toList();
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    /**
+     * Latencies of one client thread, in nanoseconds
+     */
+    private static final class ClientResult {
+        long[] latencies = new long[1024];
+        int count;
+        long notModified;
+        long errors;
+
+        void add(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+    }
+}
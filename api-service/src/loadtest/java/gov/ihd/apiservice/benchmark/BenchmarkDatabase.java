@@ -0,0 +1,144 @@
+package gov.ihd.apiservice.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * PostgreSQL server for load runs: an embedded server, or an existing one given by the JDBC
+ * URL of a database the user may create databases from. A template database is initialized
+ * once from database/init-scripts and every run gets a fresh copy of it, so runs do not see
+ * each other's rows.
+ */
+@Slf4j
+public class BenchmarkDatabase implements AutoCloseable {
+
+    private static final String TEMPLATE = "ihd_bench_template";
+    private static final String SCHEMA_PARAMETER = "currentSchema=ihd_analytics,public";
+
+    private final EmbeddedPostgres embedded;
+    private final String adminUrl;
+    private final String username;
+    private final String password;
+    private int runs = 0;
+
+    private BenchmarkDatabase(EmbeddedPostgres embedded, String adminUrl, String username, String password) {
+        this.embedded = embedded;
+        this.adminUrl = adminUrl;
+        this.username = username;
+        this.password = password;
+    }
+
+    public static BenchmarkDatabase embedded() throws IOException {
+        EmbeddedPostgres postgres = EmbeddedPostgres.builder()
+                .setServerConfig("max_connections", "200")
+                .setServerConfig("shared_buffers", "512MB")
+                .start();
+        log.info("Started embedded PostgreSQL on port {}", postgres.getPort());
+        return new BenchmarkDatabase(postgres, postgres.getJdbcUrl("postgres", "postgres"), "postgres", "");
+    }
+
+    public static BenchmarkDatabase external(String adminUrl, String username, String password) {
+        return new BenchmarkDatabase(null, adminUrl, username, password);
+    }
+
+    /**
+     * Create the template database from the init scripts, replacing an older one
+     */
+    public void initialize(Path initScripts) throws IOException, SQLException {
+        List<Path> scripts;
+        try (Stream<Path> files = Files.list(initScripts)) {
+            scripts = files.filter(file -> file.toString().endsWith(".sql")).sorted().toList();
+        }
+        try (Connection connection = connect(adminUrl); Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS " + TEMPLATE);
+            statement.execute("CREATE DATABASE " + TEMPLATE);
+            // The scripts grant privileges to the application role
+            statement.execute("DO $$ BEGIN CREATE ROLE ihd_user LOGIN PASSWORD 'ihd_password'; "
+                    + "EXCEPTION WHEN duplicate_object THEN NULL; END $$");
+        }
+        try (Connection connection = connect(serverUrl() + TEMPLATE); Statement statement = connection.createStatement()) {
+            for (Path script : scripts) {
+                log.info("Running {}", script.getFileName());
+                // One session per script, like psql in the image entrypoint; the driver splits
+                // the script into statements and understands dollar quoting
+                statement.execute(Files.readString(script));
+                statement.execute("RESET search_path");
+            }
+        }
+    }
+
+    /**
+     * Create a database for one run as a copy of the template
+     *
+     * @return The name of the database
+     */
+    public String createRunDatabase() throws SQLException {
+        String name = "ihd_bench_run_" + (++runs);
+        try (Connection connection = connect(adminUrl); Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS " + name);
+            statement.execute("CREATE DATABASE " + name + " TEMPLATE " + TEMPLATE);
+        }
+        return name;
+    }
+
+    public void dropDatabase(String name) throws SQLException {
+        try (Connection connection = connect(adminUrl); Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS " + name + " WITH (FORCE)");
+        }
+    }
+
+    /**
+     * JDBC URL of a database on this server, with the search path the application expects
+     */
+    public String urlOf(String database) {
+        return serverUrl() + database + "?" + SCHEMA_PARAMETER;
+    }
+
+    private String serverUrl() {
+        String base = describe();
+        return base.substring(0, base.lastIndexOf('/') + 1);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * Where the runs went, without credentials
+     */
+    public String describe() {
+        int query = adminUrl.indexOf('?');
+        return query >= 0 ? adminUrl.substring(0, query) : adminUrl;
+    }
+
+    private Connection connect(String url) throws SQLException {
+        Connection connection = DriverManager.getConnection(url, username, password);
+        connection.setAutoCommit(true);
+        return connection;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (embedded == null) {
+            try (Connection connection = connect(adminUrl); Statement statement = connection.createStatement()) {
+                statement.execute("DROP DATABASE IF EXISTS " + TEMPLATE);
+            }
+        } else {
+            embedded.close();
+        }
+    }
+}
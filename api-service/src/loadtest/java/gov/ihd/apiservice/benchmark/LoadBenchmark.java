@@ -0,0 +1,373 @@
+package gov.ihd.apiservice.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.ihd.apiservice.ApiServiceApplication;
+import gov.ihd.apiservice.dto.JobStatus;
+import gov.ihd.apiservice.dto.ProcessingJobDto;
+import gov.ihd.apiservice.service.FileProcessingService;
+import gov.ihd.apiservice.service.IngestionMetrics;
+import gov.ihd.apiservice.service.JobProgressService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load benchmark of importFeedbackJob. Generates files with
+ * {@link FeedbackDataGenerator} in each format, then imports each of them once per
+ * combination of writer, executor mode, chunk size, thread count, partition grouping and
+ * presorting. Every run starts a fresh application context on a fresh copy of the schema and
+ * submits the file the way an upload does, timing it from submission until the job is done
+ * and recording the peak heap meanwhile. Results are written as JSON; given the results of an
+ * earlier version, runs whose throughput dropped by more than the tolerance are reported and
+ * the benchmark exits with status 1.
+ *
+ * <p>Options are {@code --name=value}, see {@link #DEFAULTS}; lists are comma separated.
+ */
+@Slf4j
+public class LoadBenchmark {
+
+    static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("records", "10000,100000,1000000");
+        DEFAULTS.put("writers", "jpa,copy,staging");
+        // app.executor.mode; virtual needs Java 21
+        DEFAULTS.put("executor-modes", "platform,virtual");
+        DEFAULTS.put("chunk-sizes", "250,1000");
+        DEFAULTS.put("thread-counts", "8");
+        // app.batch.group-by-partition and app.batch.presort; compare both ways on files whose
+        // dates spread over many months, e.g. --days=1095
+        DEFAULTS.put("group-by-partition", "true");
+        DEFAULTS.put("presort", "false");
+        // File formats as upload suffixes; ndjson.gz and ndjson.zst measure decompression
+        DEFAULTS.put("formats", "ndjson");
+        DEFAULTS.put("seed", "1");
+        DEFAULTS.put("days", "365");
+        // Imported once before the measured runs so they all see a warm JVM; 0 skips it
+        DEFAULTS.put("warmup-records", "10000");
+        DEFAULTS.put("timeout-minutes", "60");
+        DEFAULTS.put("init-scripts", "../database/init-scripts");
+        DEFAULTS.put("work-dir", "build/load");
+        DEFAULTS.put("out", "build/results/load/results.json");
+        // JDBC URL of a database on an existing server to create the run databases from;
+        // empty starts an embedded server
+        DEFAULTS.put("jdbc-url", "");
+        DEFAULTS.put("username", "postgres");
+        DEFAULTS.put("password", "");
+        DEFAULTS.put("baseline", "");
+        DEFAULTS.put("tolerance", "0.10");
+        DEFAULTS.put("version", "unknown");
+    }
+
+    /**
+     * One import
+     *
+     * @param recordsPerSecond Records written per second of wall time
+     * @param chunkP50Ms Median time of a chunk including its commit
+     * @param factRows Rows in fact_feedback after the run
+     * @param fileBytes Size of the imported file as stored
+     * @param peakHeapMb Peak heap use from submission until the job was done, see {@link HeapPeak}
+     */
+    record RunResult(String writer, String executorMode, int chunkSize, int threadCount, Boolean groupByPartition,
+                     Boolean presort, int records, String format, long fileBytes, String status, String errorMessage,
+                     long recordsWritten, long factRows,
+                     double seconds, double recordsPerSecond, long chunks, double chunkP50Ms, double chunkP99Ms,
+                     double peakHeapMb, StatementCounter.Counts statements) {
+
+        /**
+         * Results of versions without a setting have it unset and match runs with its default
+         */
+        String key() {
+            return writer + "/" + executorMode + "/chunk=" + chunkSize + "/threads=" + threadCount
+                    + (Boolean.FALSE.equals(groupByPartition) ? "/ungrouped" : "")
+                    + (Boolean.TRUE.equals(presort) ? "/presort" : "")
+                    + (format != null && !format.equals("ndjson") ? "/" + format : "")
+                    + "/records=" + records;
+        }
+    }
+
+    record Report(String version, Instant startedAt, String database, String java, int cores, long seed,
+                  List<String> formats, List<RunResult> runs) {
+    }
+
+    private final Map<String, String> options;
+    private final ObjectMapper objectMapper = FeedbackDataGenerator.objectMapper();
+
+    LoadBenchmark(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : null;
+            if (name == null || !DEFAULTS.containsKey(name)) {
+                System.err.println("Unknown option " + arg + "; options and defaults: " + DEFAULTS);
+                System.exit(2);
+            }
+            options.put(name, arg.substring(equals + 1));
+        }
+        System.exit(new LoadBenchmark(options).run() ? 0 : 1);
+    }
+
+    /**
+     * @return false if a run failed or regressed against the baseline
+     */
+    boolean run() throws Exception {
+        Path workDir = Path.of(options.get("work-dir")).toAbsolutePath();
+        Files.createDirectories(workDir);
+        Instant startedAt = Instant.now();
+        List<RunResult> results = new ArrayList<>();
+
+        try (BenchmarkDatabase database = options.get("jdbc-url").isBlank()
+                ? BenchmarkDatabase.embedded()
+                : BenchmarkDatabase.external(options.get("jdbc-url"), options.get("username"), options.get("password"))) {
+            database.initialize(Path.of(options.get("init-scripts")));
+
+            List<String> writers = list("writers");
+            List<String> executorModes = list("executor-modes");
+            List<Integer> chunkSizes = integers("chunk-sizes");
+            List<Integer> threadCounts = integers("thread-counts");
+            List<Boolean> groupings = booleans("group-by-partition");
+            List<Boolean> presorts = booleans("presort");
+            List<String> formats = list("formats");
+
+            int warmupRecords = Integer.parseInt(options.get("warmup-records"));
+            if (warmupRecords > 0) {
+                log.info("Warming up with {} records", warmupRecords);
+                runOnce(database, workDir, dataFile(workDir, warmupRecords, formats.get(0)), formats.get(0), writers.get(0),
+                        executorModes.get(0), chunkSizes.get(0), threadCounts.get(0), groupings.get(0), presorts.get(0),
+                        warmupRecords);
+            }
+
+            for (int records : integers("records")) {
+                for (String format : formats) {
+                    Path file = dataFile(workDir, records, format);
+                    for (String writer : writers) {
+                        for (String executorMode : executorModes) {
+                            for (int chunkSize : chunkSizes) {
+                                for (int threadCount : threadCounts) {
+                                    for (boolean groupByPartition : groupings) {
+                                        for (boolean presort : presorts) {
+                                            RunResult result = runOnce(database, workDir, file, format, writer,
+                                                    executorMode, chunkSize, threadCount, groupByPartition, presort,
+                                                    records);
+                                            log.info("{}: {} in {} s, {} records/s from {} MB, chunk p50 {} ms p99 {} ms, "
+                                                            + "peak heap {} MB, {}",
+                                                    result.key(), result.status(), round(result.seconds()),
+                                                    round(result.recordsPerSecond()), round(result.fileBytes() / 1048576.0),
+                                                    round(result.chunkP50Ms()), round(result.chunkP99Ms()),
+                                                    round(result.peakHeapMb()), result.statements());
+                                            results.add(result);
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+
+            Report report = new Report(options.get("version"), startedAt, database.describe(),
+                    System.getProperty("java.version"), Runtime.getRuntime().availableProcessors(),
+                    Long.parseLong(options.get("seed")), formats, results);
+            Path out = Path.of(options.get("out")).toAbsolutePath();
+            Files.createDirectories(out.getParent());
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(out.toFile(), report);
+            log.info("Wrote {} runs to {}", results.size(), out);
+        }
+
+        boolean ok = results.stream().allMatch(result -> result.status().equals(JobStatus.COMPLETED.name()));
+        if (!options.get("baseline").isBlank()) {
+            ok &= compare(results, Path.of(options.get("baseline")), Double.parseDouble(options.get("tolerance")));
+        }
+        return ok;
+    }
+
+    private RunResult runOnce(BenchmarkDatabase database, Path workDir, Path file, String format, String writer,
+                              String executorMode, int chunkSize, int threadCount, boolean groupByPartition,
+                              boolean presort, int records) throws Exception {
+        String databaseName = database.createRunDatabase();
+        Path uploadDir = Files.createDirectories(workDir.resolve("uploads-" + databaseName));
+        StatementCounter statementCounter = new StatementCounter();
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ApiServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(applicationContext -> applicationContext.getBeanFactory().addBeanPostProcessor(statementCounter))
+                // As arguments, so they take precedence over application.properties
+                .run(applicationProperties(database, databaseName, uploadDir, writer, executorMode, chunkSize, threadCount,
+                        groupByPartition, presort)
+                        .entrySet().stream().map(property -> "--" + property.getKey() + "=" + property.getValue())
+                        .toArray(String[]::new));
+        try {
+            FileProcessingService fileProcessingService = context.getBean(FileProcessingService.class);
+            JobProgressService jobProgressService = context.getBean(JobProgressService.class);
+
+            // The job owns the file in the upload directory, like an uploaded one
+            Path upload = Files.copy(file, uploadDir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            statementCounter.reset();
+            String jobId;
+            ProcessingJobDto job;
+            double seconds;
+            double peakHeapMb;
+            try (HeapPeak heapPeak = new HeapPeak()) {
+                long start = System.nanoTime();
+                jobId = fileProcessingService.startProcessingJob(upload.toFile(), upload.getFileName().toString()).getJobId();
+                job = awaitJob(jobProgressService, jobId, Long.parseLong(options.get("timeout-minutes")));
+                seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+                peakHeapMb = heapPeak.peakMegabytes();
+            }
+            StatementCounter.Counts statements = statementCounter.snapshot();
+
+            Timer chunkTimer = context.getBean(MeterRegistry.class).find(IngestionMetrics.PREFIX + ".chunk")
+                    .tag("jobId", jobId).timer();
+            HistogramSnapshot chunks = chunkTimer != null ? chunkTimer.takeSnapshot() : HistogramSnapshot.empty(0, 0, 0);
+            Long factRows = context.getBean(JdbcTemplate.class)
+                    .queryForObject("SELECT count(*) FROM ihd_analytics.fact_feedback", Long.class);
+            long recordsWritten = job.getRecordsProcessed() != null ? job.getRecordsProcessed() : 0;
+
+            return new RunResult(writer, executorMode, chunkSize, threadCount, groupByPartition, presort, records,
+                    format, Files.size(file), job.getStatus().name(), job.getErrorMessage(), recordsWritten,
+                    factRows != null ? factRows : 0,
+                    seconds, recordsWritten / seconds, chunks.count(),
+                    percentile(chunks, 0.5), percentile(chunks, 0.99), peakHeapMb, statements);
+        } finally {
+            context.close();
+            database.dropDatabase(databaseName);
+        }
+    }
+
+    private Map<String, Object> applicationProperties(BenchmarkDatabase database, String databaseName, Path uploadDir,
+                                                      String writer, String executorMode, int chunkSize, int threadCount,
+                                                      boolean groupByPartition, boolean presort) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url", database.urlOf(databaseName));
+        properties.put("spring.datasource.username", database.getUsername());
+        properties.put("spring.datasource.password", database.getPassword());
+        properties.put("app.upload.dir", uploadDir.toString());
+        properties.put("app.batch.writer", writer);
+        properties.put("app.executor.mode", executorMode);
+        properties.put("app.batch.chunk-size", chunkSize);
+        properties.put("app.batch.thread-count", threadCount);
+        properties.put("app.batch.grid-size", threadCount);
+        properties.put("app.batch.group-by-partition", groupByPartition);
+        properties.put("app.batch.presort", presort);
+        // Leave room for every worker next to the job threads
+        int connections = Math.max(24, threadCount + 2);
+        properties.put("app.jobs.max-db-connections", connections);
+        properties.put("spring.datasource.hikari.maximum-pool-size", Math.max(32, connections + 4));
+        // Chunk percentiles over the whole run rather than the last few minutes
+        String chunkMeter = IngestionMetrics.PREFIX + ".chunk";
+        properties.put("management.metrics.distribution.percentiles." + chunkMeter, "0.5,0.99");
+        properties.put("management.metrics.distribution.expiry." + chunkMeter, "24h");
+        properties.put("management.metrics.distribution.buffer-length." + chunkMeter, "1");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level." + LoadBenchmark.class.getPackageName(), "INFO");
+        return properties;
+    }
+
+    static ProcessingJobDto awaitJob(JobProgressService jobProgressService, String jobId, long timeoutMinutes)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(timeoutMinutes);
+        while (true) {
+            ProcessingJobDto job = jobProgressService.getJobStatus(jobId);
+            if (job.getStatus() == JobStatus.COMPLETED || job.getStatus() == JobStatus.FAILED) {
+                return job;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Job " + jobId + " did not finish within " + timeoutMinutes + " minutes");
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private Path dataFile(Path workDir, int records, String format) throws IOException {
+        return dataFile(workDir, records, Long.parseLong(options.get("seed")), Integer.parseInt(options.get("days")),
+                format, objectMapper);
+    }
+
+    /**
+     * The generated file for a record count, created on first use and kept in the work directory
+     */
+    static Path dataFile(Path workDir, int records, long seed, int days, String format, ObjectMapper objectMapper)
+            throws IOException {
+        Path file = workDir.resolve("feedback-" + records + "-s" + seed + "-d" + days + "." + format);
+        if (!Files.exists(file)) {
+            log.info("Generating {}", file);
+            Path partial = workDir.resolve(file.getFileName() + ".part." + format);
+            new FeedbackDataGenerator(seed, FeedbackDataGenerator.Profile.DEFAULT.withDays(days))
+                    .writeFile(partial, records, objectMapper);
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return file;
+    }
+
+    private boolean compare(List<RunResult> results, Path baselineFile, double tolerance) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        JsonNode report = objectMapper.readTree(baselineFile.toFile());
+        for (JsonNode run : report.path("runs")) {
+            RunResult result = objectMapper.treeToValue(run, RunResult.class);
+            baseline.put(result.key(), result.recordsPerSecond());
+        }
+        boolean ok = true;
+        for (RunResult result : results) {
+            Double before = baseline.get(result.key());
+            if (before == null || before <= 0) {
+                continue;
+            }
+            double change = result.recordsPerSecond() / before - 1;
+            boolean regressed = change < -tolerance;
+            ok &= !regressed;
+            log.info("{} {}: {} records/s against {} in {} ({}%)", regressed ? "REGRESSION" : "ok", result.key(),
+                    round(result.recordsPerSecond()), round(before), report.path("version").asText(), round(change * 100));
+        }
+        return ok;
+    }
+
+    private static double percentile(HistogramSnapshot snapshot, double percentile) {
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            if (value.percentile() == percentile) {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return 0;
+    }
+
+    private List<String> list(String option) {
+        return Arrays.stream(options.get(option).split(",")).map(String::trim).filter(value -> !value.isEmpty()).toList();
+    }
+
+    private List<Integer> integers(String option) {
+        return list(option).stream().map(Integer::parseInt).toList();
+    }
+
+    private List<Boolean> booleans(String option) {
+        return list(option).stream().map(Boolean::parseBoolean).toList();
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
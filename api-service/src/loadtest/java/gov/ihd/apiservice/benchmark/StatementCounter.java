@@ -0,0 +1,137 @@
+package gov.ihd.apiservice.benchmark;
+
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the JDBC round trips of the application by wrapping its DataSource. Connections and
+ * statements are JDK proxies that count and delegate, so the pool, Hibernate and the COPY
+ * writers work unchanged. COPY itself goes through the driver's API and is not visible here;
+ * connections unwrapped to {@link PGConnection} are counted instead, one per COPY writer call.
+ */
+public class StatementCounter implements BeanPostProcessor {
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedStatements = new LongAdder();
+    private final LongAdder copyConnections = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+
+    /**
+     * Counts of one run
+     *
+     * @param queries Statements returning rows
+     * @param updates Other statements run one at a time (execute, executeUpdate)
+     * @param batches executeBatch calls
+     * @param batchedStatements Statements added to those batches
+     * @param copyConnections Connections unwrapped for the COPY API
+     * @param commits Committed transactions
+     */
+    public record Counts(long queries, long updates, long batches, long batchedStatements,
+                         long copyConnections, long commits) {
+
+        /**
+         * Round trips to the server, counting a batch as one
+         */
+        public long roundTrips() {
+            return queries + updates + batches + commits;
+        }
+    }
+
+    public Counts snapshot() {
+        return new Counts(queries.sum(), updates.sum(), batches.sum(), batchedStatements.sum(),
+                copyConnections.sum(), commits.sum());
+    }
+
+    public void reset() {
+        queries.reset();
+        updates.reset();
+        batches.reset();
+        batchedStatements.reset();
+        copyConnections.reset();
+        commits.reset();
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource) {
+            return proxy(DataSource.class, dataSource, this::dataSourceCall);
+        }
+        return bean;
+    }
+
+    private Object dataSourceCall(Object target, Method method, Object[] args) throws Throwable {
+        Object result = invoke(target, method, args);
+        return result instanceof Connection connection && method.getName().equals("getConnection")
+                ? proxy(Connection.class, connection, this::connectionCall)
+                : result;
+    }
+
+    private Object connectionCall(Object target, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (name.equals("commit")) {
+            commits.increment();
+        } else if (name.equals("unwrap") && args[0] == PGConnection.class) {
+            copyConnections.increment();
+        }
+        Object result = invoke(target, method, args);
+        if (result instanceof CallableStatement statement) {
+            return proxy(CallableStatement.class, statement, this::statementCall);
+        } else if (result instanceof PreparedStatement statement) {
+            return proxy(PreparedStatement.class, statement, this::statementCall);
+        } else if (result instanceof Statement statement) {
+            return proxy(Statement.class, statement, this::statementCall);
+        }
+        return result;
+    }
+
+    private Object statementCall(Object target, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "executeQuery" -> queries.increment();
+            case "execute", "executeUpdate", "executeLargeUpdate" -> updates.increment();
+            case "executeBatch", "executeLargeBatch" -> batches.increment();
+            case "addBatch" -> batchedStatements.increment();
+            default -> {
+            }
+        }
+        return invoke(target, method, args);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        Object invoke(Object target, Method method, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, T target, Call call) {
+        // The pool is closed through the DataSource bean when the context shuts down
+        Class<?>[] interfaces = target instanceof AutoCloseable && !AutoCloseable.class.isAssignableFrom(type)
+                ? new Class<?>[]{type, AutoCloseable.class}
+                : new Class<?>[]{type};
+        InvocationHandler handler = (proxy, method, args) -> switch (method.getName()) {
+            case "equals" -> method.getParameterCount() == 1 && proxy == args[0];
+            case "hashCode" -> method.getParameterCount() == 0 ? System.identityHashCode(proxy) : call.invoke(target, method, args);
+            default -> call.invoke(target, method, args);
+        };
+        return type.cast(Proxy.newProxyInstance(StatementCounter.class.getClassLoader(), interfaces, handler));
+    }
+}
@@ -1,32 +1,43 @@
 package gov.ihd.apiservice.batch;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.ihd.apiservice.config.AsyncConfig;
 import gov.ihd.apiservice.model.FeedbackItem;
+import gov.ihd.apiservice.service.IngestionMetrics;
+import gov.ihd.apiservice.util.FileUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
 import org.springframework.batch.core.ExitStatus;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.StepExecution;
 import org.springframework.batch.core.StepExecutionListener;
-import org.springframework.core.task.TaskExecutor;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.builder.JobFlowBuilder;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.json.JsonItemReader;
+import org.springframework.batch.item.support.CompositeItemWriter;
+import org.springframework.batch.item.support.builder.CompositeItemWriterBuilder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.retry.RetryListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.batch.item.json.JsonItemReader;
-import org.springframework.batch.item.json.JacksonJsonObjectReader;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Slf4j
 @Configuration
@@ -36,8 +47,15 @@ public class BatchConfiguration {
     private final JobRepository jobRepository;
     private final PlatformTransactionManager transactionManager;
     private final FeedbackItemProcessor processor;
+    private final DimensionResolutionWriter dimensionResolutionWriter;
     private final FeedbackItemWriter writer;
+    private final CopyFeedbackItemWriter copyWriter;
+    private final StagingFeedbackItemWriter stagingWriter;
+    private final StagingMergeTasklet stagingMergeTasklet;
+    private final DateSortTasklet dateSortTasklet;
     private final ObjectMapper objectMapper;
+    private final IngestionMetrics ingestionMetrics;
+    private final IngestionMetricsListener ingestionMetricsListener;
     
     @Value("${app.batch.chunk-size:200}")
     private int chunkSize;
@@ -45,33 +63,92 @@ public class BatchConfiguration {
     @Value("${app.batch.thread-count:4}")
     private int threadCount;
     
+    @Value("${app.batch.writer:jpa}")
+    private String writerMode;
+    
+    @Value("${app.batch.presort:false}")
+    private boolean presort;
+    
+    @Value("${app.batch.read-buffer-size:4194304}")
+    private int readBufferSize;
+    
+    // 0 means one partition per available core
+    @Value("${app.batch.grid-size:0}")
+    private int gridSize;
+    
+    @Value("${app.jobs.max-concurrent:2}")
+    private int maxConcurrentJobs;
+    
+    @Value("${app.jobs.max-db-connections:24}")
+    private int maxDbConnections;
+    
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int connectionPoolSize;
+    
+    @Value("${app.executor.mode:platform}")
+    private String executorMode;
+    
     @Bean
-    public Job importFeedbackJob(JobCompletionNotificationListener listener, Step step1) {
-        return new JobBuilder("importFeedbackJob", jobRepository)
+    public Job importFeedbackJob(JobCompletionNotificationListener listener, Step sortStep, Step step1, Step mergeStep) {
+        JobFlowBuilder flow = new JobBuilder("importFeedbackJob", jobRepository)
                 .incrementer(new RunIdIncrementer())
                 .listener(listener)
-                .flow(step1)
-                .end()
+                .flow(presort ? sortStep : step1);
+        if (presort) {
+            flow.next(step1);
+        }
+        // Staged rows only reach the star schema through the merge step
+        if (isStagingMode()) {
+            flow.next(mergeStep);
+        }
+        return flow.end().build();
+    }
+    
+    /**
+     * Writes a copy of the file sorted by date for step1 to read, see {@link DateSortTasklet}
+     */
+    @Bean
+    public Step sortStep() {
+        return new StepBuilder("sortStep", jobRepository)
+                .tasklet(dateSortTasklet, transactionManager)
                 .build();
     }
     
+    /**
+     * Splits the file into record-aligned byte ranges and runs one workerStep per range on the
+     * batch executor. On restart only the partitions that did not complete are run again.
+     * Without app.batch.grid-size there is one range per core, or in virtual mode one per batch
+     * connection, as many as may write at once.
+     */
     @Bean
     public Step step1() {
+        int partitions = gridSize > 0 ? gridSize
+                : AsyncConfig.isVirtual(executorMode) ? batchConnections() : Runtime.getRuntime().availableProcessors();
         return new StepBuilder("step1", jobRepository)
+                .partitioner("workerStep", filePartitioner(null))
+                .step(workerStep())
+                .gridSize(partitions)
+                .taskExecutor(batchTaskExecutor())
+                .build();
+    }
+    
+    @Bean
+    public Step workerStep() {
+        return new StepBuilder("workerStep", jobRepository)
                 .<FeedbackItem, FeedbackBatchItem>chunk(chunkSize, transactionManager)
-                .reader(fileItemReader(null))
+                .reader(fileItemReader(null, null, null, null))
                 .processor(processor)
-                .writer(writer)
+                .writer(feedbackWriter())
                 .faultTolerant()
                 .skip(Exception.class)
                 .skipLimit(Integer.MAX_VALUE) // Don't limit skips for duplicate records
                 .skipPolicy(new DuplicateRecordSkipPolicy())
                 .retry(Exception.class)
                 .retryLimit(3)
-                // Enable multi-threaded processing
-                .taskExecutor(batchTaskExecutor())
-                .throttleLimit(threadCount)
-                .listener(new BatchSkipListener())
+                .listener(new BatchSkipListener(ingestionMetrics))
+                .listener((RetryListener) ingestionMetricsListener)
+                .listener((ChunkListener) ingestionMetricsListener)
+                .listener(dimensionResolutionWriter)
                 .listener(new StepExecutionListener() {
                     private String jobId;
 
@@ -113,33 +190,129 @@ public class BatchConfiguration {
                 .build();
     }
     
+    /**
+     * Merges the rows staged by step1 in one set-based statement per table
+     */
+    @Bean
+    public Step mergeStep() {
+        return new StepBuilder("mergeStep", jobRepository)
+                .tasklet(stagingMergeTasklet, transactionManager)
+                .build();
+    }
+    
+    /**
+     * Dimension members are resolved for the whole chunk before the fact rows are written.
+     * The fact writer is selected with app.batch.writer: jpa (default), copy or staging.
+     */
+    @Bean
+    public CompositeItemWriter<FeedbackBatchItem> feedbackWriter() {
+        ItemWriter<FeedbackBatchItem> factWriter = switch (writerMode.toLowerCase()) {
+            case "jpa" -> writer;
+            case "copy" -> copyWriter;
+            case "staging" -> stagingWriter;
+            default -> throw new IllegalStateException("Unknown app.batch.writer mode: " + writerMode);
+        };
+        log.info("Using {} fact writer", writerMode);
+        
+        return new CompositeItemWriterBuilder<FeedbackBatchItem>()
+                .delegates(List.of(dimensionResolutionWriter, factWriter))
+                .build();
+    }
+    
+    private boolean isStagingMode() {
+        return "staging".equalsIgnoreCase(writerMode);
+    }
+    
+    @Bean
+    @StepScope
+    public FileRangePartitioner filePartitioner(
+            @Value("#{jobExecutionContext['" + DateSortTasklet.SORTED_FILE_KEY + "'] ?: jobParameters['filePath']}") String filePath) {
+        return new FileRangePartitioner(Path.of(filePath != null ? filePath : ""));
+    }
+    
+    /**
+     * Reads the byte range of one partition of an .ndjson/.jsonl file or of a .json array file,
+     * or of the sorted copy when the job was sorted first
+     */
     @Bean
     @StepScope
-    public JsonItemReader<FeedbackItem> fileItemReader(@Value("#{jobParameters['filePath']}") String filePath) {
+    public ItemStreamReader<FeedbackItem> fileItemReader(
+            @Value("#{jobExecutionContext['" + DateSortTasklet.SORTED_FILE_KEY + "'] ?: jobParameters['filePath']}") String filePath,
+            @Value("#{stepExecutionContext['startOffset']}") Long startOffset,
+            @Value("#{stepExecutionContext['endOffset']}") Long endOffset,
+            @Value("#{stepExecution}") StepExecution stepExecution) {
         if (filePath == null) {
             log.warn("No file path provided during context initialization");
             return new JsonItemReader<>(); // Empty reader for context initialization
         }
         
         File jsonFile = new File(filePath);
-        log.info("Creating reader for file: {}", jsonFile.getAbsolutePath());
-        
-        JsonItemReader<FeedbackItem> reader = new JsonItemReader<>();
-        reader.setResource(new FileSystemResource(jsonFile));
-        reader.setJsonObjectReader(new JacksonJsonObjectReader<>(objectMapper, FeedbackItem.class));
-        reader.setName("feedbackJsonItemReader");
+        log.info("Creating reader for bytes {}-{} of file: {}", startOffset, endOffset, jsonFile.getAbsolutePath());
         
+        ByteRangeItemReader<FeedbackItem> reader;
+        if (FileUtils.isNdjsonFile(filePath)) {
+            reader = new NdjsonItemReader<>(jsonFile.toPath(), objectMapper.readerFor(FeedbackItem.class), readBufferSize);
+            reader.setName("feedbackNdjsonItemReader");
+        } else {
+            reader = new JsonArrayItemReader<>(jsonFile.toPath(), objectMapper.readerFor(FeedbackItem.class), readBufferSize);
+            reader.setName("feedbackJsonItemReader");
+        }
+        reader.setStartOffset(startOffset != null ? startOffset : 0L);
+        reader.setEndOffset(endOffset != null ? endOffset : Long.MAX_VALUE);
+        reader.setParseTimer(ingestionMetrics.forStep(stepExecution).parse());
         return reader;
     }
 
+    /**
+     * Worker threads shared by the partitions of all running jobs. Every worker holds a
+     * connection while it writes a chunk and every running job holds one more for its job
+     * repository updates, so the pool is kept within app.jobs.max-db-connections.
+     * In virtual mode every partition gets a virtual thread instead, and a semaphore with the
+     * same budget limits how many of them run at once.
+     *
+     * @throws IllegalStateException If app.jobs.max-db-connections exceeds the connection pool,
+     *                               which would leave workers waiting for connections
+     */
     @Bean
     public TaskExecutor batchTaskExecutor() {
+        if (maxDbConnections > connectionPoolSize) {
+            throw new IllegalStateException("app.jobs.max-db-connections (" + maxDbConnections
+                    + ") exceeds spring.datasource.hikari.maximum-pool-size (" + connectionPoolSize + ")");
+        }
+        int connections = batchConnections();
+        if (AsyncConfig.isVirtual(executorMode)) {
+            log.info("Running partitions on virtual threads, at most {} at a time", connections);
+            Semaphore permits = new Semaphore(connections, true);
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("batch-");
+            executor.setVirtualThreads(true);
+            // Waiting partitions park their virtual thread rather than holding a pool thread
+            executor.setTaskDecorator(task -> () -> {
+                permits.acquireUninterruptibly();
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+            return executor;
+        }
+        int workers = Math.min(threadCount, connections);
+        if (workers < threadCount) {
+            log.info("Limiting batch workers to {} to stay within {} database connections", workers, maxDbConnections);
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(threadCount);
-        executor.setMaxPoolSize(threadCount);
-        executor.setQueueCapacity(threadCount * 2);
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        // Partitions beyond the pool size wait for a free thread instead of being rejected
         executor.setThreadNamePrefix("batch-");
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Connections left for batch workers once every running job holds its own
+     */
+    private int batchConnections() {
+        return Math.max(1, maxDbConnections - maxConcurrentJobs);
+    }
 }
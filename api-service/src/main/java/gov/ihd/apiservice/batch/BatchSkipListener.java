@@ -1,20 +1,27 @@
 package gov.ihd.apiservice.batch;
 
+import gov.ihd.apiservice.service.IngestionMetrics;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.core.SkipListener;
 import gov.ihd.apiservice.model.FeedbackItem;
 import gov.ihd.apiservice.batch.FeedbackBatchItem;
 
 @Slf4j
+@RequiredArgsConstructor
 public class BatchSkipListener implements SkipListener<FeedbackItem, FeedbackBatchItem> {
 
+    private final IngestionMetrics ingestionMetrics;
+
     @Override
     public void onSkipInRead(Throwable t) {
+        ingestionMetrics.current().skipped("read", t);
         log.warn("Skipped item during read: {}", t.getMessage());
     }
 
     @Override
     public void onSkipInWrite(FeedbackBatchItem item, Throwable t) {
+        ingestionMetrics.current().skipped("write", t);
         if (item != null && item.getFeedback() != null) {
             log.info("Skipped duplicate feedback item: tweet_id={}, date={}", 
                 item.getFeedback().getTweetId(), 
@@ -26,6 +33,7 @@ public class BatchSkipListener implements SkipListener<FeedbackItem, FeedbackBat
 
     @Override
     public void onSkipInProcess(FeedbackItem item, Throwable t) {
+        ingestionMetrics.current().skipped("process", t);
         log.warn("Skipped item during process: {}", t.getMessage());
     }
 }
@@ -0,0 +1,203 @@
+package gov.ihd.apiservice.batch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import gov.ihd.apiservice.util.FileUtils;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ParseException;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base for readers that find JSON records in a byte buffer filled from a {@link FileChannel}
+ * and decode each record straight from the buffer with a reused {@link ObjectReader}.
+ * Subclasses only locate the next record. The byte offset after the last record read is
+ * saved in the execution context, so a restarted step continues after the last committed
+ * chunk. A reader can be limited to the records that start inside [startOffset, endOffset)
+ * to read one partition of a file.
+ * Compressed files (.gz, .zst) are decompressed as they are read; their offsets count
+ * uncompressed bytes, so a restart decompresses and skips everything before the saved offset.
+ * Not thread safe; wrap it in a SynchronizedItemStreamReader for multi-threaded steps.
+ */
+@Slf4j
+public abstract class ByteRangeItemReader<T> implements ItemStreamReader<T> {
+
+    private static final String OFFSET_KEY = "byte.offset";
+
+    protected final Path path;
+    private final ObjectReader objectReader;
+    private final int initialBufferSize;
+    private String name = ClassUtils.getShortName(getClass());
+    private long startOffset = 0;
+    private long endOffset = Long.MAX_VALUE;
+    private Timer parseTimer;
+
+    private ReadableByteChannel channel;
+    protected byte[] buffer;
+    // File offset of buffer[0]
+    protected long bufferOffset;
+    protected int position;
+    protected int limit;
+    protected boolean endOfFile;
+
+    /**
+     * @param path The file to read
+     * @param objectReader A reader bound to the record type, reused for every record
+     * @param bufferSize Bytes read from the file at a time; grows if a single record is larger
+     */
+    protected ByteRangeItemReader(Path path, ObjectReader objectReader, int bufferSize) {
+        this.path = path;
+        this.objectReader = objectReader;
+        this.initialBufferSize = bufferSize;
+    }
+
+    /**
+     * @param name Prefix of this reader's keys in the execution context; must be unique within a step
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param startOffset Offset of the first record to read; must be a record boundary
+     */
+    public void setStartOffset(long startOffset) {
+        this.startOffset = startOffset;
+    }
+
+    /**
+     * @param endOffset Records starting at or after this offset are left to the next partition
+     */
+    public void setEndOffset(long endOffset) {
+        this.endOffset = endOffset;
+    }
+
+    /**
+     * @param parseTimer Records the time spent decoding each record, if set
+     */
+    public void setParseTimer(Timer parseTimer) {
+        this.parseTimer = parseTimer;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        String offsetKey = getExecutionContextKey(OFFSET_KEY);
+        long offset = executionContext.getLong(offsetKey, startOffset);
+        try {
+            channel = openChannel(offset);
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to open " + path, e);
+        }
+        buffer = new byte[initialBufferSize];
+        bufferOffset = offset;
+        position = 0;
+        limit = 0;
+        endOfFile = false;
+        if (executionContext.containsKey(offsetKey)) {
+            log.info("Resuming {} at byte offset {}", path.getFileName(), offset);
+        }
+    }
+
+    private ReadableByteChannel openChannel(long offset) throws IOException {
+        if (!FileUtils.isCompressed(path.toString())) {
+            return FileChannel.open(path, StandardOpenOption.READ).position(offset);
+        }
+        InputStream in = FileUtils.openDecompressed(path);
+        try {
+            in.skipNBytes(offset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return Channels.newChannel(in);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        executionContext.putLong(getExecutionContextKey(OFFSET_KEY), bufferOffset + position);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        buffer = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new ItemStreamException("Failed to close " + path, e);
+            } finally {
+                channel = null;
+            }
+        }
+    }
+
+    private String getExecutionContextKey(String key) {
+        return name + "." + key;
+    }
+
+    /**
+     * @return true once the next record would start outside this reader's range
+     */
+    protected boolean pastEndOffset() {
+        return bufferOffset + position >= endOffset;
+    }
+
+    /**
+     * Move the unread tail to the front of the buffer and read the next block after it,
+     * doubling the buffer when one record does not fit. Sets {@link #endOfFile} at the end.
+     */
+    protected void fill() throws IOException {
+        int remaining = limit - position;
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+            bufferOffset += position;
+            position = 0;
+            limit = remaining;
+        }
+        if (limit == buffer.length) {
+            byte[] larger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, limit);
+            buffer = larger;
+        }
+        int read = channel.read(ByteBuffer.wrap(buffer, limit, buffer.length - limit));
+        if (read < 0) {
+            endOfFile = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    /**
+     * Decode the record in buffer[start, end)
+     */
+    protected T decode(int start, int end) throws IOException {
+        long startNanos = parseTimer != null ? System.nanoTime() : 0;
+        try {
+            T record = objectReader.readValue(buffer, start, end - start);
+            if (parseTimer != null) {
+                parseTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+            return record;
+        } catch (JsonProcessingException e) {
+            throw new ParseException("Invalid JSON record at byte offset " + (bufferOffset + start)
+                    + " of " + path.getFileName() + ": " + e.getOriginalMessage(), e);
+        }
+    }
+
+    protected static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+}
@@ -0,0 +1,204 @@
+package gov.ihd.apiservice.batch;
+
+import gov.ihd.apiservice.entity.FactFeedback;
+import gov.ihd.apiservice.repository.FactFeedbackRepository;
+import gov.ihd.apiservice.repository.FeedbackPartitionRepository;
+import gov.ihd.apiservice.service.FeedbackPartitionManager;
+import gov.ihd.apiservice.service.IngestionMetrics;
+import gov.ihd.apiservice.util.CsvCopyBuffer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a chunk with PostgreSQL COPY instead of JPA. Fact and bridge rows are encoded
+ * straight from the batch items into CSV buffers and streamed over the connection of the
+ * current chunk transaction, so no entities are persisted or dirty checked.
+ * Selected with app.batch.writer=copy.
+ *
+ * <p>With app.batch.group-by-partition (the default) the fact rows are sorted by date and
+ * each month is copied straight into its fact_feedback partition, so the server neither
+ * routes every row nor switches between partitions within one COPY.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CopyFeedbackItemWriter implements ItemWriter<FeedbackBatchItem> {
+
+    private static final String COPY_FACT_COLUMNS =
+            " (feedback_id, tweet_id, time_id, user_id, location_id, issue_id, " +
+            "platform, text, language, retweet_count, reply_count, like_count, quote_count, bookmark_count, " +
+            "impression_count, created_date) FROM STDIN WITH (FORMAT csv)";
+
+    static final String COPY_FACT_SQL = "COPY ihd_analytics.fact_feedback" + COPY_FACT_COLUMNS;
+
+    static final String COPY_HASHTAG_BRIDGE_SQL =
+            "COPY ihd_analytics.bridge_feedback_hashtag (feedback_id, hashtag_id, created_date) FROM STDIN WITH (FORMAT csv)";
+
+    static final String COPY_AGENCY_BRIDGE_SQL =
+            "COPY ihd_analytics.bridge_feedback_agency (feedback_id, agency_id, created_date) FROM STDIN WITH (FORMAT csv)";
+
+    private static final int BYTES_PER_FACT_ROW_ESTIMATE = 512;
+
+    private static final Comparator<FactFeedback> BY_CREATED_DATE = Comparator.comparing(FactFeedback::getCreatedDate);
+
+    private final FactFeedbackRepository feedbackRepository;
+    private final DataSource dataSource;
+    private final IngestionMetrics ingestionMetrics;
+    private final FeedbackPartitionManager partitionManager;
+
+    @Value("${app.batch.group-by-partition:true}")
+    private boolean groupByPartition;
+
+    private final Map<YearMonth, String> copyFactSql = new ConcurrentHashMap<>();
+
+    @Override
+    public void write(Chunk<? extends FeedbackBatchItem> items) throws Exception {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        List<String> tweetIds = new ArrayList<>(items.size());
+        for (FeedbackBatchItem item : items) {
+            if (item != null && item.getFeedback() != null) {
+                tweetIds.add(item.getFeedback().getTweetId());
+            }
+        }
+        Set<String> seenTweetIds = new HashSet<>(feedbackRepository.findExistingTweetIds(tweetIds));
+
+        List<FactFeedback> feedbacks = new ArrayList<>(items.size());
+        CsvCopyBuffer hashtagBridges = new CsvCopyBuffer(items.size() * 32);
+        CsvCopyBuffer agencyBridges = new CsvCopyBuffer(items.size() * 32);
+
+        for (FeedbackBatchItem item : items) {
+            if (item == null || item.getFeedback() == null) {
+                continue;
+            }
+            FactFeedback feedback = item.getFeedback();
+
+            // Skip tweets that already exist or appear twice in this chunk
+            if (!seenTweetIds.add(feedback.getTweetId())) {
+                log.debug("Skipping duplicate feedback with tweet_id: {}", feedback.getTweetId());
+                ingestionMetrics.current().skipped("write", "duplicate");
+                continue;
+            }
+
+            feedbacks.add(feedback);
+
+            if (item.getHashtagIds() != null) {
+                for (int hashtagId : item.getHashtagIds()) {
+                    hashtagBridges.append(feedback.getFeedbackId())
+                            .append(hashtagId)
+                            .append(feedback.getCreatedDate())
+                            .endRow();
+                }
+            }
+
+            if (item.getAgencyIds() != null) {
+                for (int agencyId : item.getAgencyIds()) {
+                    agencyBridges.append(feedback.getFeedbackId())
+                            .append(agencyId)
+                            .append(feedback.getCreatedDate())
+                            .endRow();
+                }
+            }
+        }
+        if (groupByPartition) {
+            feedbacks.sort(BY_CREATED_DATE);
+        }
+
+        log.info("Copying {} feedback items, {} hashtag bridges, and {} agency bridges",
+                feedbacks.size(), hashtagBridges.getRowCount(), agencyBridges.getRowCount());
+
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            IngestionMetrics.StepMetrics metrics = ingestionMetrics.current();
+            long factNanos = copyFacts(copyManager, feedbacks);
+            long bridgesStart = System.nanoTime();
+            hashtagBridges.copyTo(copyManager, COPY_HASHTAG_BRIDGE_SQL);
+            agencyBridges.copyTo(copyManager, COPY_AGENCY_BRIDGE_SQL);
+            metrics.factWrite().record(factNanos, TimeUnit.NANOSECONDS);
+            metrics.bridgeWrite().record(System.nanoTime() - bridgesStart, TimeUnit.NANOSECONDS);
+            metrics.factRowsWritten(feedbacks.size());
+            metrics.bridgeRowsWritten(hashtagBridges.getRowCount() + agencyBridges.getRowCount());
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    /**
+     * Copy the fact rows, one COPY per run of rows of the same month into that month's
+     * partition when it is known to exist. Otherwise, or with app.batch.group-by-partition
+     * off, all rows go through fact_feedback in one COPY.
+     *
+     * @return Nanoseconds spent copying
+     */
+    private long copyFacts(CopyManager copyManager, List<FactFeedback> feedbacks) throws SQLException {
+        CsvCopyBuffer facts = new CsvCopyBuffer(Math.max(feedbacks.size(), 1) * BYTES_PER_FACT_ROW_ESTIMATE);
+        long nanos = 0;
+        YearMonth month = null;
+        for (FactFeedback feedback : feedbacks) {
+            YearMonth rowMonth = groupByPartition ? YearMonth.from(feedback.getCreatedDate()) : null;
+            if (!facts.isEmpty() && !Objects.equals(rowMonth, month)) {
+                nanos += copyFacts(copyManager, facts, month);
+            }
+            month = rowMonth;
+            appendFact(facts, feedback);
+        }
+        return nanos + copyFacts(copyManager, facts, month);
+    }
+
+    private long copyFacts(CopyManager copyManager, CsvCopyBuffer facts, YearMonth month) throws SQLException {
+        long start = System.nanoTime();
+        facts.copyTo(copyManager, month != null && partitionManager.hasPartition(month)
+                ? copyFactSql.computeIfAbsent(month,
+                        key -> "COPY " + FeedbackPartitionRepository.partitionName(key) + COPY_FACT_COLUMNS)
+                : COPY_FACT_SQL);
+        facts.clear();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Append one fact_feedback row in the column order of {@link #COPY_FACT_SQL}
+     */
+    static void appendFact(CsvCopyBuffer buffer, FactFeedback feedback) {
+        buffer.append(feedback.getFeedbackId())
+                .append(feedback.getTweetId())
+                .append(feedback.getTime().getTimeId())
+                .append(feedback.getUser().getUserId())
+                .append(feedback.getLocation() != null ? feedback.getLocation().getLocationId() : null)
+                .append(feedback.getIssue() != null ? feedback.getIssue().getIssueId() : null)
+                .append(feedback.getPlatform())
+                .append(feedback.getText())
+                .append(feedback.getLanguage())
+                .append(feedback.getRetweetCount())
+                .append(feedback.getReplyCount())
+                .append(feedback.getLikeCount())
+                .append(feedback.getQuoteCount())
+                .append(feedback.getBookmarkCount())
+                .append(feedback.getImpressionCount())
+                .append(feedback.getCreatedDate())
+                .endRow();
+    }
+}
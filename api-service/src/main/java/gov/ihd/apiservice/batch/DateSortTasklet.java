@@ -0,0 +1,49 @@
+package gov.ihd.apiservice.batch;
+
+import gov.ihd.apiservice.util.FileUtils;
+import gov.ihd.apiservice.util.RecordDateSorter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Optional first step of the import (app.batch.presort=true). Rewrites the uploaded file as
+ * NDJSON in order of created_at, next to the upload, and step1 reads that copy instead. Each
+ * partition of step1 then covers a narrow range of dates, so its chunks write to one or two
+ * fact_feedback partitions rather than to every month of the file. Compressed files are read
+ * as uploaded.
+ */
+@Slf4j
+@Component
+public class DateSortTasklet implements Tasklet {
+
+    /**
+     * Job execution context key of the sorted copy
+     */
+    public static final String SORTED_FILE_KEY = "presort.file";
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        String filePath = chunkContext.getStepContext().getStepExecution().getJobParameters().getString("filePath");
+        if (filePath == null || FileUtils.isCompressed(filePath)) {
+            log.info("Not sorting {}, compressed files are read as uploaded", filePath);
+            return RepeatStatus.FINISHED;
+        }
+
+        long start = System.currentTimeMillis();
+        Path source = Path.of(filePath);
+        Path sorted = source.resolveSibling(source.getFileName() + ".sorted.ndjson");
+        int records = RecordDateSorter.sort(source, sorted);
+
+        chunkContext.getStepContext().getStepExecution().getJobExecution().getExecutionContext()
+                .putString(SORTED_FILE_KEY, sorted.toString());
+        log.info("Sorted {} records of {} by date in {} ms", records, source.getFileName(),
+                System.currentTimeMillis() - start);
+        return RepeatStatus.FINISHED;
+    }
+}
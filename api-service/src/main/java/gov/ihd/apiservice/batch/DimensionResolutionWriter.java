@@ -0,0 +1,245 @@
+package gov.ihd.apiservice.batch;
+
+import gov.ihd.apiservice.entity.DimIssue;
+import gov.ihd.apiservice.entity.DimLocation;
+import gov.ihd.apiservice.entity.DimUser;
+import gov.ihd.apiservice.entity.FactFeedback;
+import gov.ihd.apiservice.repository.DimIssueRepository;
+import gov.ihd.apiservice.repository.DimLocationRepository;
+import gov.ihd.apiservice.repository.DimTimeRepository;
+import gov.ihd.apiservice.repository.DimUserRepository;
+import gov.ihd.apiservice.repository.DimensionBulkRepository;
+import gov.ihd.apiservice.service.DimensionCacheService;
+import gov.ihd.apiservice.service.FeedbackAggregateService;
+import gov.ihd.apiservice.service.FeedbackPartitionManager;
+import gov.ihd.apiservice.service.IngestionMetrics;
+import gov.ihd.apiservice.service.TimeService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * First write stage of the import step. Collects the distinct natural keys of every
+ * dimension referenced by a chunk, resolves the ones that are not cached with one bulk
+ * upsert per dimension, and attaches the resolved ids to the fact rows and, as int arrays
+ * for the bridge rows, to the batch items.
+ * Keys are upserted in sorted order so that concurrent chunks lock index entries in
+ * the same order. Dates are resolved through the calendar of {@link TimeService}, and
+ * recorded for the refresh of the feedback aggregates after the job. Before any of that, the
+ * months of the chunk get their fact_feedback partitions from {@link FeedbackPartitionManager}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DimensionResolutionWriter implements ItemWriter<FeedbackBatchItem>, StepExecutionListener {
+
+    private final DimensionBulkRepository dimensionBulkRepository;
+    private final DimensionCacheService dimensionCache;
+    private final TimeService timeService;
+    private final DimTimeRepository timeRepository;
+    private final DimUserRepository userRepository;
+    private final DimLocationRepository locationRepository;
+    private final DimIssueRepository issueRepository;
+    private final IngestionMetrics ingestionMetrics;
+    private final FeedbackAggregateService aggregateService;
+    private final FeedbackPartitionManager partitionManager;
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        // Load existing dimension keys so most lookups can be served from memory
+        dimensionCache.warmUp();
+    }
+
+    @Override
+    public void write(Chunk<? extends FeedbackBatchItem> items) throws Exception {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        Set<LocalDate> dates = new HashSet<>();
+        for (FeedbackBatchItem item : items) {
+            if (item != null && item.getFeedback() != null) {
+                dates.add(item.getFeedback().getCreatedDate());
+            }
+        }
+        // First, so that creating a partition never waits for locks held by this chunk, and
+        // none is created while the chunk writes
+        partitionManager.ensurePartitions(dates);
+
+        IngestionMetrics.StepMetrics metrics = ingestionMetrics.current();
+        metrics.dimension("time").record(() -> resolveTimes(items, dates));
+        metrics.dimension("user").record(() -> resolveUsers(items));
+        Map<String, Integer> locationIds = metrics.dimension("location").record(() -> resolveLocations(items));
+        metrics.dimension("issue").record(() -> resolveIssues(items));
+        Map<String, Integer> hashtagIds = metrics.dimension("hashtag").record(() -> resolveHashtags(items));
+        Map<String, Integer> agencyIds = metrics.dimension("agency").record(() -> resolveAgencies(items));
+
+        for (FeedbackBatchItem item : items) {
+            if (item == null || item.getFeedback() == null) {
+                continue;
+            }
+            FactFeedback feedback = item.getFeedback();
+
+            feedback.setUser(userRepository.getReferenceById(item.getUser().getUserId()));
+
+            DimLocation location = item.getLocation();
+            feedback.setLocation(location == null ? null : locationRepository.getReferenceById(
+                    locationIds.get(location.getLocationKey())));
+
+            feedback.setIssue(item.getIssue() == null ? null : issueRepository.getReferenceById(item.getIssue().getIssueId()));
+
+            item.setHashtagIds(resolvedIds(item.getHashtags(), hashtagIds));
+            item.setAgencyIds(resolvedIds(item.getAgencyAccounts(), agencyIds));
+        }
+    }
+
+    private static int[] resolvedIds(List<String> keys, Map<String, Integer> ids) {
+        int[] resolved = new int[keys.size()];
+        for (int i = 0; i < resolved.length; i++) {
+            resolved[i] = ids.get(keys.get(i));
+        }
+        return resolved;
+    }
+
+    private void resolveTimes(Chunk<? extends FeedbackBatchItem> items, Set<LocalDate> dates) {
+        // Years new to the calendar are added once for the whole chunk
+        timeService.extendTo(dates);
+        for (FeedbackBatchItem item : items) {
+            if (item == null || item.getFeedback() == null) {
+                continue;
+            }
+            FactFeedback feedback = item.getFeedback();
+            feedback.setTime(timeRepository.getReferenceById(timeService.getTimeId(feedback.getCreatedDate())));
+        }
+        // The summary rows of these days are recomputed when the job finishes
+        aggregateService.recordDates(dates);
+    }
+
+    private void resolveUsers(Chunk<? extends FeedbackBatchItem> items) {
+        TreeMap<String, DimUser> missing = new TreeMap<>();
+        for (FeedbackBatchItem item : items) {
+            if (item == null || item.getUser() == null) {
+                continue;
+            }
+            String userId = item.getUser().getUserId();
+            if (!missing.containsKey(userId) && !dimensionCache.containsUser(userId)) {
+                missing.put(userId, item.getUser());
+            }
+        }
+        if (!missing.isEmpty()) {
+            dimensionBulkRepository.upsertUsers(new ArrayList<>(missing.values()));
+            missing.keySet().forEach(dimensionCache::putUser);
+        }
+    }
+
+    private Map<String, Integer> resolveLocations(Chunk<? extends FeedbackBatchItem> items) {
+        Map<String, Integer> ids = new HashMap<>();
+        TreeMap<String, DimLocation> missing = new TreeMap<>();
+        for (FeedbackBatchItem item : items) {
+            if (item == null || item.getLocation() == null) {
+                continue;
+            }
+            DimLocation location = item.getLocation();
+            String key = location.getLocationKey();
+            if (!ids.containsKey(key) && !missing.containsKey(key)) {
+                Integer locationId = dimensionCache.getLocationId(key);
+                if (locationId != null) {
+                    ids.put(key, locationId);
+                } else {
+                    missing.put(key, location);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Integer> created = dimensionBulkRepository.upsertLocations(new ArrayList<>(missing.values()));
+            for (String key : missing.keySet()) {
+                dimensionCache.putLocationId(key, created.get(key));
+            }
+            ids.putAll(created);
+        }
+        return ids;
+    }
+
+    private void resolveIssues(Chunk<? extends FeedbackBatchItem> items) {
+        TreeMap<Integer, DimIssue> missing = new TreeMap<>();
+        for (FeedbackBatchItem item : items) {
+            if (item == null || item.getIssue() == null) {
+                continue;
+            }
+            Integer issueId = item.getIssue().getIssueId();
+            if (!missing.containsKey(issueId) && !dimensionCache.containsIssue(issueId)) {
+                missing.put(issueId, item.getIssue());
+            }
+        }
+        if (!missing.isEmpty()) {
+            dimensionBulkRepository.upsertIssues(new ArrayList<>(missing.values()));
+            missing.keySet().forEach(dimensionCache::putIssue);
+        }
+    }
+
+    private Map<String, Integer> resolveHashtags(Chunk<? extends FeedbackBatchItem> items) {
+        Map<String, Integer> ids = new HashMap<>();
+        TreeSet<String> missing = new TreeSet<>();
+        for (FeedbackBatchItem item : items) {
+            if (item == null || item.getHashtags() == null) {
+                continue;
+            }
+            for (String hashtag : item.getHashtags()) {
+                if (!ids.containsKey(hashtag) && !missing.contains(hashtag)) {
+                    Integer hashtagId = dimensionCache.getHashtagId(hashtag);
+                    if (hashtagId != null) {
+                        ids.put(hashtag, hashtagId);
+                    } else {
+                        missing.add(hashtag);
+                    }
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Integer> created = dimensionBulkRepository.upsertHashtags(new ArrayList<>(missing));
+            created.forEach(dimensionCache::putHashtagId);
+            ids.putAll(created);
+        }
+        return ids;
+    }
+
+    private Map<String, Integer> resolveAgencies(Chunk<? extends FeedbackBatchItem> items) {
+        Map<String, Integer> ids = new HashMap<>();
+        TreeSet<String> missing = new TreeSet<>();
+        for (FeedbackBatchItem item : items) {
+            if (item == null || item.getAgencyAccounts() == null) {
+                continue;
+            }
+            for (String agencyAccount : item.getAgencyAccounts()) {
+                if (!ids.containsKey(agencyAccount) && !missing.contains(agencyAccount)) {
+                    Integer agencyId = dimensionCache.getAgencyId(agencyAccount);
+                    if (agencyId != null) {
+                        ids.put(agencyAccount, agencyId);
+                    } else {
+                        missing.add(agencyAccount);
+                    }
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Integer> created = dimensionBulkRepository.upsertAgencies(new ArrayList<>(missing));
+            created.forEach(dimensionCache::putAgencyId);
+            ids.putAll(created);
+        }
+        return ids;
+    }
+}
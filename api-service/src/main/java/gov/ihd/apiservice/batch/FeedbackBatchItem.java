@@ -1,7 +1,8 @@
 package gov.ihd.apiservice.batch;
 
-import gov.ihd.apiservice.entity.BridgeFeedbackAgency;
-import gov.ihd.apiservice.entity.BridgeFeedbackHashtag;
+import gov.ihd.apiservice.entity.DimIssue;
+import gov.ihd.apiservice.entity.DimLocation;
+import gov.ihd.apiservice.entity.DimUser;
 import gov.ihd.apiservice.entity.FactFeedback;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -14,6 +15,17 @@ import java.util.List;
 @AllArgsConstructor
 public class FeedbackBatchItem {
     private FactFeedback feedback;
-    private List<BridgeFeedbackHashtag> hashtagBridges;
-    private List<BridgeFeedbackAgency> agencyBridges;
+
+    // Natural dimension keys collected by the processor. They are resolved for the
+    // whole chunk at once by DimensionResolutionWriter before the fact rows are written.
+    private DimUser user;
+    private DimLocation location;
+    private DimIssue issue;
+    private List<String> hashtags;
+    private List<String> agencyAccounts;
+
+    // Dimension ids of hashtags and agencyAccounts, in the same order, set by
+    // DimensionResolutionWriter. The writers turn them into bridge rows.
+    private int[] hashtagIds;
+    private int[] agencyIds;
 }
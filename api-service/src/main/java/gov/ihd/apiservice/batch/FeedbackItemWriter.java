@@ -1,30 +1,41 @@
 package gov.ihd.apiservice.batch;
 
-import gov.ihd.apiservice.entity.BridgeFeedbackAgency;
-import gov.ihd.apiservice.entity.BridgeFeedbackHashtag;
 import gov.ihd.apiservice.entity.FactFeedback;
-import gov.ihd.apiservice.repository.BridgeFeedbackAgencyRepository;
-import gov.ihd.apiservice.repository.BridgeFeedbackHashtagRepository;
+import gov.ihd.apiservice.repository.BridgeBulkRepository;
 import gov.ihd.apiservice.repository.FactFeedbackRepository;
+import gov.ihd.apiservice.service.IngestionMetrics;
+import gov.ihd.apiservice.util.BridgeRowBuffer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.item.Chunk;
 import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Set;
 
+/**
+ * Writes a chunk with JPA (app.batch.writer=jpa). One pass over the chunk drops tweets that
+ * are stored already or appear earlier in the chunk, and collects the bridge rows of the
+ * remaining ones into column buffers under the feedback id the processor assigned. The fact
+ * rows are then saved through JPA and the bridge rows inserted with one statement per table.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class FeedbackItemWriter implements ItemWriter<FeedbackBatchItem> {
 
     private final FactFeedbackRepository feedbackRepository;
-    private final BridgeFeedbackHashtagRepository hashtagBridgeRepository;
-    private final BridgeFeedbackAgencyRepository agencyBridgeRepository;
+    private final BridgeBulkRepository bridgeRepository;
+    private final IngestionMetrics ingestionMetrics;
+
+    @Value("${app.batch.group-by-partition:true}")
+    private boolean groupByPartition;
 
     @Override
     @Transactional
@@ -33,81 +44,79 @@ public class FeedbackItemWriter implements ItemWriter<FeedbackBatchItem> {
             return;
         }
 
-        List<FactFeedback> feedbacks = new ArrayList<>();
-        List<BridgeFeedbackHashtag> hashtagBridges = new ArrayList<>();
-        List<BridgeFeedbackAgency> agencyBridges = new ArrayList<>();
-        
-        // Pre-fetch existing tweet IDs to avoid individual lookups
-        List<String> tweetIds = new ArrayList<>();
+        IngestionMetrics.StepMetrics metrics = ingestionMetrics.current();
+
+        List<String> tweetIds = new ArrayList<>(items.size());
         for (FeedbackBatchItem item : items) {
             if (item != null && item.getFeedback() != null) {
                 tweetIds.add(item.getFeedback().getTweetId());
             }
         }
-        
+
         // Get existing tweet IDs in a single query
-        List<String> existingTweetIds = feedbackRepository.findExistingTweetIds(tweetIds);
-        
-        for (FeedbackBatchItem item : items) {
-            if (item != null && item.getFeedback() != null) {
-                FactFeedback feedback = item.getFeedback();
-                
-                // Skip if tweet already exists
-                if (existingTweetIds.contains(feedback.getTweetId())) {
-                    log.debug("Skipping duplicate feedback with tweet_id: {}", feedback.getTweetId());
-                    continue;
-                }
-                
-                feedbacks.add(feedback);
-            }
+        Set<String> seenTweetIds = new HashSet<>(feedbackRepository.findExistingTweetIds(tweetIds));
+        List<FactFeedback> feedbacks = new ArrayList<>(tweetIds.size());
+        BridgeRowBuffer hashtagBridges = new BridgeRowBuffer(tweetIds.size() * 2);
+        BridgeRowBuffer agencyBridges = new BridgeRowBuffer(tweetIds.size());
+        collect(items, seenTweetIds, feedbacks, hashtagBridges, agencyBridges);
+        // Inserted month by month, so consecutive rows of a batch go to the same partition
+        if (groupByPartition) {
+            feedbacks.sort(Comparator.comparing(FactFeedback::getCreatedDate));
         }
-        
-        // Batch save all feedback items at once
-        if (!feedbacks.isEmpty()) {
-            List<FactFeedback> savedFeedbacks = feedbackRepository.saveAll(feedbacks);
-            
-            // Process bridges for all saved feedback items
-            for (int i = 0; i < savedFeedbacks.size(); i++) {
-                FactFeedback savedFeedback = savedFeedbacks.get(i);
-                Long feedbackId = savedFeedback.getFeedbackId();
-                
-                // Find the matching FeedbackBatchItem
-                for (FeedbackBatchItem item : items) {
-                    if (item != null && item.getFeedback() != null && 
-                        item.getFeedback().getTweetId().equals(savedFeedback.getTweetId())) {
-                        
-                        // Process hashtag bridges
-                        if (item.getHashtagBridges() != null) {
-                            for (BridgeFeedbackHashtag bridge : item.getHashtagBridges()) {
-                                bridge.setFeedbackId(feedbackId);
-                                hashtagBridges.add(bridge);
-                            }
-                        }
-                        
-                        // Process agency bridges
-                        if (item.getAgencyBridges() != null) {
-                            for (BridgeFeedbackAgency bridge : item.getAgencyBridges()) {
-                                bridge.setFeedbackId(feedbackId);
-                                agencyBridges.add(bridge);
-                            }
-                        }
-                        
-                        break;
-                    }
-                }
-            }
+        if (feedbacks.size() < tweetIds.size()) {
+            metrics.skipped("write", "duplicate", tweetIds.size() - feedbacks.size());
         }
 
         log.info("Saving {} feedback items, {} hashtag bridges, and {} agency bridges",
-                feedbacks.size(), hashtagBridges.size(), agencyBridges.size());
-        
-        // Use batched operations for better performance
-        if (!hashtagBridges.isEmpty()) {
-            hashtagBridgeRepository.saveAll(hashtagBridges);
+                feedbacks.size(), hashtagBridges.getRowCount(), agencyBridges.getRowCount());
+
+        if (!feedbacks.isEmpty()) {
+            // Flushed here so the fact and bridge inserts are timed separately, and the
+            // bridge rows find their fact rows
+            metrics.factWrite().record(() -> {
+                feedbackRepository.saveAll(feedbacks);
+                feedbackRepository.flush();
+            });
+            metrics.factRowsWritten(feedbacks.size());
         }
-        
-        if (!agencyBridges.isEmpty()) {
-            agencyBridgeRepository.saveAll(agencyBridges);
+
+        metrics.bridgeWrite().record(() -> {
+            bridgeRepository.insertHashtagBridges(hashtagBridges);
+            bridgeRepository.insertAgencyBridges(agencyBridges);
+        });
+        metrics.bridgeRowsWritten(hashtagBridges.getRowCount() + agencyBridges.getRowCount());
+    }
+
+    /**
+     * Keep the fact rows of the tweets not in seenTweetIds, which then holds every tweet of
+     * the chunk, and append their bridge rows
+     */
+    static void collect(Iterable<? extends FeedbackBatchItem> items, Set<String> seenTweetIds,
+                        List<FactFeedback> feedbacks, BridgeRowBuffer hashtagBridges, BridgeRowBuffer agencyBridges) {
+        for (FeedbackBatchItem item : items) {
+            if (item == null || item.getFeedback() == null) {
+                continue;
+            }
+            FactFeedback feedback = item.getFeedback();
+
+            // Skip tweets that already exist or appear twice in this chunk
+            if (!seenTweetIds.add(feedback.getTweetId())) {
+                log.debug("Skipping duplicate feedback with tweet_id: {}", feedback.getTweetId());
+                continue;
+            }
+            feedbacks.add(feedback);
+
+            long feedbackId = feedback.getFeedbackId();
+            if (item.getHashtagIds() != null) {
+                for (int hashtagId : item.getHashtagIds()) {
+                    hashtagBridges.add(feedbackId, hashtagId, feedback.getCreatedDate());
+                }
+            }
+            if (item.getAgencyIds() != null) {
+                for (int agencyId : item.getAgencyIds()) {
+                    agencyBridges.add(feedbackId, agencyId, feedback.getCreatedDate());
+                }
+            }
         }
     }
 }
@@ -0,0 +1,109 @@
+package gov.ihd.apiservice.batch;
+
+import gov.ihd.apiservice.util.FileUtils;
+import gov.ihd.apiservice.util.JsonArrayIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits an uploaded file into record-aligned byte ranges, one per worker step. NDJSON files
+ * are cut at roughly equal offsets, each moved forward to the start of the next line. JSON
+ * array files are indexed with {@link JsonArrayIndex} and cut into ranges holding about the
+ * same number of objects. Either way no record is split between partitions. Compressed
+ * files cannot be read from an arbitrary offset, so they are read by a single partition.
+ */
+@Slf4j
+public class FileRangePartitioner implements Partitioner {
+
+    public static final String START_OFFSET_KEY = "startOffset";
+    public static final String END_OFFSET_KEY = "endOffset";
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+
+    public FileRangePartitioner(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        if (FileUtils.isCompressed(path.toString())) {
+            // Offsets of a compressed file count uncompressed bytes, which are unknown up front
+            boundaries.add(Long.MAX_VALUE);
+            return toPartitions(boundaries);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (FileUtils.isNdjsonFile(path.toString())) {
+                ByteBuffer scanBuffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+                for (int i = 1; i < gridSize; i++) {
+                    long boundary = nextLineStart(channel, scanBuffer, size * i / gridSize);
+                    // Very long lines can push several cuts onto the same record
+                    if (boundary > boundaries.get(boundaries.size() - 1) && boundary < size) {
+                        boundaries.add(boundary);
+                    }
+                }
+                boundaries.add(size);
+            } else {
+                JsonArrayIndex index = JsonArrayIndex.build(path);
+                int objects = index.getObjectCount();
+                int partitions = Math.max(1, Math.min(gridSize, objects));
+                for (int i = 1; i < partitions; i++) {
+                    boundaries.add(index.getObjectStart((int) ((long) objects * i / partitions)));
+                }
+                boundaries.add(objects > 0 ? index.getArrayEnd() : size);
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to partition " + path, e);
+        }
+        return toPartitions(boundaries);
+    }
+
+    private Map<String, ExecutionContext> toPartitions(List<Long> boundaries) {
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+        for (int i = 0; i < boundaries.size() - 1; i++) {
+            ExecutionContext context = new ExecutionContext();
+            context.putLong(START_OFFSET_KEY, boundaries.get(i));
+            context.putLong(END_OFFSET_KEY, boundaries.get(i + 1));
+            partitions.put("partition" + i, context);
+        }
+        log.info("Split {} into {} partitions", path.getFileName(), partitions.size());
+        return partitions;
+    }
+
+    /**
+     * Offset of the first line that starts at or after the given offset
+     */
+    private static long nextLineStart(FileChannel channel, ByteBuffer scanBuffer, long offset) throws IOException {
+        // A line starts at offset if the byte before it is a newline
+        long position = Math.max(0, offset - 1);
+        while (true) {
+            scanBuffer.clear();
+            int read = channel.read(scanBuffer, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (scanBuffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+}
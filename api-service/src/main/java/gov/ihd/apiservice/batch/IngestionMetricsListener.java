@@ -0,0 +1,66 @@
+package gov.ihd.apiservice.batch;
+
+import gov.ihd.apiservice.service.IngestionMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records chunk and commit latency and retried failures of the import step in
+ * {@link IngestionMetrics}. Shared by all partitions; per chunk state is kept in the
+ * chunk context and in a synchronization of the chunk transaction.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngestionMetricsListener implements ChunkListener, RetryListener {
+
+    private static final String START_KEY = IngestionMetricsListener.class.getName() + ".start";
+
+    private final IngestionMetrics ingestionMetrics;
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        context.setAttribute(START_KEY, System.nanoTime());
+        // Called inside the chunk transaction, so the commit can be timed from its callbacks
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            IngestionMetrics.StepMetrics metrics = ingestionMetrics.forStep(context.getStepContext().getStepExecution());
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private long commitStart;
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    commitStart = System.nanoTime();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED && commitStart != 0) {
+                        metrics.commit().record(System.nanoTime() - commitStart, TimeUnit.NANOSECONDS);
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        Object start = context.getAttribute(START_KEY);
+        if (start instanceof Long startNanos) {
+            ingestionMetrics.forStep(context.getStepContext().getStepExecution())
+                    .chunk().record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        ingestionMetrics.current().retried(throwable);
+    }
+}
@@ -1,13 +1,22 @@
 package gov.ihd.apiservice.batch;
 
 import gov.ihd.apiservice.event.JobEventListener;
+import gov.ihd.apiservice.repository.StagingRepository;
+import gov.ihd.apiservice.service.AnalyticsService;
+import gov.ihd.apiservice.service.ErrorLogService;
+import gov.ihd.apiservice.service.FeedbackAggregateService;
+import gov.ihd.apiservice.service.IngestionMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.StepExecution;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -15,11 +24,32 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class JobCompletionNotificationListener implements JobExecutionListener {
     private final JobEventListener jobEventListener;
+    private final StagingRepository stagingRepository;
+    private final ErrorLogService errorLogService;
+    private final IngestionMetrics ingestionMetrics;
+    private final FeedbackAggregateService aggregateService;
+    private final AnalyticsService analyticsService;
+
+    /**
+     * Number of fact rows the job wrote. In staging mode this is what the merge step inserted,
+     * since the staged rows are already counted as writes of the load step.
+     */
+    public static int recordsWritten(JobExecution jobExecution) {
+        if (jobExecution.getExecutionContext().containsKey(StagingMergeTasklet.MERGE_INSERTED_KEY)) {
+            return (int) jobExecution.getExecutionContext().getLong(StagingMergeTasklet.MERGE_INSERTED_KEY);
+        }
+        // Partition steps are named "<worker>:<partition>"; their counts are already summed into the manager step
+        return (int) jobExecution.getStepExecutions().stream()
+                .filter(stepExecution -> !stepExecution.getStepName().contains(":"))
+                .mapToLong(StepExecution::getWriteCount)
+                .sum();
+    }
 
     @Override
     public void beforeJob(JobExecution jobExecution) {
         String jobId = jobExecution.getJobParameters().getString("jobId");
         if (jobId != null) {
+            ingestionMetrics.jobStarted(jobId);
             log.info("Job {} is starting", jobExecution.getJobInstance().getJobName());
         }
     }
@@ -29,10 +59,15 @@ public class JobCompletionNotificationListener implements JobExecutionListener {
         String jobId = jobExecution.getJobParameters().getString("jobId");
         
         if (jobId != null) {
+            errorLogService.completeJob(jobId);
+            ingestionMetrics.jobFinished(jobId);
+            // Before the completion events, so readers notified of them see the new totals.
+            // Chunks a failed job committed are summarized as well.
+            aggregateService.refreshJob(jobId);
+            analyticsService.invalidate();
             if (jobExecution.getStatus() == BatchStatus.COMPLETED) {
-                int recordsProcessed = (int)jobExecution.getStepExecutions().stream()
-                        .mapToLong(stepExecution -> stepExecution.getWriteCount())
-                        .sum();
+                deleteSortedCopy(jobExecution);
+                int recordsProcessed = recordsWritten(jobExecution);
                 jobEventListener.onJobCompleted(jobId, recordsProcessed);
                 log.info("Job {} completed successfully. Processed {} records.", 
                     jobExecution.getJobInstance().getJobName(),
@@ -41,6 +76,8 @@ public class JobCompletionNotificationListener implements JobExecutionListener {
                 String errorMessage = jobExecution.getAllFailureExceptions().stream()
                         .map(Throwable::getMessage)
                         .collect(Collectors.joining("; "));
+                // Staged rows of a failed job are never merged
+                stagingRepository.deleteStaged(jobId);
                 jobEventListener.onJobFailed(jobId, errorMessage);
                 log.error("Job {} failed with status {}. Errors: {}", 
                     jobExecution.getJobInstance().getJobName(),
@@ -49,4 +86,18 @@ public class JobCompletionNotificationListener implements JobExecutionListener {
             }
         }
     }
+
+    /**
+     * Delete the sorted copy of a presorted job; a failed job keeps it for a restart
+     */
+    private void deleteSortedCopy(JobExecution jobExecution) {
+        String sortedFile = jobExecution.getExecutionContext().getString(DateSortTasklet.SORTED_FILE_KEY, null);
+        if (sortedFile != null) {
+            try {
+                Files.deleteIfExists(Path.of(sortedFile));
+            } catch (IOException e) {
+                log.warn("Could not delete sorted copy {}: {}", sortedFile, e.getMessage());
+            }
+        }
+    }
 }
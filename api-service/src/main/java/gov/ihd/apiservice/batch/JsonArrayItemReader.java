@@ -0,0 +1,83 @@
+package gov.ihd.apiservice.batch;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import gov.ihd.apiservice.util.JsonObjectScanner;
+import org.springframework.batch.item.ParseException;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Reads the objects of a top-level JSON array one at a time. Object boundaries are found
+ * with a {@link JsonObjectScanner} and each object is decoded straight from the read buffer.
+ * With offsets from a {@link gov.ihd.apiservice.util.JsonArrayIndex} the reader covers one
+ * partition of the array; without them it reads the whole file.
+ */
+public class JsonArrayItemReader<T> extends ByteRangeItemReader<T> {
+
+    private final JsonObjectScanner scanner = new JsonObjectScanner();
+    private boolean arrayClosed;
+
+    public JsonArrayItemReader(Path path, ObjectReader objectReader, int bufferSize) {
+        super(path, objectReader, bufferSize);
+    }
+
+    @Override
+    public T read() throws Exception {
+        while (true) {
+            if (arrayClosed || pastEndOffset()) {
+                return null;
+            }
+            if (position == limit) {
+                if (endOfFile) {
+                    return null;
+                }
+                fill();
+                continue;
+            }
+
+            // Skip the opening bracket, separators and whitespace between objects
+            byte b = buffer[position];
+            if (b == ',' || b == '[' || isWhitespace(b)) {
+                position++;
+                continue;
+            }
+            if (b == ']') {
+                arrayClosed = true;
+                return null;
+            }
+            if (b != '{') {
+                throw new ParseException("Expected a JSON object at byte offset " + (bufferOffset + position)
+                        + " of " + path.getFileName());
+            }
+
+            int end = findObjectEnd();
+            int start = position;
+            position = end;
+            return decode(start, end);
+        }
+    }
+
+    /**
+     * @return The index after the closing brace of the object starting at the current position
+     */
+    private int findObjectEnd() throws Exception {
+        while (true) {
+            scanner.reset();
+            ByteBuffer view = ByteBuffer.wrap(buffer);
+            int i = position;
+            while ((i = scanner.next(view, i, limit)) >= 0) {
+                if (scanner.getDepth() == 0) {
+                    return i + 1;
+                }
+                i++;
+            }
+            if (endOfFile) {
+                throw new ParseException("Truncated JSON object at byte offset " + (bufferOffset + position)
+                        + " of " + path.getFileName());
+            }
+            // The object continues past the buffered bytes; rescan it once more data is read
+            fill();
+        }
+    }
+}
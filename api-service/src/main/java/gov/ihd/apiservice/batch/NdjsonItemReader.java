@@ -0,0 +1,64 @@
+package gov.ihd.apiservice.batch;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.nio.file.Path;
+
+/**
+ * Reads newline delimited JSON (NDJSON / JSON Lines) one record per line. Records are split
+ * on '\n' bytes and decoded straight from the read buffer, so no String is built per line.
+ * Blank lines and CRLF line endings are tolerated.
+ */
+public class NdjsonItemReader<T> extends ByteRangeItemReader<T> {
+
+    public NdjsonItemReader(Path path, ObjectReader objectReader, int bufferSize) {
+        super(path, objectReader, bufferSize);
+    }
+
+    @Override
+    public T read() throws Exception {
+        while (true) {
+            if (pastEndOffset()) {
+                return null;
+            }
+            int newline = indexOfNewline();
+            if (newline < 0) {
+                if (!endOfFile) {
+                    fill();
+                    continue;
+                }
+                if (position == limit) {
+                    return null;
+                }
+                // Last record without a trailing newline
+                newline = limit;
+            }
+
+            int start = position;
+            int end = newline;
+            position = newline < limit ? newline + 1 : limit;
+
+            // Trim surrounding whitespace, including the '\r' of CRLF line endings
+            while (start < end && isWhitespace(buffer[start])) {
+                start++;
+            }
+            while (end > start && isWhitespace(buffer[end - 1])) {
+                end--;
+            }
+            if (start == end) {
+                continue;
+            }
+
+            return decode(start, end);
+        }
+    }
+
+    private int indexOfNewline() {
+        for (int i = position; i < limit; i++) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
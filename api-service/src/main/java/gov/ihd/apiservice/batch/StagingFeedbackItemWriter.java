@@ -0,0 +1,99 @@
+package gov.ihd.apiservice.batch;
+
+import gov.ihd.apiservice.entity.FactFeedback;
+import gov.ihd.apiservice.repository.StagingRepository;
+import gov.ihd.apiservice.service.IngestionMetrics;
+import gov.ihd.apiservice.util.CsvCopyBuffer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * COPYs every row of a chunk into the staging tables under the job id, without checking
+ * for duplicates. {@link StagingMergeTasklet} merges the staged rows once the file is read.
+ * Selected with app.batch.writer=staging.
+ */
+@Slf4j
+@Component
+@StepScope
+@RequiredArgsConstructor
+public class StagingFeedbackItemWriter implements ItemWriter<FeedbackBatchItem> {
+
+    private static final int BYTES_PER_FACT_ROW_ESTIMATE = 560;
+
+    private final DataSource dataSource;
+    private final IngestionMetrics ingestionMetrics;
+
+    @Value("#{jobParameters['jobId']}")
+    private String jobId;
+
+    @Override
+    public void write(Chunk<? extends FeedbackBatchItem> items) throws Exception {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        CsvCopyBuffer facts = new CsvCopyBuffer(items.size() * BYTES_PER_FACT_ROW_ESTIMATE);
+        CsvCopyBuffer hashtagBridges = new CsvCopyBuffer(items.size() * 80);
+        CsvCopyBuffer agencyBridges = new CsvCopyBuffer(items.size() * 80);
+
+        for (FeedbackBatchItem item : items) {
+            if (item == null || item.getFeedback() == null) {
+                continue;
+            }
+            FactFeedback feedback = item.getFeedback();
+
+            CopyFeedbackItemWriter.appendFact(facts.append(jobId), feedback);
+
+            if (item.getHashtagIds() != null) {
+                for (int hashtagId : item.getHashtagIds()) {
+                    hashtagBridges.append(jobId)
+                            .append(feedback.getFeedbackId())
+                            .append(hashtagId)
+                            .append(feedback.getCreatedDate())
+                            .endRow();
+                }
+            }
+
+            if (item.getAgencyIds() != null) {
+                for (int agencyId : item.getAgencyIds()) {
+                    agencyBridges.append(jobId)
+                            .append(feedback.getFeedbackId())
+                            .append(agencyId)
+                            .append(feedback.getCreatedDate())
+                            .endRow();
+                }
+            }
+        }
+
+        log.debug("Staging {} feedback items for job {}", facts.getRowCount(), jobId);
+
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            IngestionMetrics.StepMetrics metrics = ingestionMetrics.current();
+            long start = System.nanoTime();
+            facts.copyTo(copyManager, StagingRepository.COPY_FACT_SQL);
+            long factsCopied = System.nanoTime();
+            hashtagBridges.copyTo(copyManager, StagingRepository.COPY_HASHTAG_BRIDGE_SQL);
+            agencyBridges.copyTo(copyManager, StagingRepository.COPY_AGENCY_BRIDGE_SQL);
+            metrics.factWrite().record(factsCopied - start, TimeUnit.NANOSECONDS);
+            metrics.bridgeWrite().record(System.nanoTime() - factsCopied, TimeUnit.NANOSECONDS);
+            metrics.factRowsWritten(facts.getRowCount());
+            metrics.bridgeRowsWritten(hashtagBridges.getRowCount() + agencyBridges.getRowCount());
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package gov.ihd.apiservice.batch;
+
+import gov.ihd.apiservice.repository.StagingRepository;
+import gov.ihd.apiservice.service.FeedbackPartitionManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.stereotype.Component;
+
+/**
+ * Merges the rows a job staged into fact_feedback and the bridge tables in one transaction,
+ * then clears the job's staging rows. Rows whose (tweet_id, created_date) already exists,
+ * in the table or earlier in the same file, are dropped and reported as duplicates.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StagingMergeTasklet implements Tasklet {
+
+    public static final String MERGE_INSERTED_KEY = "merge.inserted";
+    public static final String MERGE_DUPLICATES_KEY = "merge.duplicates";
+
+    private final StagingRepository stagingRepository;
+    private final FeedbackPartitionManager partitionManager;
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) {
+        String jobId = chunkContext.getStepContext().getStepExecution().getJobParameters().getString("jobId");
+
+        // The chunks created the partitions of the staged months
+        partitionManager.lockForWrite();
+        long staged = stagingRepository.countStagedFacts(jobId);
+        int inserted = stagingRepository.mergeFacts(jobId);
+        int hashtagBridges = stagingRepository.mergeHashtagBridges(jobId);
+        int agencyBridges = stagingRepository.mergeAgencyBridges(jobId);
+        stagingRepository.deleteStaged(jobId);
+
+        long duplicates = staged - inserted;
+        contribution.incrementWriteCount(inserted);
+        contribution.incrementFilterCount(duplicates);
+
+        ExecutionContext jobContext = chunkContext.getStepContext().getStepExecution()
+                .getJobExecution().getExecutionContext();
+        jobContext.putLong(MERGE_INSERTED_KEY, inserted);
+        jobContext.putLong(MERGE_DUPLICATES_KEY, duplicates);
+
+        log.info("Merged staged rows for job {}: {} inserted, {} duplicates dropped, {} hashtag bridges, {} agency bridges",
+                jobId, inserted, duplicates, hashtagBridges, agencyBridges);
+        return RepeatStatus.FINISHED;
+    }
+}
@@ -1,15 +1,29 @@
 package gov.ihd.apiservice.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
 public class AsyncConfig {
     
+    @Value("${app.executor.mode:platform}")
+    private String executorMode;
+    
+    /**
+     * Runs job launches. The number of running jobs is bounded by the JobScheduler, so in
+     * virtual mode every launch simply gets its own virtual thread.
+     */
     @Bean
     public TaskExecutor taskExecutor() {
+        if (isVirtual(executorMode)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("batch-job-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(10);
@@ -18,4 +32,15 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+    
+    /**
+     * @param mode Value of app.executor.mode: platform (thread pools, default) or virtual
+     */
+    public static boolean isVirtual(String mode) {
+        return switch (mode.toLowerCase()) {
+            case "platform" -> false;
+            case "virtual" -> true;
+            default -> throw new IllegalStateException("Unknown app.executor.mode: " + mode);
+        };
+    }
 }
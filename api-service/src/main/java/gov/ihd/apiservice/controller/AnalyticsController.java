@@ -0,0 +1,118 @@
+package gov.ihd.apiservice.controller;
+
+import gov.ihd.apiservice.dto.AgencyPerformanceDto;
+import gov.ihd.apiservice.dto.ApiResponse;
+import gov.ihd.apiservice.dto.DailyFeedbackDto;
+import gov.ihd.apiservice.dto.HashtagUsageDto;
+import gov.ihd.apiservice.dto.IssueDistributionDto;
+import gov.ihd.apiservice.service.AnalyticsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Read API over the feedback summary tables. Every report takes an optional inclusive date
+ * range (from, to) and language. Responses carry an ETag; a request whose If-None-Match
+ * matches it gets 304 Not Modified without a body.
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/analytics")
+public class AnalyticsController {
+
+    private static final int MAX_LANGUAGE_LENGTH = 10;
+
+    private final AnalyticsService analyticsService;
+
+    @Value("${app.analytics.max-limit:500}")
+    private int maxLimit;
+
+    @GetMapping("/daily")
+    public ResponseEntity<ApiResponse<List<DailyFeedbackDto>>> getDailyFeedback(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "language", required = false) String language) {
+        String error = validate(from, to, language, 1);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(error));
+        }
+        return respond("Daily feedback retrieved successfully", analyticsService.getDailyFeedback(from, to, language));
+    }
+
+    @GetMapping("/issues")
+    public ResponseEntity<ApiResponse<List<IssueDistributionDto>>> getIssueDistribution(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "language", required = false) String language) {
+        String error = validate(from, to, language, 1);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(error));
+        }
+        return respond("Issue distribution retrieved successfully",
+                analyticsService.getIssueDistribution(from, to, language));
+    }
+
+    @GetMapping("/hashtags")
+    public ResponseEntity<ApiResponse<List<HashtagUsageDto>>> getTopHashtags(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "language", required = false) String language,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        String error = validate(from, to, language, limit);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(error));
+        }
+        return respond("Top hashtags retrieved successfully",
+                analyticsService.getTopHashtags(from, to, language, limit));
+    }
+
+    @GetMapping("/agencies")
+    public ResponseEntity<ApiResponse<List<AgencyPerformanceDto>>> getAgencyPerformance(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "language", required = false) String language,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        String error = validate(from, to, language, limit);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(error));
+        }
+        return respond("Agency performance retrieved successfully",
+                analyticsService.getAgencyPerformance(from, to, language, limit));
+    }
+
+    /**
+     * @return The reason the filters are invalid, or null
+     */
+    private String validate(LocalDate from, LocalDate to, String language, int limit) {
+        if (from != null && to != null && from.isAfter(to)) {
+            return "from must not be after to";
+        }
+        if (language != null && language.length() > MAX_LANGUAGE_LENGTH) {
+            return "language must be at most " + MAX_LANGUAGE_LENGTH + " characters";
+        }
+        if (limit < 1 || limit > maxLimit) {
+            return "limit must be between 1 and " + maxLimit;
+        }
+        return null;
+    }
+
+    /**
+     * Spring answers If-None-Match itself when the response has an ETag. no-cache lets clients
+     * keep a report but makes them revalidate it, since a finished job changes the totals.
+     */
+    private static <T> ResponseEntity<ApiResponse<T>> respond(String message, AnalyticsService.CachedReport<T> report) {
+        return ResponseEntity.ok()
+                .eTag(report.etag())
+                .cacheControl(CacheControl.noCache())
+                .body(ApiResponse.success(message, report.data()));
+    }
+}
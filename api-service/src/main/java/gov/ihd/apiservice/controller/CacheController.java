@@ -0,0 +1,32 @@
+package gov.ihd.apiservice.controller;
+
+import gov.ihd.apiservice.dto.ApiResponse;
+import gov.ihd.apiservice.dto.CacheStatsDto;
+import gov.ihd.apiservice.service.AnalyticsService;
+import gov.ihd.apiservice.service.DimensionCacheService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/cache")
+public class CacheController {
+
+    private final DimensionCacheService dimensionCacheService;
+    private final AnalyticsService analyticsService;
+
+    @GetMapping("/dimensions")
+    public ResponseEntity<ApiResponse<List<CacheStatsDto>>> getDimensionCacheStats() {
+        return ResponseEntity.ok(ApiResponse.success(dimensionCacheService.getStats()));
+    }
+
+    @GetMapping("/analytics")
+    public ResponseEntity<ApiResponse<CacheStatsDto>> getAnalyticsCacheStats() {
+        return ResponseEntity.ok(ApiResponse.success(analyticsService.getStats()));
+    }
+}
@@ -1,10 +1,15 @@
 package gov.ihd.apiservice.controller;
 
 import gov.ihd.apiservice.dto.ApiResponse;
+import gov.ihd.apiservice.dto.JobStatus;
 import gov.ihd.apiservice.dto.ProcessingJobDto;
+import gov.ihd.apiservice.exception.JobQueueFullException;
 import gov.ihd.apiservice.service.FileProcessingService;
+import gov.ihd.apiservice.util.FileUtils;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -23,7 +28,9 @@ public class FeedbackController {
     private final FileProcessingService fileProcessingService;
     
     @PostMapping(value = "/feedback/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<ApiResponse<ProcessingJobDto>> uploadFeedbackFile(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<ApiResponse<ProcessingJobDto>> uploadFeedbackFile(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "priority", defaultValue = "0") int priority) {
         try {
             if (file == null || file.isEmpty()) {
                 return ResponseEntity
@@ -31,18 +38,20 @@ public class FeedbackController {
                         .body(ApiResponse.<ProcessingJobDto>error("Please select a file to upload"));
             }
             
-            // Check if file is JSON
-            if (!file.getOriginalFilename().endsWith(".json")) {
+            // Check if file is JSON, NDJSON or JSON Lines, possibly compressed
+            if (!FileUtils.isValidJsonFile(file)) {
                 return ResponseEntity
                         .badRequest()
-                        .body(ApiResponse.<ProcessingJobDto>error("Only JSON files are supported"));
+                        .body(ApiResponse.<ProcessingJobDto>error("Only JSON, NDJSON and JSON Lines files, optionally gzip or Zstandard compressed, are supported"));
             }
             
-            ProcessingJobDto job = fileProcessingService.uploadAndProcessFile(file);
+            ProcessingJobDto job = fileProcessingService.uploadAndProcessFile(file, priority);
             return ResponseEntity
                     .status(HttpStatus.ACCEPTED)
-                    .body(ApiResponse.<ProcessingJobDto>success("File uploaded and processing started", job));
+                    .body(ApiResponse.<ProcessingJobDto>success(startedMessage("File uploaded", job), job));
             
+        } catch (JobQueueFullException e) {
+            return queueFull(e);
         } catch (IOException e) {
             log.error("Error uploading file: {}", e.getMessage(), e);
             return ResponseEntity
@@ -56,6 +65,63 @@ public class FeedbackController {
         }
     }
     
+    /**
+     * Streams the raw request body into the upload directory without multipart parsing, so
+     * the file is written once and is not limited by the multipart size settings.
+     * Form encoded bodies are not accepted, since the servlet container would consume them.
+     * Compressed bodies are stored as they arrive and decompressed by the batch reader.
+     */
+    @PutMapping(value = "/feedback/stream", consumes = {
+            MediaType.APPLICATION_OCTET_STREAM_VALUE, MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+            "application/gzip", "application/zstd"})
+    public ResponseEntity<ApiResponse<ProcessingJobDto>> streamFeedbackFile(
+            @RequestParam("filename") String filename,
+            @RequestHeader(value = "X-Checksum-CRC32C", required = false) String expectedChecksum,
+            @RequestParam(value = "priority", defaultValue = "0") int priority,
+            HttpServletRequest request) {
+        try {
+            if (!FileUtils.isPlainFilename(filename) || !FileUtils.isValidJsonFile(filename)) {
+                return ResponseEntity
+                        .badRequest()
+                        .body(ApiResponse.<ProcessingJobDto>error("filename must be a plain .json, .ndjson or .jsonl file name, optionally ending in .gz or .zst"));
+            }
+            
+            ProcessingJobDto job = fileProcessingService.uploadStreamAndProcess(filename, request.getInputStream(),
+                    expectedChecksum, priority);
+            return ResponseEntity
+                    .status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.<ProcessingJobDto>success(startedMessage("File streamed", job), job));
+            
+        } catch (JobQueueFullException e) {
+            return queueFull(e);
+        } catch (IOException e) {
+            log.error("Error streaming file: {}", e.getMessage(), e);
+            return ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.<ProcessingJobDto>error("Error streaming file: " + e.getMessage()));
+        } catch (RuntimeException e) {
+            log.error("Error processing file: {}", e.getMessage(), e);
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.<ProcessingJobDto>error(e.getMessage()));
+        }
+    }
+    
+    private static String startedMessage(String received, ProcessingJobDto job) {
+        if (job.getStatus() == JobStatus.QUEUED && job.getQueuePosition() != null) {
+            return received + " and queued at position " + job.getQueuePosition();
+        }
+        return received + " and processing started";
+    }
+    
+    private static ResponseEntity<ApiResponse<ProcessingJobDto>> queueFull(JobQueueFullException e) {
+        log.warn("Refusing upload: {}", e.getMessage());
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(ApiResponse.<ProcessingJobDto>error(e.getMessage()));
+    }
+    
     // Jobs endpoints have been moved to JobController
     // Please use /api/v1/jobs and /api/v1/jobs/{jobId} endpoints instead
 
@@ -1,16 +1,24 @@
 package gov.ihd.apiservice.controller;
 
 import gov.ihd.apiservice.dto.ApiResponse;
+import gov.ihd.apiservice.dto.JobPageDto;
+import gov.ihd.apiservice.dto.JobStatus;
 import gov.ihd.apiservice.dto.ProcessingJobDto;
+import gov.ihd.apiservice.service.JobEventBroadcaster;
 import gov.ihd.apiservice.service.JobProgressService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -19,18 +27,45 @@ import java.util.List;
 @RequestMapping("/api/v1/jobs")
 public class JobController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final JobProgressService jobProgressService;
+    private final JobEventBroadcaster jobEventBroadcaster;
+
+    @Value("${app.job-history.max-page-size:500}")
+    private int maxPageSize;
 
     @Autowired
-    public JobController(JobProgressService jobProgressService) {
+    public JobController(JobProgressService jobProgressService, JobEventBroadcaster jobEventBroadcaster) {
         this.jobProgressService = jobProgressService;
+        this.jobEventBroadcaster = jobEventBroadcaster;
     }
 
+    /**
+     * List jobs newest first, one page at a time. The cursor of the next page is returned in
+     * the X-Next-Cursor header and is absent on the last page.
+     */
     @GetMapping
-    public ResponseEntity<ApiResponse<List<ProcessingJobDto>>> getAllJobs() {
-        List<ProcessingJobDto> jobs = jobProgressService.getAllJobs();
-        ApiResponse<List<ProcessingJobDto>> response = new ApiResponse<>(true, "Jobs retrieved successfully", jobs);
-        return ResponseEntity.ok(response);
+    public ResponseEntity<ApiResponse<List<ProcessingJobDto>>> getAllJobs(
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", defaultValue = "${app.job-history.page-size:100}") int limit,
+            @RequestParam(value = "status", required = false) JobStatus status) {
+        if (limit < 1 || limit > maxPageSize) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(false, "limit must be between 1 and " + maxPageSize, null));
+        }
+        JobPageDto page;
+        try {
+            page = jobProgressService.listJobs(after, limit, status);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse<>(false, e.getMessage(), null));
+        }
+        ApiResponse<List<ProcessingJobDto>> response = new ApiResponse<>(true, "Jobs retrieved successfully", page.getJobs());
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            builder.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.body(response);
     }
 
     @GetMapping("/{jobId}")
@@ -43,4 +78,36 @@ public class JobController {
         ApiResponse<ProcessingJobDto> response = new ApiResponse<>(true, "Job retrieved successfully", job);
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Stream updates of every job as Server-Sent Events, starting with the current state of all jobs
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamAllJobEvents() {
+        return subscribe(JobEventBroadcaster.ALL_JOBS, jobProgressService.getAllJobs());
+    }
+
+    /**
+     * Stream progress, completion and failure events of one job. The stream ends after the
+     * job completes or fails.
+     */
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJobEvents(@PathVariable String jobId) {
+        ProcessingJobDto job = jobProgressService.getJobStatus(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return subscribe(jobId, List.of(job));
+    }
+
+    private ResponseEntity<SseEmitter> subscribe(String key, List<ProcessingJobDto> current) {
+        SseEmitter emitter = jobEventBroadcaster.subscribe(key, current);
+        if (emitter == null) {
+            log.warn("Rejected job event subscription, {} subscribers are connected", jobEventBroadcaster.getSubscriberCount());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "10")
+                    .build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
 }
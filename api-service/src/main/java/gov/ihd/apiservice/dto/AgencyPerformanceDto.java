@@ -0,0 +1,16 @@
+package gov.ihd.apiservice.dto;
+
+import lombok.Data;
+
+@Data
+public class AgencyPerformanceDto {
+    private String agencyName;
+    private String sector;
+    private String department;
+    // Feedback items mentioning the agency
+    private long mentionCount;
+    private long totalRetweets;
+    private long totalReplies;
+    private long totalLikes;
+    private long totalInteractions;
+}
@@ -0,0 +1,14 @@
+package gov.ihd.apiservice.dto;
+
+import lombok.Data;
+
+@Data
+public class CacheStatsDto {
+    private String name;
+    private int size;
+    private int maxSize;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private double hitRatio;
+}
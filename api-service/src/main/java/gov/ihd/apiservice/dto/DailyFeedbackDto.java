@@ -0,0 +1,19 @@
+package gov.ihd.apiservice.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class DailyFeedbackDto {
+    private LocalDate date;
+    private long feedbackCount;
+    private long totalRetweets;
+    private long totalReplies;
+    private long totalLikes;
+    private long totalQuotes;
+    private long totalBookmarks;
+    private long totalImpressions;
+    // Retweets + replies + likes
+    private long totalInteractions;
+}
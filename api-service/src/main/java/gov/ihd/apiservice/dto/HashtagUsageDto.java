@@ -0,0 +1,10 @@
+package gov.ihd.apiservice.dto;
+
+import lombok.Data;
+
+@Data
+public class HashtagUsageDto {
+    private String hashtagText;
+    private long usageCount;
+    private long totalInteractions;
+}
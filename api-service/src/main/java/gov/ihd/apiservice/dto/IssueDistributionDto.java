@@ -0,0 +1,10 @@
+package gov.ihd.apiservice.dto;
+
+import lombok.Data;
+
+@Data
+public class IssueDistributionDto {
+    private String issueClassCode;
+    private long feedbackCount;
+    private long totalInteractions;
+}
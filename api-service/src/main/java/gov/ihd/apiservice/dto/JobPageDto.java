@@ -0,0 +1,14 @@
+package gov.ihd.apiservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class JobPageDto {
+    private List<ProcessingJobDto> jobs;
+    // Pass as ?after= to get the next page; null on the last page
+    private String nextCursor;
+}
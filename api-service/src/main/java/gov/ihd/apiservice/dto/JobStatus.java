@@ -1,6 +1,7 @@
 package gov.ihd.apiservice.dto;
 
 public enum JobStatus {
+    QUEUED,
     STARTED,
     COMPLETED,
     FAILED,
@@ -13,4 +13,9 @@ public class ProcessingJobDto {
     private LocalDateTime endTime;
     private Integer recordsProcessed;
     private String errorMessage;
+    // Set for streamed uploads: bytes received and their CRC32C
+    private Long fileSize;
+    private String checksum;
+    // 1-based position in the job queue while the job is QUEUED
+    private Integer queuePosition;
 }
@@ -25,6 +25,12 @@ public class DimLocation {
     @Column(name = "region", length = 100)
     private String region;
     
+    /**
+     * Normalized natural key, generated by the database from country, city and region
+     */
+    @Column(name = "location_key", insertable = false, updatable = false)
+    private String locationKey;
+    
     public void setLocationString(String locationString) {
         this.locationString = locationString;
     }
@@ -28,6 +28,11 @@ public class JobErrorLog {
     @Column(name = "item_data", columnDefinition = "TEXT")
     private String itemData;
     
+    // Hash of the exception classes and stack frames; errors of a job with the same hash
+    // share the stack_trace stored on the first of them
+    @Column(name = "stack_hash", length = 16)
+    private String stackHash;
+    
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
     
@@ -37,4 +42,11 @@ public class JobErrorLog {
         this.stackTrace = stackTrace;
         this.itemData = itemData;
     }
+    
+    public JobErrorLog(String jobId, String errorMessage, String stackTrace, String itemData,
+                       String stackHash, LocalDateTime createdAt) {
+        this(jobId, errorMessage, stackTrace, itemData);
+        this.stackHash = stackHash;
+        this.createdAt = createdAt;
+    }
 }
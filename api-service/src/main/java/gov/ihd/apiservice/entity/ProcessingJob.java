@@ -0,0 +1,42 @@
+package gov.ihd.apiservice.entity;
+
+import gov.ihd.apiservice.dto.JobStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "processing_job", schema = "ihd_analytics")
+public class ProcessingJob {
+
+    @Id
+    @Column(name = "job_id", length = 100)
+    private String jobId;
+
+    @Column(name = "filename", nullable = false)
+    private String filename;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private JobStatus status;
+
+    @Column(name = "start_time", nullable = false)
+    private LocalDateTime startTime;
+
+    @Column(name = "end_time")
+    private LocalDateTime endTime;
+
+    @Column(name = "records_processed", nullable = false)
+    private Integer recordsProcessed;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    @Column(name = "checksum", length = 8)
+    private String checksum;
+}
@@ -2,6 +2,7 @@ package gov.ihd.apiservice.event;
 
 public interface JobEventListener {
     void onJobProgress(String jobId, int recordsProcessed);
+    void onRecordsProcessed(String jobId, int count);
     void onJobCompleted(String jobId, int recordsProcessed);
     void onJobFailed(String jobId, String errorMessage);
 }
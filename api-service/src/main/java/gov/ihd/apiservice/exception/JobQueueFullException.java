@@ -0,0 +1,20 @@
+package gov.ihd.apiservice.exception;
+
+/**
+ * Thrown when a job cannot be admitted because the job queue is full
+ */
+public class JobQueueFullException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int retryAfterSeconds;
+
+    public JobQueueFullException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
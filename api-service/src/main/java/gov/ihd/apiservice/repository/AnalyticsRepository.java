@@ -0,0 +1,130 @@
+package gov.ihd.apiservice.repository;
+
+import gov.ihd.apiservice.dto.AgencyPerformanceDto;
+import gov.ihd.apiservice.dto.DailyFeedbackDto;
+import gov.ihd.apiservice.dto.HashtagUsageDto;
+import gov.ihd.apiservice.dto.IssueDistributionDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read queries of the analytics API. They only touch the agg_daily_* summary tables and
+ * the dimensions, never fact_feedback, so dashboards do not compete with the import for it.
+ * Every filter is optional: a null bound or language leaves that side unfiltered.
+ */
+@Repository
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class AnalyticsRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<DailyFeedbackDto> findDailyFeedback(LocalDate from, LocalDate to, String language) {
+        List<Object> args = new ArrayList<>();
+        String sql = "SELECT a.full_date, SUM(a.feedback_count), SUM(a.total_retweets), SUM(a.total_replies), " +
+                "SUM(a.total_likes), SUM(a.total_quotes), SUM(a.total_bookmarks), SUM(a.total_impressions), " +
+                "SUM(a.total_interactions) FROM ihd_analytics.agg_daily_feedback a" +
+                where(from, to, language, args) +
+                " GROUP BY a.full_date ORDER BY a.full_date";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            DailyFeedbackDto day = new DailyFeedbackDto();
+            day.setDate(rs.getDate(1).toLocalDate());
+            day.setFeedbackCount(rs.getLong(2));
+            day.setTotalRetweets(rs.getLong(3));
+            day.setTotalReplies(rs.getLong(4));
+            day.setTotalLikes(rs.getLong(5));
+            day.setTotalQuotes(rs.getLong(6));
+            day.setTotalBookmarks(rs.getLong(7));
+            day.setTotalImpressions(rs.getLong(8));
+            day.setTotalInteractions(rs.getLong(9));
+            return day;
+        }, args.toArray());
+    }
+
+    public List<IssueDistributionDto> findIssueDistribution(LocalDate from, LocalDate to, String language) {
+        List<Object> args = new ArrayList<>();
+        String sql = "SELECT di.issue_class_code, SUM(a.feedback_count) AS feedback_count, SUM(a.total_interactions) " +
+                "FROM ihd_analytics.agg_daily_issue a " +
+                "JOIN ihd_analytics.dim_issue di ON di.issue_id = a.issue_id" +
+                where(from, to, language, args) +
+                " GROUP BY di.issue_class_code ORDER BY feedback_count DESC, di.issue_class_code";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            IssueDistributionDto issue = new IssueDistributionDto();
+            issue.setIssueClassCode(rs.getString(1));
+            issue.setFeedbackCount(rs.getLong(2));
+            issue.setTotalInteractions(rs.getLong(3));
+            return issue;
+        }, args.toArray());
+    }
+
+    /**
+     * @param limit Number of hashtags, most used first
+     */
+    public List<HashtagUsageDto> findTopHashtags(LocalDate from, LocalDate to, String language, int limit) {
+        List<Object> args = new ArrayList<>();
+        String sql = "SELECT dh.hashtag_text, SUM(a.usage_count) AS usage_count, SUM(a.total_interactions) " +
+                "FROM ihd_analytics.agg_daily_hashtag a " +
+                "JOIN ihd_analytics.dim_hashtag dh ON dh.hashtag_id = a.hashtag_id" +
+                where(from, to, language, args) +
+                " GROUP BY dh.hashtag_text ORDER BY usage_count DESC, dh.hashtag_text LIMIT ?";
+        args.add(limit);
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            HashtagUsageDto hashtag = new HashtagUsageDto();
+            hashtag.setHashtagText(rs.getString(1));
+            hashtag.setUsageCount(rs.getLong(2));
+            hashtag.setTotalInteractions(rs.getLong(3));
+            return hashtag;
+        }, args.toArray());
+    }
+
+    /**
+     * @param limit Number of agencies, most mentioned first
+     */
+    public List<AgencyPerformanceDto> findAgencyPerformance(LocalDate from, LocalDate to, String language, int limit) {
+        List<Object> args = new ArrayList<>();
+        String sql = "SELECT da.agency_name, da.sector, da.department, SUM(a.mention_count) AS mention_count, " +
+                "SUM(a.total_retweets), SUM(a.total_replies), SUM(a.total_likes), SUM(a.total_interactions) " +
+                "FROM ihd_analytics.agg_daily_agency a " +
+                "JOIN ihd_analytics.dim_agency da ON da.agency_id = a.agency_id" +
+                where(from, to, language, args) +
+                " GROUP BY da.agency_name, da.sector, da.department " +
+                "ORDER BY mention_count DESC, da.agency_name LIMIT ?";
+        args.add(limit);
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            AgencyPerformanceDto agency = new AgencyPerformanceDto();
+            agency.setAgencyName(rs.getString(1));
+            agency.setSector(rs.getString(2));
+            agency.setDepartment(rs.getString(3));
+            agency.setMentionCount(rs.getLong(4));
+            agency.setTotalRetweets(rs.getLong(5));
+            agency.setTotalReplies(rs.getLong(6));
+            agency.setTotalLikes(rs.getLong(7));
+            agency.setTotalInteractions(rs.getLong(8));
+            return agency;
+        }, args.toArray());
+    }
+
+    private static String where(LocalDate from, LocalDate to, String language, List<Object> args) {
+        StringBuilder where = new StringBuilder(" WHERE TRUE");
+        if (from != null) {
+            where.append(" AND a.full_date >= ?");
+            args.add(Date.valueOf(from));
+        }
+        if (to != null) {
+            where.append(" AND a.full_date <= ?");
+            args.add(Date.valueOf(to));
+        }
+        if (language != null) {
+            where.append(" AND a.language = ?");
+            args.add(language);
+        }
+        return where.toString();
+    }
+}
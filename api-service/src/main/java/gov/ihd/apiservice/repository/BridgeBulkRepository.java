@@ -0,0 +1,56 @@
+package gov.ihd.apiservice.repository;
+
+import gov.ihd.apiservice.util.BridgeRowBuffer;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+
+/**
+ * Set-based inserts of the bridge rows of a chunk. Each bridge table gets one
+ * INSERT ... SELECT FROM unnest over the columns of a {@link BridgeRowBuffer}, bound as
+ * primitive arrays. Runs in the transaction of the chunk, after its fact rows are flushed.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BridgeBulkRepository {
+
+    private static final String INSERT_HASHTAG_SQL =
+            "INSERT INTO ihd_analytics.bridge_feedback_hashtag (feedback_id, hashtag_id, created_date) " +
+            "SELECT feedback_id, dimension_id, DATE '1970-01-01' + epoch_day " +
+            "FROM unnest(CAST(? AS bigint[]), CAST(? AS int[]), CAST(? AS int[])) AS b(feedback_id, dimension_id, epoch_day)";
+
+    private static final String INSERT_AGENCY_SQL =
+            "INSERT INTO ihd_analytics.bridge_feedback_agency (feedback_id, agency_id, created_date) " +
+            "SELECT feedback_id, dimension_id, DATE '1970-01-01' + epoch_day " +
+            "FROM unnest(CAST(? AS bigint[]), CAST(? AS int[]), CAST(? AS int[])) AS b(feedback_id, dimension_id, epoch_day)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public int insertHashtagBridges(BridgeRowBuffer rows) {
+        return insert(INSERT_HASHTAG_SQL, rows);
+    }
+
+    public int insertAgencyBridges(BridgeRowBuffer rows) {
+        return insert(INSERT_AGENCY_SQL, rows);
+    }
+
+    private int insert(String sql, BridgeRowBuffer rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        Integer inserted = jdbcTemplate.execute((PreparedStatementCreator) connection -> {
+            // The driver's own createArrayOf takes primitive arrays without boxing
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setArray(1, pgConnection.createArrayOf("int8", rows.getFeedbackIds()));
+            ps.setArray(2, pgConnection.createArrayOf("int4", rows.getDimensionIds()));
+            ps.setArray(3, pgConnection.createArrayOf("int4", rows.getEpochDays()));
+            return ps;
+        }, PreparedStatement::executeUpdate);
+        return inserted != null ? inserted : 0;
+    }
+}
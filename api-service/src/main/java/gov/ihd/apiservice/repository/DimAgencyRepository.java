@@ -1,12 +1,21 @@
 package gov.ihd.apiservice.repository;
 
 import gov.ihd.apiservice.entity.DimAgency;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DimAgencyRepository extends JpaRepository<DimAgency, Integer> {
     Optional<DimAgency> findByAgencyAccount(String agencyAccount);
+
+    /**
+     * Natural key to surrogate key pairs (agency_account, agency_id)
+     */
+    @Query("SELECT a.agencyAccount, a.agencyId FROM DimAgency a")
+    List<Object[]> findAllKeys(Pageable pageable);
 }
@@ -1,12 +1,21 @@
 package gov.ihd.apiservice.repository;
 
 import gov.ihd.apiservice.entity.DimHashtag;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DimHashtagRepository extends JpaRepository<DimHashtag, Integer> {
     Optional<DimHashtag> findByHashtagText(String hashtagText);
+
+    /**
+     * Natural key to surrogate key pairs (hashtag_text, hashtag_id)
+     */
+    @Query("SELECT h.hashtagText, h.hashtagId FROM DimHashtag h")
+    List<Object[]> findAllKeys(Pageable pageable);
 }
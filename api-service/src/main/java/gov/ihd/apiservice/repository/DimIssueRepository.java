@@ -1,12 +1,18 @@
 package gov.ihd.apiservice.repository;
 
 import gov.ihd.apiservice.entity.DimIssue;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DimIssueRepository extends JpaRepository<DimIssue, Integer> {
     Optional<DimIssue> findByIssueClassKeyAndIssueClassCode(Integer issueClassKey, String issueClassCode);
+
+    @Query("SELECT i.issueId FROM DimIssue i")
+    List<Integer> findAllIds(Pageable pageable);
 }
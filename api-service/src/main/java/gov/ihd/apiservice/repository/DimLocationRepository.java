@@ -1,12 +1,18 @@
 package gov.ihd.apiservice.repository;
 
 import gov.ihd.apiservice.entity.DimLocation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.util.List;
 
 @Repository
 public interface DimLocationRepository extends JpaRepository<DimLocation, Integer> {
-    Optional<DimLocation> findByCountryAndCityAndRegion(String country, String city, String region);
+    /**
+     * Natural key to surrogate key tuples (location_key, location_id)
+     */
+    @Query("SELECT l.locationKey, l.locationId FROM DimLocation l")
+    List<Object[]> findAllKeys(Pageable pageable);
 }
@@ -1,13 +1,23 @@
 package gov.ihd.apiservice.repository;
 
 import gov.ihd.apiservice.entity.DimTime;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DimTimeRepository extends JpaRepository<DimTime, Integer> {
-    Optional<DimTime> findByFullDate(LocalDate date);
+    Optional<DimTime> findFirstByOrderByFullDateAsc();
+
+    Optional<DimTime> findFirstByOrderByFullDateDesc();
+
+    /**
+     * Natural key to surrogate key pairs (full_date, time_id), most recent dates first
+     */
+    @Query("SELECT t.fullDate, t.timeId FROM DimTime t ORDER BY t.fullDate DESC")
+    List<Object[]> findAllKeys(Pageable pageable);
 }
@@ -1,9 +1,15 @@
 package gov.ihd.apiservice.repository;
 
 import gov.ihd.apiservice.entity.DimUser;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface DimUserRepository extends JpaRepository<DimUser, String> {
+    @Query("SELECT u.userId FROM DimUser u")
+    List<String> findAllIds(Pageable pageable);
 }
@@ -0,0 +1,302 @@
+package gov.ihd.apiservice.repository;
+
+import gov.ihd.apiservice.entity.DimIssue;
+import gov.ihd.apiservice.entity.DimLocation;
+import gov.ihd.apiservice.entity.DimTime;
+import gov.ihd.apiservice.entity.DimUser;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set-based upserts of dimension members for a whole chunk. Each dimension is resolved
+ * with one multi-row INSERT ... ON CONFLICT DO NOTHING RETURNING, followed by one keyed
+ * SELECT for the members that already existed.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DimensionBulkRepository {
+
+    private static final String INSERT_TIME_SQL =
+            "INSERT INTO ihd_analytics.dim_time (full_date, year, quarter, month, month_name, day, " +
+            "day_of_week, day_name, week_of_year, is_weekend, is_holiday) " +
+            "SELECT * FROM unnest(CAST(? AS date[]), CAST(? AS int[]), CAST(? AS int[]), CAST(? AS int[]), " +
+            "CAST(? AS varchar[]), CAST(? AS int[]), CAST(? AS int[]), CAST(? AS varchar[]), CAST(? AS int[]), " +
+            "CAST(? AS boolean[]), CAST(? AS boolean[])) " +
+            "ON CONFLICT (full_date) DO NOTHING " +
+            "RETURNING full_date, time_id";
+
+    private static final String SELECT_TIME_SQL =
+            "SELECT full_date, time_id FROM ihd_analytics.dim_time WHERE full_date = ANY(CAST(? AS date[]))";
+
+    private static final String INSERT_USER_SQL =
+            "INSERT INTO ihd_analytics.dim_user (user_id, username, created_at, followers_count, " +
+            "following_count, tweet_count, listed_count) " +
+            "SELECT * FROM unnest(CAST(? AS varchar[]), CAST(? AS varchar[]), CAST(? AS timestamp[]), " +
+            "CAST(? AS int[]), CAST(? AS int[]), CAST(? AS int[]), CAST(? AS int[])) " +
+            "ON CONFLICT (user_id) DO NOTHING";
+
+    private static final String INSERT_ISSUE_SQL =
+            "INSERT INTO ihd_analytics.dim_issue (issue_id, issue_class_key, issue_class_code) " +
+            "SELECT * FROM unnest(CAST(? AS int[]), CAST(? AS int[]), CAST(? AS varchar[])) " +
+            "ON CONFLICT (issue_id) DO NOTHING";
+
+    private static final String INSERT_LOCATION_SQL =
+            "INSERT INTO ihd_analytics.dim_location (location_string, country, city, region) " +
+            "SELECT * FROM unnest(CAST(? AS varchar[]), CAST(? AS varchar[]), CAST(? AS varchar[]), CAST(? AS varchar[])) " +
+            "ON CONFLICT (location_key) DO NOTHING " +
+            "RETURNING location_key, location_id";
+
+    private static final String SELECT_LOCATION_SQL =
+            "SELECT location_key, location_id FROM ihd_analytics.dim_location " +
+            "WHERE location_key = ANY(CAST(? AS varchar[]))";
+
+    private static final String INSERT_HASHTAG_SQL =
+            "INSERT INTO ihd_analytics.dim_hashtag (hashtag_text) " +
+            "SELECT unnest(CAST(? AS varchar[])) " +
+            "ON CONFLICT (hashtag_text) DO NOTHING " +
+            "RETURNING hashtag_text, hashtag_id";
+
+    private static final String SELECT_HASHTAG_SQL =
+            "SELECT hashtag_text, hashtag_id FROM ihd_analytics.dim_hashtag WHERE hashtag_text = ANY(CAST(? AS varchar[]))";
+
+    private static final String INSERT_AGENCY_SQL =
+            "INSERT INTO ihd_analytics.dim_agency (agency_name, agency_account) " +
+            "SELECT account, account FROM unnest(CAST(? AS varchar[])) AS account " +
+            "ON CONFLICT (agency_account) DO NOTHING " +
+            "RETURNING agency_account, agency_id";
+
+    private static final String SELECT_AGENCY_SQL =
+            "SELECT agency_account, agency_id FROM ihd_analytics.dim_agency WHERE agency_account = ANY(CAST(? AS varchar[]))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert missing dates and return the time_id of every requested date. Runs in the
+     * caller's transaction; TimeService makes the ids visible to others once it commits.
+     *
+     * @param rows Fully populated DimTime rows, sorted by date
+     * @return Map of full_date to time_id
+     */
+    @Transactional
+    public Map<LocalDate, Integer> upsertTimes(List<DimTime> rows) {
+        Map<LocalDate, Integer> ids = new HashMap<>();
+        if (rows.isEmpty()) {
+            return ids;
+        }
+
+        int size = rows.size();
+        Object[] dates = new Object[size];
+        Object[] years = new Object[size];
+        Object[] quarters = new Object[size];
+        Object[] months = new Object[size];
+        Object[] monthNames = new Object[size];
+        Object[] days = new Object[size];
+        Object[] daysOfWeek = new Object[size];
+        Object[] dayNames = new Object[size];
+        Object[] weeks = new Object[size];
+        Object[] weekends = new Object[size];
+        Object[] holidays = new Object[size];
+        for (int i = 0; i < size; i++) {
+            DimTime row = rows.get(i);
+            dates[i] = row.getFullDate().toString();
+            years[i] = row.getYear();
+            quarters[i] = row.getQuarter();
+            months[i] = row.getMonth();
+            monthNames[i] = row.getMonthName();
+            days[i] = row.getDay();
+            daysOfWeek[i] = row.getDayOfWeek();
+            dayNames[i] = row.getDayName();
+            weeks[i] = row.getWeekOfYear();
+            weekends[i] = row.getIsWeekend();
+            holidays[i] = row.getIsHoliday();
+        }
+
+        RowCallbackHandler collector = rs -> ids.put(rs.getObject(1, LocalDate.class), rs.getInt(2));
+        jdbcTemplate.query(statement(INSERT_TIME_SQL,
+                        new String[]{"text", "int4", "int4", "int4", "text", "int4", "int4", "text", "int4", "bool", "bool"},
+                        dates, years, quarters, months, monthNames, days, daysOfWeek, dayNames, weeks, weekends, holidays),
+                collector);
+
+        if (ids.size() < size) {
+            List<Object> missing = new ArrayList<>();
+            for (DimTime row : rows) {
+                if (!ids.containsKey(row.getFullDate())) {
+                    missing.add(row.getFullDate().toString());
+                }
+            }
+            jdbcTemplate.query(statement(SELECT_TIME_SQL, new String[]{"text"}, missing.toArray()), collector);
+        }
+        return ids;
+    }
+
+    /**
+     * Insert users that do not exist yet. The natural key is also the surrogate key,
+     * so no ids need to be read back.
+     *
+     * @param rows DimUser rows, sorted by user_id
+     */
+    public void upsertUsers(List<DimUser> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        int size = rows.size();
+        Object[] userIds = new Object[size];
+        Object[] usernames = new Object[size];
+        Object[] createdAts = new Object[size];
+        Object[] followers = new Object[size];
+        Object[] following = new Object[size];
+        Object[] tweets = new Object[size];
+        Object[] listed = new Object[size];
+        for (int i = 0; i < size; i++) {
+            DimUser row = rows.get(i);
+            userIds[i] = row.getUserId();
+            usernames[i] = row.getUsername();
+            createdAts[i] = row.getCreatedAt() != null ? row.getCreatedAt().toString() : null;
+            followers[i] = row.getFollowersCount();
+            following[i] = row.getFollowingCount();
+            tweets[i] = row.getTweetCount();
+            listed[i] = row.getListedCount();
+        }
+
+        jdbcTemplate.execute(statement(INSERT_USER_SQL,
+                        new String[]{"text", "text", "text", "int4", "int4", "int4", "int4"},
+                        userIds, usernames, createdAts, followers, following, tweets, listed),
+                PreparedStatement::executeUpdate);
+    }
+
+    /**
+     * Insert issues that do not exist yet. The natural key is also the surrogate key,
+     * so no ids need to be read back.
+     *
+     * @param rows DimIssue rows, sorted by issue_id
+     */
+    public void upsertIssues(List<DimIssue> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        int size = rows.size();
+        Object[] issueIds = new Object[size];
+        Object[] classKeys = new Object[size];
+        Object[] classCodes = new Object[size];
+        for (int i = 0; i < size; i++) {
+            DimIssue row = rows.get(i);
+            issueIds[i] = row.getIssueId();
+            classKeys[i] = row.getIssueClassKey();
+            classCodes[i] = row.getIssueClassCode();
+        }
+
+        jdbcTemplate.execute(statement(INSERT_ISSUE_SQL, new String[]{"int4", "int4", "text"},
+                        issueIds, classKeys, classCodes),
+                PreparedStatement::executeUpdate);
+    }
+
+    /**
+     * Insert missing locations and return the location_id of every requested location
+     *
+     * @param rows DimLocation rows with their location key set, sorted by it
+     * @return Map of location_key to location_id
+     */
+    public Map<String, Integer> upsertLocations(List<DimLocation> rows) {
+        Map<String, Integer> ids = new HashMap<>();
+        if (rows.isEmpty()) {
+            return ids;
+        }
+
+        int size = rows.size();
+        Object[] locationStrings = new Object[size];
+        Object[] countries = new Object[size];
+        Object[] cities = new Object[size];
+        Object[] regions = new Object[size];
+        for (int i = 0; i < size; i++) {
+            DimLocation row = rows.get(i);
+            locationStrings[i] = row.getLocationString();
+            countries[i] = row.getCountry();
+            cities[i] = row.getCity();
+            regions[i] = row.getRegion();
+        }
+
+        RowCallbackHandler collector = rs -> ids.put(rs.getString(1), rs.getInt(2));
+        jdbcTemplate.query(statement(INSERT_LOCATION_SQL, new String[]{"text", "text", "text", "text"},
+                        locationStrings, countries, cities, regions),
+                collector);
+
+        if (ids.size() < size) {
+            List<Object> missingKeys = new ArrayList<>();
+            for (DimLocation row : rows) {
+                if (!ids.containsKey(row.getLocationKey())) {
+                    missingKeys.add(row.getLocationKey());
+                }
+            }
+            jdbcTemplate.query(statement(SELECT_LOCATION_SQL, new String[]{"text"}, missingKeys.toArray()),
+                    collector);
+        }
+        return ids;
+    }
+
+    /**
+     * Insert missing hashtags and return the hashtag_id of every requested hashtag
+     *
+     * @param hashtagTexts Distinct hashtag texts, sorted
+     * @return Map of hashtag_text to hashtag_id
+     */
+    public Map<String, Integer> upsertHashtags(List<String> hashtagTexts) {
+        return upsertByText(INSERT_HASHTAG_SQL, SELECT_HASHTAG_SQL, hashtagTexts);
+    }
+
+    /**
+     * Insert missing agencies and return the agency_id of every requested account
+     *
+     * @param agencyAccounts Distinct agency accounts, sorted
+     * @return Map of agency_account to agency_id
+     */
+    public Map<String, Integer> upsertAgencies(List<String> agencyAccounts) {
+        return upsertByText(INSERT_AGENCY_SQL, SELECT_AGENCY_SQL, agencyAccounts);
+    }
+
+    private Map<String, Integer> upsertByText(String insertSql, String selectSql, List<String> keys) {
+        Map<String, Integer> ids = new HashMap<>();
+        if (keys.isEmpty()) {
+            return ids;
+        }
+
+        RowCallbackHandler collector = rs -> ids.put(rs.getString(1), rs.getInt(2));
+        jdbcTemplate.query(statement(insertSql, new String[]{"text"}, keys.toArray()), collector);
+
+        if (ids.size() < keys.size()) {
+            List<Object> missing = new ArrayList<>();
+            for (String key : keys) {
+                if (!ids.containsKey(key)) {
+                    missing.add(key);
+                }
+            }
+            jdbcTemplate.query(statement(selectSql, new String[]{"text"}, missing.toArray()), collector);
+        }
+        return ids;
+    }
+
+    /**
+     * Build a statement whose parameters are all SQL arrays, one per column
+     */
+    private static PreparedStatementCreator statement(String sql, String[] elementTypes, Object[]... columns) {
+        return connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            for (int i = 0; i < columns.length; i++) {
+                ps.setArray(i + 1, connection.createArrayOf(elementTypes[i], columns[i]));
+            }
+            return ps;
+        };
+    }
+}
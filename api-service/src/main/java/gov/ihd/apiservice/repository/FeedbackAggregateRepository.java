@@ -0,0 +1,38 @@
+package gov.ihd.apiservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Maintenance of the agg_daily_* summary tables behind the analytics views
+ */
+@Repository
+@RequiredArgsConstructor
+public class FeedbackAggregateRepository {
+
+    private static final String REFRESH_DATES_SQL =
+            "SELECT ihd_analytics.refresh_feedback_aggregates(CAST(? AS date[]))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Recompute the summary rows of the given days from fact_feedback, in one transaction
+     */
+    @Transactional
+    public void refreshDates(List<LocalDate> dates) {
+        PreparedStatementCreator refresh = connection -> {
+            PreparedStatement ps = connection.prepareStatement(REFRESH_DATES_SQL);
+            ps.setArray(1, connection.createArrayOf("date", dates.stream().map(Date::valueOf).toArray()));
+            return ps;
+        };
+        jdbcTemplate.execute(refresh, PreparedStatement::execute);
+    }
+}
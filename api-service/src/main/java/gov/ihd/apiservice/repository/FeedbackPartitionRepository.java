@@ -0,0 +1,125 @@
+package gov.ihd.apiservice.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintenance of the monthly partitions of fact_feedback. Partitions are created and archived
+ * in transactions of their own that wait at most app.partitions.lock-timeout-ms for the table
+ * lock, so a partition is never created inside the transaction of a chunk. Both first take an
+ * advisory lock exclusively, which writers of fact_feedback hold shared for their whole
+ * transaction: the DDL then starts only once no writer holds table locks it needs.
+ */
+@Repository
+public class FeedbackPartitionRepository {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("fact_feedback_y(\\d{4})m(\\d{2})");
+
+    private static final String PARTITIONS_SQL =
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = 'ihd_analytics.fact_feedback'::regclass";
+
+    private static final String DEFAULT_MONTHS_SQL =
+            "SELECT DISTINCT CAST(date_trunc('month', created_date) AS date) FROM ihd_analytics.fact_feedback_default";
+
+    // The key ensure_feedback_partition() and archive_feedback_partition() lock exclusively
+    private static final String LOCK_SHARED_SQL =
+            "SELECT pg_advisory_xact_lock_shared(hashtext('ihd_analytics.fact_feedback_partitions'))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long lockTimeoutMs;
+
+    public FeedbackPartitionRepository(JdbcTemplate jdbcTemplate,
+                                       @Value("${app.partitions.lock-timeout-ms:10000}") long lockTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.lockTimeoutMs = lockTimeoutMs;
+    }
+
+    /**
+     * @return The qualified name of the partition of a month, as named by feedback_partition_name()
+     */
+    public static String partitionName(YearMonth month) {
+        return String.format("ihd_analytics.fact_feedback_y%04dm%02d", month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * @return The months that have a partition attached to fact_feedback
+     */
+    @Transactional(readOnly = true)
+    public Set<YearMonth> findPartitionMonths() {
+        Set<YearMonth> months = new TreeSet<>();
+        for (String name : jdbcTemplate.queryForList(PARTITIONS_SQL, String.class)) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (matcher.matches()) {
+                months.add(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+            }
+        }
+        return months;
+    }
+
+    /**
+     * @return The months of the rows in the DEFAULT partition, which have no partition of their own
+     */
+    @Transactional(readOnly = true)
+    public List<YearMonth> findDefaultPartitionMonths() {
+        return jdbcTemplate.query(DEFAULT_MONTHS_SQL,
+                (rs, rowNum) -> YearMonth.from(rs.getDate(1).toLocalDate()));
+    }
+
+    /**
+     * Create the partitions of the given months, moving their rows out of the DEFAULT partition.
+     * Commits on its own.
+     *
+     * @return Number of partitions created
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int createPartitions(Collection<YearMonth> months) {
+        setLockTimeout();
+        int created = 0;
+        for (YearMonth month : months) {
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT ihd_analytics.ensure_feedback_partition(?)",
+                    Boolean.class, Date.valueOf(month.atDay(1))))) {
+                created++;
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Wait for a partition being created or archived, and hold off the next one until the
+     * current transaction ends
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void lockPartitionsShared() {
+        jdbcTemplate.execute(LOCK_SHARED_SQL);
+    }
+
+    /**
+     * Detach the partition of a month and move it and its bridge rows to the ihd_archive schema.
+     * Commits on its own.
+     *
+     * @return Whether the month had a partition
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean archivePartition(YearMonth month) {
+        setLockTimeout();
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT ihd_analytics.archive_feedback_partition(?)",
+                Boolean.class, Date.valueOf(month.atDay(1))));
+    }
+
+    private void setLockTimeout() {
+        jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+    }
+}
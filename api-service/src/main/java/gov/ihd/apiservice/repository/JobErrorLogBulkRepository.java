@@ -0,0 +1,37 @@
+package gov.ihd.apiservice.repository;
+
+import gov.ihd.apiservice.entity.JobErrorLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Batched inserts into job_error_log for the background error writer, which runs outside
+ * any step transaction.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JobErrorLogBulkRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO ihd_analytics.job_error_log (job_id, error_message, stack_trace, item_data, stack_hash, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Transactional
+    public void insertAll(List<JobErrorLog> errors) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, errors, errors.size(), (ps, error) -> {
+            ps.setString(1, error.getJobId());
+            ps.setString(2, error.getErrorMessage());
+            ps.setString(3, error.getStackTrace());
+            ps.setString(4, error.getItemData());
+            ps.setString(5, error.getStackHash());
+            ps.setTimestamp(6, Timestamp.valueOf(error.getCreatedAt()));
+        });
+    }
+}
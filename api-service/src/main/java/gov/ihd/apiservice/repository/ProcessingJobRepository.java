@@ -0,0 +1,48 @@
+package gov.ihd.apiservice.repository;
+
+import gov.ihd.apiservice.dto.JobStatus;
+import gov.ihd.apiservice.entity.ProcessingJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProcessingJobRepository extends JpaRepository<ProcessingJob, String> {
+
+    // Same order as the in-memory registry: newest first, ties broken by job id in byte order
+    String PAGE_ORDER = " ORDER BY start_time DESC, job_id COLLATE \"C\" DESC LIMIT :limit";
+
+    @Query(value = "SELECT * FROM ihd_analytics.processing_job" + PAGE_ORDER, nativeQuery = true)
+    List<ProcessingJob> findNewest(@Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM ihd_analytics.processing_job " +
+            "WHERE (start_time, job_id COLLATE \"C\") < (:startTime, CAST(:jobId AS varchar) COLLATE \"C\")" + PAGE_ORDER,
+            nativeQuery = true)
+    List<ProcessingJob> findPageBefore(@Param("startTime") LocalDateTime startTime, @Param("jobId") String jobId,
+                                       @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM ihd_analytics.processing_job " +
+            "WHERE status = :status AND (start_time, job_id COLLATE \"C\") < (:startTime, CAST(:jobId AS varchar) COLLATE \"C\")" +
+            PAGE_ORDER, nativeQuery = true)
+    List<ProcessingJob> findPageBeforeWithStatus(@Param("status") String status, @Param("startTime") LocalDateTime startTime,
+                                                 @Param("jobId") String jobId, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProcessingJob j SET j.recordsProcessed = :records WHERE j.jobId = :jobId AND j.status = :status")
+    int updateRecordsProcessed(@Param("jobId") String jobId, @Param("records") int records, @Param("status") JobStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProcessingJob j SET j.status = :failed, j.endTime = :endTime, j.errorMessage = :message " +
+            "WHERE j.status IN :running")
+    int failRunningJobs(@Param("running") Collection<JobStatus> running, @Param("failed") JobStatus failed,
+                        @Param("endTime") LocalDateTime endTime, @Param("message") String message);
+}
@@ -0,0 +1,93 @@
+package gov.ihd.apiservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Set-based merge of the rows a job staged in the UNLOGGED stg_* tables into the star schema.
+ * Duplicates are resolved by the unique (tweet_id, created_date) constraint rather than by
+ * lookups, so merging the same rows twice is a no-op.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StagingRepository {
+
+    public static final String COPY_FACT_SQL =
+            "COPY ihd_analytics.stg_fact_feedback (job_id, feedback_id, tweet_id, time_id, user_id, location_id, " +
+            "issue_id, platform, text, language, retweet_count, reply_count, like_count, quote_count, " +
+            "bookmark_count, impression_count, created_date) FROM STDIN WITH (FORMAT csv)";
+
+    public static final String COPY_HASHTAG_BRIDGE_SQL =
+            "COPY ihd_analytics.stg_bridge_feedback_hashtag (job_id, feedback_id, hashtag_id, created_date) " +
+            "FROM STDIN WITH (FORMAT csv)";
+
+    public static final String COPY_AGENCY_BRIDGE_SQL =
+            "COPY ihd_analytics.stg_bridge_feedback_agency (job_id, feedback_id, agency_id, created_date) " +
+            "FROM STDIN WITH (FORMAT csv)";
+
+    // DISTINCT ON keeps the first occurrence of a tweet that appears more than once in the file.
+    // Rows are inserted in date order, so they reach the fact_feedback partitions one after another
+    private static final String MERGE_FACT_SQL =
+            "INSERT INTO ihd_analytics.fact_feedback (feedback_id, tweet_id, time_id, user_id, location_id, " +
+            "issue_id, platform, text, language, retweet_count, reply_count, like_count, quote_count, " +
+            "bookmark_count, impression_count, created_date) " +
+            "SELECT DISTINCT ON (tweet_id, created_date) feedback_id, tweet_id, time_id, user_id, location_id, " +
+            "issue_id, platform, text, language, retweet_count, reply_count, like_count, quote_count, " +
+            "bookmark_count, impression_count, created_date " +
+            "FROM ihd_analytics.stg_fact_feedback WHERE job_id = ? " +
+            "ORDER BY created_date, tweet_id, feedback_id " +
+            "ON CONFLICT (tweet_id, created_date) DO NOTHING";
+
+    // Only bridges whose fact row made it into fact_feedback are merged
+    private static final String MERGE_HASHTAG_BRIDGE_SQL =
+            "INSERT INTO ihd_analytics.bridge_feedback_hashtag (feedback_id, hashtag_id, created_date) " +
+            "SELECT s.feedback_id, s.hashtag_id, s.created_date " +
+            "FROM ihd_analytics.stg_bridge_feedback_hashtag s " +
+            "JOIN ihd_analytics.fact_feedback f ON f.feedback_id = s.feedback_id AND f.created_date = s.created_date " +
+            "WHERE s.job_id = ? " +
+            "ON CONFLICT DO NOTHING";
+
+    private static final String MERGE_AGENCY_BRIDGE_SQL =
+            "INSERT INTO ihd_analytics.bridge_feedback_agency (feedback_id, agency_id, created_date) " +
+            "SELECT s.feedback_id, s.agency_id, s.created_date " +
+            "FROM ihd_analytics.stg_bridge_feedback_agency s " +
+            "JOIN ihd_analytics.fact_feedback f ON f.feedback_id = s.feedback_id AND f.created_date = s.created_date " +
+            "WHERE s.job_id = ? " +
+            "ON CONFLICT DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public long countStagedFacts(String jobId) {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM ihd_analytics.stg_fact_feedback WHERE job_id = ?", Long.class, jobId);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * @return The number of fact rows inserted
+     */
+    public int mergeFacts(String jobId) {
+        return jdbcTemplate.update(MERGE_FACT_SQL, jobId);
+    }
+
+    public int mergeHashtagBridges(String jobId) {
+        return jdbcTemplate.update(MERGE_HASHTAG_BRIDGE_SQL, jobId);
+    }
+
+    public int mergeAgencyBridges(String jobId) {
+        return jdbcTemplate.update(MERGE_AGENCY_BRIDGE_SQL, jobId);
+    }
+
+    /**
+     * Remove everything the job staged, after a merge or when the job failed. Runs in its own
+     * transaction when called outside a step, since pooled connections do not auto-commit.
+     */
+    @Transactional
+    public void deleteStaged(String jobId) {
+        jdbcTemplate.update("DELETE FROM ihd_analytics.stg_bridge_feedback_hashtag WHERE job_id = ?", jobId);
+        jdbcTemplate.update("DELETE FROM ihd_analytics.stg_bridge_feedback_agency WHERE job_id = ?", jobId);
+        jdbcTemplate.update("DELETE FROM ihd_analytics.stg_fact_feedback WHERE job_id = ?", jobId);
+    }
+}
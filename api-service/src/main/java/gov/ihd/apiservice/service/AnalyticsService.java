@@ -0,0 +1,157 @@
+package gov.ihd.apiservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.ihd.apiservice.dto.AgencyPerformanceDto;
+import gov.ihd.apiservice.dto.CacheStatsDto;
+import gov.ihd.apiservice.dto.DailyFeedbackDto;
+import gov.ihd.apiservice.dto.HashtagUsageDto;
+import gov.ihd.apiservice.dto.IssueDistributionDto;
+import gov.ihd.apiservice.repository.AnalyticsRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Analytics reports over the feedback summary tables, with an in-process cache. A report is
+ * kept for app.analytics.cache.ttl-seconds, and the whole cache is dropped when a job has
+ * refreshed the summaries. Each report carries an ETag computed from its JSON, so clients
+ * can revalidate with If-None-Match instead of downloading an unchanged report.
+ *
+ * <p>A report loaded while the cache was being dropped is returned but not kept, so a read
+ * that started before a refresh cannot put stale totals back into the cache.
+ */
+@Service
+public class AnalyticsService {
+
+    /**
+     * A report and the ETag of its JSON
+     */
+    public record CachedReport<T>(T data, String etag) {
+    }
+
+    private record ReportKey(String report, LocalDate from, LocalDate to, String language, int limit) {
+    }
+
+    private record Entry(CachedReport<?> report, long expiresAt) {
+    }
+
+    private final AnalyticsRepository analyticsRepository;
+    private final ObjectMapper objectMapper;
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    private final Map<ReportKey, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public AnalyticsService(AnalyticsRepository analyticsRepository,
+                            ObjectMapper objectMapper,
+                            @Value("${app.analytics.cache.ttl-seconds:60}") long ttlSeconds,
+                            @Value("${app.analytics.cache.max-entries:1000}") int maxEntries) {
+        this.analyticsRepository = analyticsRepository;
+        this.objectMapper = objectMapper;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxEntries = maxEntries;
+    }
+
+    public CachedReport<List<DailyFeedbackDto>> getDailyFeedback(LocalDate from, LocalDate to, String language) {
+        return cached(new ReportKey("daily", from, to, language, 0),
+                () -> analyticsRepository.findDailyFeedback(from, to, language));
+    }
+
+    public CachedReport<List<IssueDistributionDto>> getIssueDistribution(LocalDate from, LocalDate to, String language) {
+        return cached(new ReportKey("issues", from, to, language, 0),
+                () -> analyticsRepository.findIssueDistribution(from, to, language));
+    }
+
+    public CachedReport<List<HashtagUsageDto>> getTopHashtags(LocalDate from, LocalDate to, String language, int limit) {
+        return cached(new ReportKey("hashtags", from, to, language, limit),
+                () -> analyticsRepository.findTopHashtags(from, to, language, limit));
+    }
+
+    public CachedReport<List<AgencyPerformanceDto>> getAgencyPerformance(LocalDate from, LocalDate to, String language,
+                                                                         int limit) {
+        return cached(new ReportKey("agencies", from, to, language, limit),
+                () -> analyticsRepository.findAgencyPerformance(from, to, language, limit));
+    }
+
+    /**
+     * Drop every cached report, after the summary tables changed
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    public CacheStatsDto getStats() {
+        CacheStatsDto stats = new CacheStatsDto();
+        stats.setName("analytics");
+        stats.setSize(entries.size());
+        stats.setMaxSize(maxEntries);
+        stats.setHits(hits.sum());
+        stats.setMisses(misses.sum());
+        stats.setEvictions(evictions.sum());
+        long lookups = stats.getHits() + stats.getMisses();
+        stats.setHitRatio(lookups == 0 ? 0.0 : (double) stats.getHits() / lookups);
+        return stats;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CachedReport<T> cached(ReportKey key, Supplier<T> loader) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(key);
+        if (entry != null && now - entry.expiresAt() < 0) {
+            hits.increment();
+            return (CachedReport<T>) entry.report();
+        }
+        misses.increment();
+
+        long loadedGeneration = generation.get();
+        T data = loader.get();
+        CachedReport<T> report = new CachedReport<>(data, etag(data));
+        if (maxEntries > 0 && ttlNanos > 0 && generation.get() == loadedGeneration) {
+            if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+                removeExpired(now);
+            }
+            if (entries.size() < maxEntries || entries.containsKey(key)) {
+                Entry loaded = new Entry(report, now + ttlNanos);
+                entries.put(key, loaded);
+                // Dropped meanwhile
+                if (generation.get() != loadedGeneration) {
+                    entries.remove(key, loaded);
+                }
+            }
+        }
+        return report;
+    }
+
+    private void removeExpired(long now) {
+        entries.values().removeIf(entry -> {
+            boolean expired = now - entry.expiresAt() >= 0;
+            if (expired) {
+                evictions.increment();
+            }
+            return expired;
+        });
+    }
+
+    private String etag(Object data) {
+        try {
+            return "\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(data)) + "\"";
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize an analytics report", e);
+        }
+    }
+}
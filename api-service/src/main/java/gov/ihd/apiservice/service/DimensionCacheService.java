@@ -0,0 +1,216 @@
+package gov.ihd.apiservice.service;
+
+import gov.ihd.apiservice.dto.CacheStatsDto;
+import gov.ihd.apiservice.repository.DimAgencyRepository;
+import gov.ihd.apiservice.repository.DimHashtagRepository;
+import gov.ihd.apiservice.repository.DimIssueRepository;
+import gov.ihd.apiservice.repository.DimLocationRepository;
+import gov.ihd.apiservice.repository.DimUserRepository;
+import gov.ihd.apiservice.util.BoundedCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shared natural key to surrogate key cache for the dimension tables other than dim_time,
+ * which {@link TimeService} indexes on its own.
+ * The caches are warmed from the dim_* tables the first time a step starts and are
+ * filled in as new dimension members are created (once their transaction commits), so
+ * that dimension lookups in the batch hot path do not need a database round trip.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DimensionCacheService {
+
+    private static final char KEY_SEPARATOR = '\u001F';
+
+    private final TimeService timeService;
+    private final DimUserRepository userRepository;
+    private final DimLocationRepository locationRepository;
+    private final DimIssueRepository issueRepository;
+    private final DimHashtagRepository hashtagRepository;
+    private final DimAgencyRepository agencyRepository;
+
+    @Value("${app.dimension-cache.user.max-size:200000}")
+    private int userCacheSize;
+
+    @Value("${app.dimension-cache.location.max-size:50000}")
+    private int locationCacheSize;
+
+    @Value("${app.dimension-cache.issue.max-size:10000}")
+    private int issueCacheSize;
+
+    @Value("${app.dimension-cache.hashtag.max-size:100000}")
+    private int hashtagCacheSize;
+
+    @Value("${app.dimension-cache.agency.max-size:10000}")
+    private int agencyCacheSize;
+
+    private final AtomicBoolean warmed = new AtomicBoolean(false);
+
+    private BoundedCache<String, String> userCache;
+    private BoundedCache<String, Integer> locationCache;
+    private BoundedCache<Integer, Integer> issueCache;
+    private BoundedCache<String, Integer> hashtagCache;
+    private BoundedCache<String, Integer> agencyCache;
+
+    @PostConstruct
+    public void init() {
+        userCache = new BoundedCache<>("user", userCacheSize);
+        locationCache = new BoundedCache<>("location", locationCacheSize);
+        issueCache = new BoundedCache<>("issue", issueCacheSize);
+        hashtagCache = new BoundedCache<>("hashtag", hashtagCacheSize);
+        agencyCache = new BoundedCache<>("agency", agencyCacheSize);
+    }
+
+    /**
+     * Load existing dimension keys into the caches. Only the first call does any work;
+     * after that the caches are kept current by the put methods.
+     */
+    public void warmUp() {
+        if (!warmed.compareAndSet(false, true)) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            for (String userId : userRepository.findAllIds(firstPage(userCache))) {
+                userCache.put(userId, userId);
+            }
+            for (Object[] row : locationRepository.findAllKeys(firstPage(locationCache))) {
+                locationCache.put((String) row[0], (Integer) row[1]);
+            }
+            for (Integer issueId : issueRepository.findAllIds(firstPage(issueCache))) {
+                issueCache.put(issueId, issueId);
+            }
+            for (Object[] row : hashtagRepository.findAllKeys(firstPage(hashtagCache))) {
+                hashtagCache.put((String) row[0], (Integer) row[1]);
+            }
+            for (Object[] row : agencyRepository.findAllKeys(firstPage(agencyCache))) {
+                agencyCache.put((String) row[0], (Integer) row[1]);
+            }
+        } catch (RuntimeException e) {
+            // Allow the next step to try again; lookups fall back to the database meanwhile
+            warmed.set(false);
+            throw e;
+        }
+
+        log.info("Dimension caches warmed in {} ms: user={}, location={}, issue={}, hashtag={}, agency={}",
+                System.currentTimeMillis() - start,
+                userCache.size(), locationCache.size(),
+                issueCache.size(), hashtagCache.size(), agencyCache.size());
+    }
+
+    public boolean containsUser(String userId) {
+        return userCache.get(userId) != null;
+    }
+
+    public void putUser(String userId) {
+        afterCommit(() -> userCache.put(userId, userId));
+    }
+
+    public Integer getLocationId(String locationKey) {
+        return locationCache.get(locationKey);
+    }
+
+    public void putLocationId(String locationKey, Integer locationId) {
+        afterCommit(() -> locationCache.put(locationKey, locationId));
+    }
+
+    public boolean containsIssue(Integer issueId) {
+        return issueCache.get(issueId) != null;
+    }
+
+    public void putIssue(Integer issueId) {
+        afterCommit(() -> issueCache.put(issueId, issueId));
+    }
+
+    public Integer getHashtagId(String hashtagText) {
+        return hashtagCache.get(hashtagText);
+    }
+
+    public void putHashtagId(String hashtagText, Integer hashtagId) {
+        afterCommit(() -> hashtagCache.put(hashtagText, hashtagId));
+    }
+
+    public Integer getAgencyId(String agencyAccount) {
+        return agencyCache.get(agencyAccount);
+    }
+
+    public void putAgencyId(String agencyAccount, Integer agencyId) {
+        afterCommit(() -> agencyCache.put(agencyAccount, agencyId));
+    }
+
+    /**
+     * Drop all cached keys and warm the caches again on the next step
+     */
+    public void invalidateAll() {
+        timeService.resetCalendar();
+        userCache.clear();
+        locationCache.clear();
+        issueCache.clear();
+        hashtagCache.clear();
+        agencyCache.clear();
+        warmed.set(false);
+    }
+
+    public List<CacheStatsDto> getStats() {
+        return List.of(
+                timeService.getStats(),
+                userCache.stats(),
+                locationCache.stats(),
+                issueCache.stats(),
+                hashtagCache.stats(),
+                agencyCache.stats());
+    }
+
+    /**
+     * Keys created inside a chunk transaction must not be cached until the transaction
+     * commits, otherwise a rolled back chunk would leave ids behind that do not exist.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static PageRequest firstPage(BoundedCache<?, ?> cache) {
+        return PageRequest.of(0, Math.max(cache.getMaxSize(), 1));
+    }
+
+    /**
+     * Natural key of a location. Null and empty parts are treated the same, matching the
+     * generated location_key column of dim_location.
+     */
+    public static String locationKey(String country, String city, String region) {
+        StringBuilder key = new StringBuilder(32);
+        if (country != null) {
+            key.append(country);
+        }
+        key.append(KEY_SEPARATOR);
+        if (city != null) {
+            key.append(city);
+        }
+        key.append(KEY_SEPARATOR);
+        if (region != null) {
+            key.append(region);
+        }
+        return key.toString();
+    }
+}
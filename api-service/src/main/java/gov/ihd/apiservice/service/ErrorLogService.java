@@ -3,66 +3,236 @@ package gov.ihd.apiservice.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import gov.ihd.apiservice.entity.JobErrorLog;
+import gov.ihd.apiservice.repository.JobErrorLogBulkRepository;
 import gov.ihd.apiservice.repository.JobErrorLogRepository;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Records item errors without blocking the batch threads. {@link #logError} only hashes the
+ * stack trace and offers the error to a bounded queue; a background thread renders stack
+ * traces, serializes items and inserts the errors in batches. Per job, only the first error
+ * with a given stack hash stores the rendered trace, and at most max-per-job errors are
+ * stored. Errors over that limit, or arriving while the queue is full, are counted and
+ * reported in a summary row when the job ends.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class ErrorLogService {
 
+    private static final int MAX_CAUSE_DEPTH = 16;
+
     private final JobErrorLogRepository errorLogRepository;
+    private final JobErrorLogBulkRepository errorLogBulkRepository;
     private final ObjectMapper objectMapper;
-    
+    private final int maxPerJob;
+    private final int batchSize;
+
+    private final BlockingQueue<PendingError> queue;
+    private final Map<String, JobErrorStats> jobStats = new ConcurrentHashMap<>();
+    private final Thread writer = new Thread(this::drain, "error-log-writer");
+    private volatile boolean running = true;
+
+    public ErrorLogService(JobErrorLogRepository errorLogRepository,
+                           JobErrorLogBulkRepository errorLogBulkRepository,
+                           ObjectMapper objectMapper,
+                           @Value("${app.error-log.queue-capacity:10000}") int queueCapacity,
+                           @Value("${app.error-log.max-per-job:1000}") int maxPerJob,
+                           @Value("${app.error-log.batch-size:500}") int batchSize) {
+        this.errorLogRepository = errorLogRepository;
+        this.errorLogBulkRepository = errorLogBulkRepository;
+        this.objectMapper = objectMapper;
+        this.maxPerJob = maxPerJob;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
     /**
-     * Log an error that occurred during job processing
-     * 
+     * Log an error that occurred during job processing. Never blocks; the error is written
+     * in the background.
+     *
      * @param jobId The ID of the job
      * @param errorMessage The error message
      * @param throwable The exception that occurred
      * @param item The data item that caused the error
      */
     public void logError(String jobId, String errorMessage, Throwable throwable, Object item) {
-        try {
-            // Convert stack trace to string
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            throwable.printStackTrace(pw);
-            String stackTrace = sw.toString();
-            
-            // Convert item to JSON string
-            String itemJson = null;
-            if (item != null) {
-                try {
-                    itemJson = objectMapper.writeValueAsString(item);
-                } catch (JsonProcessingException e) {
-                    log.warn("Could not serialize item to JSON: {}", e.getMessage());
-                    itemJson = "Could not serialize item: " + item.toString();
-                }
+        JobErrorStats stats = jobStats.computeIfAbsent(jobId, id -> new JobErrorStats());
+        if (stats.accepted.incrementAndGet() > maxPerJob) {
+            stats.accepted.decrementAndGet();
+            stats.overLimit.incrementAndGet();
+            return;
+        }
+
+        String stackHash = stackHash(throwable);
+        boolean firstOfHash = stats.stackHashes.add(stackHash);
+        PendingError error = new PendingError(jobId, errorMessage, firstOfHash ? throwable : null,
+                stackHash, item, LocalDateTime.now());
+        if (!queue.offer(error)) {
+            stats.accepted.decrementAndGet();
+            if (firstOfHash) {
+                // Let the next error with this trace store it instead
+                stats.stackHashes.remove(stackHash);
+            }
+            if (stats.dropped.incrementAndGet() == 1) {
+                log.warn("Error log queue is full, dropping errors of job {}", jobId);
             }
-            
-            // Create and save error log
-            JobErrorLog errorLog = new JobErrorLog(jobId, errorMessage, stackTrace, itemJson);
-            errorLogRepository.save(errorLog);
-            
-        } catch (Exception e) {
-            log.error("Failed to log error: {}", e.getMessage(), e);
         }
     }
-    
+
+    /**
+     * Queue a summary of the errors that were not stored for a job and forget its counters.
+     * The summary is written after all errors the job queued before it.
+     *
+     * @param jobId The ID of the job
+     */
+    public void completeJob(String jobId) {
+        JobErrorStats stats = jobStats.remove(jobId);
+        if (stats == null) {
+            return;
+        }
+        int overLimit = stats.overLimit.get();
+        int dropped = stats.dropped.get();
+        log.info("Job {} logged {} errors with {} distinct stack traces; {} over the limit of {}, {} dropped",
+                jobId, stats.accepted.get() + overLimit + dropped, stats.stackHashes.size(), overLimit, maxPerJob, dropped);
+        if (overLimit + dropped == 0) {
+            return;
+        }
+
+        String message = String.format("%d errors were not stored: %d over the limit of %d per job, %d dropped because the error queue was full",
+                overLimit + dropped, overLimit, maxPerJob, dropped);
+        try {
+            queue.put(new PendingError(jobId, message, null, null, null, LocalDateTime.now()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while queueing the error summary of job {}", jobId);
+        }
+    }
+
     /**
      * Get all errors for a specific job
-     * 
+     *
      * @param jobId The ID of the job
      * @return List of error logs
      */
     public List<JobErrorLog> getErrorsForJob(String jobId) {
         return errorLogRepository.findByJobId(jobId);
     }
+
+    private void drain() {
+        List<PendingError> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingError first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                // Shutting down; write whatever is still queued
+                if (queue.isEmpty()) {
+                    break;
+                }
+            }
+            queue.drainTo(batch, batchSize - batch.size());
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<PendingError> batch) {
+        List<JobErrorLog> errors = new ArrayList<>(batch.size());
+        for (PendingError error : batch) {
+            errors.add(new JobErrorLog(error.jobId(), error.message(), renderStackTrace(error.throwable()),
+                    toJson(error.item()), error.stackHash(), error.createdAt()));
+        }
+        try {
+            errorLogBulkRepository.insertAll(errors);
+        } catch (Exception e) {
+            log.error("Failed to write {} error log entries: {}", errors.size(), e.getMessage(), e);
+        }
+    }
+
+    private String renderStackTrace(Throwable throwable) {
+        if (throwable == null) {
+            return null;
+        }
+        StringWriter sw = new StringWriter();
+        throwable.printStackTrace(new PrintWriter(sw));
+        return sw.toString();
+    }
+
+    private String toJson(Object item) {
+        if (item == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(item);
+        } catch (JsonProcessingException e) {
+            log.warn("Could not serialize item to JSON: {}", e.getMessage());
+            return "Could not serialize item: " + item;
+        }
+    }
+
+    /**
+     * Hash of the exception classes and stack frames of a throwable and its causes. Messages
+     * are left out, since they usually embed the failing value, and so are the frames of
+     * reflective accessors, which the JVM swaps out after a method has been called through a
+     * proxy a number of times.
+     */
+    static String stackHash(Throwable throwable) {
+        long hash = 17;
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Throwable t = throwable; t != null && seen.size() < MAX_CAUSE_DEPTH && seen.add(t); t = t.getCause()) {
+            hash = 31 * hash + t.getClass().getName().hashCode();
+            for (StackTraceElement element : t.getStackTrace()) {
+                if (!element.getClassName().startsWith("jdk.internal.reflect.")) {
+                    hash = 31 * hash + element.hashCode();
+                }
+            }
+        }
+        return String.format("%016x", hash);
+    }
+
+    private record PendingError(String jobId, String message, Throwable throwable, String stackHash,
+                                Object item, LocalDateTime createdAt) {
+    }
+
+    private static class JobErrorStats {
+        private final AtomicInteger accepted = new AtomicInteger();
+        private final AtomicInteger overLimit = new AtomicInteger();
+        private final AtomicInteger dropped = new AtomicInteger();
+        private final Set<String> stackHashes = ConcurrentHashMap.newKeySet();
+    }
 }
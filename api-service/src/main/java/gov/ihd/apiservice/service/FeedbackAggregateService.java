@@ -0,0 +1,74 @@
+package gov.ihd.apiservice.service;
+
+import gov.ihd.apiservice.repository.FeedbackAggregateRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the per-day summary tables behind the analytics views current. The import step
+ * records the days of the feedback it writes, and when the job finishes only those days
+ * are recomputed from fact_feedback, app.aggregates.refresh-batch-days days per transaction.
+ * The cost of a refresh follows the days a job touches rather than the whole history.
+ */
+@Slf4j
+@Service
+public class FeedbackAggregateService {
+
+    private final FeedbackAggregateRepository aggregateRepository;
+    private final int batchDays;
+
+    private final Map<String, Set<LocalDate>> touchedDates = new ConcurrentHashMap<>();
+
+    public FeedbackAggregateService(FeedbackAggregateRepository aggregateRepository,
+                                    @Value("${app.aggregates.refresh-batch-days:31}") int batchDays) {
+        this.aggregateRepository = aggregateRepository;
+        this.batchDays = Math.max(batchDays, 1);
+    }
+
+    /**
+     * Remember the days written by the step running on the current thread
+     */
+    public void recordDates(Collection<LocalDate> dates) {
+        StepContext context = StepSynchronizationManager.getContext();
+        String jobId = context != null ? context.getStepExecution().getJobParameters().getString("jobId") : null;
+        if (jobId != null && !dates.isEmpty()) {
+            touchedDates.computeIfAbsent(jobId, id -> ConcurrentHashMap.newKeySet()).addAll(dates);
+        }
+    }
+
+    /**
+     * Recompute the days the job touched and forget them. A failed refresh is logged rather
+     * than failing the job; refresh_all_materialized_views() rebuilds every day.
+     */
+    public void refreshJob(String jobId) {
+        Set<LocalDate> dates = touchedDates.remove(jobId);
+        if (dates == null || dates.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<LocalDate> sorted = new ArrayList<>(dates);
+        sorted.sort(null);
+        try {
+            for (int from = 0; from < sorted.size(); from += batchDays) {
+                aggregateRepository.refreshDates(sorted.subList(from, Math.min(from + batchDays, sorted.size())));
+            }
+            log.info("Refreshed feedback aggregates of {} days ({} to {}) for job {} in {} ms",
+                    sorted.size(), sorted.get(0), sorted.get(sorted.size() - 1), jobId,
+                    System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("Could not refresh feedback aggregates for job {}: {}", jobId, e.getMessage(), e);
+        }
+    }
+}
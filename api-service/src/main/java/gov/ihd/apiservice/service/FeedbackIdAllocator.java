@@ -0,0 +1,132 @@
+package gov.ihd.apiservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out feedback ids from blocks reserved on seq_feedback_id. The sequence increments by
+ * the block size, so one nextval() reserves [value, value + increment) for this process.
+ * Ids are taken from the current block with a single getAndIncrement, and the next block is
+ * fetched in the background once the current one is partly used. The allocator is shared by
+ * all threads and all running jobs.
+ */
+@Slf4j
+@Service
+public class FeedbackIdAllocator {
+
+    private static final String NEXT_BLOCK_SQL = "SELECT nextval('ihd_analytics.seq_feedback_id')";
+
+    private static final String BLOCK_SIZE_SQL =
+            "SELECT increment_by FROM pg_sequences WHERE schemaname = 'ihd_analytics' AND sequencename = 'seq_feedback_id'";
+
+    private static final Block EXHAUSTED = new Block(0, 0, 0);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final double prefetchRatio;
+    private final ExecutorService fetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "feedback-id-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicReference<Block> current = new AtomicReference<>(EXHAUSTED);
+    private final AtomicReference<CompletableFuture<Block>> pending = new AtomicReference<>();
+    private volatile long blockSize = 0;
+
+    public FeedbackIdAllocator(JdbcTemplate jdbcTemplate,
+                               @Value("${app.feedback-id.prefetch-ratio:0.5}") double prefetchRatio) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.prefetchRatio = prefetchRatio;
+    }
+
+    /**
+     * @return An id that no other thread, job or application instance will receive
+     */
+    public long nextId() {
+        while (true) {
+            Block block = current.get();
+            long id = block.next.getAndIncrement();
+            if (id < block.end) {
+                // Exactly one caller sees the threshold id, so the prefetch is started once per block
+                if (id == block.prefetchAt) {
+                    prefetch();
+                }
+                return id;
+            }
+            advance(block);
+        }
+    }
+
+    private void advance(Block exhausted) {
+        CompletableFuture<Block> future = prefetch();
+        Block next;
+        try {
+            next = future.join();
+        } catch (CompletionException e) {
+            pending.compareAndSet(future, null);
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+        // Threads that lose the race retry on the block installed by the winner
+        if (current.compareAndSet(exhausted, next)) {
+            pending.compareAndSet(future, null);
+        }
+    }
+
+    private CompletableFuture<Block> prefetch() {
+        CompletableFuture<Block> future = pending.get();
+        if (future != null) {
+            return future;
+        }
+        CompletableFuture<Block> created = new CompletableFuture<>();
+        if (!pending.compareAndSet(null, created)) {
+            return pending.get();
+        }
+        CompletableFuture.supplyAsync(this::fetchBlock, fetchExecutor).whenComplete((block, error) -> {
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(block);
+            }
+        });
+        return created;
+    }
+
+    private Block fetchBlock() {
+        if (blockSize == 0) {
+            Long increment = jdbcTemplate.queryForObject(BLOCK_SIZE_SQL, Long.class);
+            blockSize = increment != null && increment > 0 ? increment : 1;
+            log.info("Reserving feedback ids in blocks of {}", blockSize);
+        }
+        Long start = jdbcTemplate.queryForObject(NEXT_BLOCK_SQL, Long.class);
+        long prefetchAt = start + Math.min(blockSize - 1, (long) (blockSize * prefetchRatio));
+        log.debug("Reserved feedback id block [{}, {})", start, start + blockSize);
+        return new Block(start, start + blockSize, prefetchAt);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+        private final long prefetchAt;
+
+        private Block(long start, long end, long prefetchAt) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+            this.prefetchAt = prefetchAt;
+        }
+    }
+}
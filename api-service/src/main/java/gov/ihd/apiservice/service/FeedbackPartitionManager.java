@@ -0,0 +1,170 @@
+package gov.ihd.apiservice.service;
+
+import gov.ihd.apiservice.repository.FeedbackPartitionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a monthly partition of fact_feedback for every month feedback is written to. The
+ * partitions of the current and the next app.partitions.months-ahead months are created on
+ * startup and on app.partitions.maintenance-cron, and the import step asks for the months of
+ * each chunk before writing it. Feedback of a month whose partition could not be created is
+ * kept in the DEFAULT partition and moved out when the partition is created.
+ *
+ * <p>With app.partitions.retention-months above 0, maintenance also moves the partitions of
+ * older months to the ihd_archive schema.
+ */
+@Slf4j
+@Service
+public class FeedbackPartitionManager {
+
+    private final FeedbackPartitionRepository partitionRepository;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    private final Set<YearMonth> partitionMonths = ConcurrentHashMap.newKeySet();
+
+    public FeedbackPartitionManager(FeedbackPartitionRepository partitionRepository,
+                                    @Value("${app.partitions.enabled:true}") boolean enabled,
+                                    @Value("${app.partitions.months-ahead:3}") int monthsAhead,
+                                    @Value("${app.partitions.retention-months:0}") int retentionMonths) {
+        this.partitionRepository = partitionRepository;
+        this.enabled = enabled;
+        this.monthsAhead = Math.max(monthsAhead, 0);
+        this.retentionMonths = retentionMonths;
+    }
+
+    @PostConstruct
+    public void init() {
+        maintain();
+    }
+
+    /**
+     * Make sure the months of the given dates have a partition, then {@link #lockForWrite()}.
+     * Only months not seen before reach the database. A failure is logged rather than thrown;
+     * the rows then go to the DEFAULT partition. Called in a chunk's transaction before it
+     * takes any lock, so that creating a partition never waits for the chunk.
+     */
+    public void ensurePartitions(Collection<LocalDate> dates) {
+        if (!enabled) {
+            return;
+        }
+        Set<YearMonth> missing = null;
+        for (LocalDate date : dates) {
+            YearMonth month = YearMonth.from(date);
+            if (!partitionMonths.contains(month)) {
+                if (missing == null) {
+                    missing = new TreeSet<>();
+                }
+                missing.add(month);
+            }
+        }
+        if (missing != null) {
+            createPartitions(missing);
+        }
+        lockForWrite();
+    }
+
+    /**
+     * Keep partitions from being created or archived until the current transaction ends. Writers
+     * of fact_feedback call it before their first statement: partition DDL locks fact_feedback,
+     * the bridge tables and the dimensions it references, and would otherwise deadlock with a
+     * writer that already holds one of them and waits for another.
+     */
+    public void lockForWrite() {
+        if (enabled) {
+            partitionRepository.lockPartitionsShared();
+        }
+    }
+
+    /**
+     * @return Whether the month is known to have a partition; writers may then insert into it directly
+     */
+    public boolean hasPartition(YearMonth month) {
+        return partitionMonths.contains(month);
+    }
+
+    /**
+     * Create the coming months' partitions, move rows out of the DEFAULT partition, and archive
+     * the months past the retention window
+     */
+    @Scheduled(cron = "${app.partitions.maintenance-cron:0 0 1 * * *}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Set<YearMonth> existing = partitionRepository.findPartitionMonths();
+            partitionMonths.retainAll(existing);
+            partitionMonths.addAll(existing);
+
+            YearMonth current = YearMonth.now();
+            Set<YearMonth> months = new TreeSet<>();
+            for (int ahead = 0; ahead <= monthsAhead; ahead++) {
+                months.add(current.plusMonths(ahead));
+            }
+            List<YearMonth> defaultMonths = partitionRepository.findDefaultPartitionMonths();
+            if (!defaultMonths.isEmpty()) {
+                log.warn("Default partition of fact_feedback holds rows of {}, moving them to monthly partitions",
+                        defaultMonths);
+                months.addAll(defaultMonths);
+            }
+            months.removeAll(partitionMonths);
+            if (!months.isEmpty()) {
+                createPartitions(months);
+            }
+
+            if (retentionMonths > 0) {
+                archiveBefore(current.minusMonths(retentionMonths));
+            }
+        } catch (DataAccessException e) {
+            log.error("Partition maintenance of fact_feedback failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void createPartitions(Set<YearMonth> months) {
+        try {
+            long start = System.currentTimeMillis();
+            int created = partitionRepository.createPartitions(months);
+            partitionMonths.addAll(months);
+            if (created > 0) {
+                log.info("Created {} fact_feedback partitions for {} in {} ms",
+                        created, months, System.currentTimeMillis() - start);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not create fact_feedback partitions for {}, rows stay in the default partition: {}",
+                    months, e.getMessage());
+        }
+    }
+
+    private void archiveBefore(YearMonth cutoff) {
+        List<YearMonth> expired = new ArrayList<>();
+        for (YearMonth month : new TreeSet<>(partitionMonths)) {
+            if (month.isBefore(cutoff)) {
+                expired.add(month);
+            }
+        }
+        for (YearMonth month : expired) {
+            // Writers stop loading the partition directly before it goes
+            partitionMonths.remove(month);
+            long start = System.currentTimeMillis();
+            if (partitionRepository.archivePartition(month)) {
+                log.info("Archived fact_feedback partition of {} in {} ms", month, System.currentTimeMillis() - start);
+            }
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package gov.ihd.apiservice.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import gov.ihd.apiservice.batch.JsonFileItemReader;
+import gov.ihd.apiservice.batch.JobCompletionNotificationListener;
 import gov.ihd.apiservice.dto.JobStatus;
 import gov.ihd.apiservice.dto.ProcessingJobDto;
+import gov.ihd.apiservice.exception.JobQueueFullException;
+import gov.ihd.apiservice.util.FileUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.core.*;
@@ -14,12 +16,15 @@ import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.repository.JobRestartException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.core.task.TaskExecutor;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -38,16 +43,23 @@ public class FileProcessingService {
     private final Job importFeedbackJob;
     private final JobRepository jobRepository;
     private final ObjectMapper objectMapper;
-    private final TaskExecutor taskExecutor;
+    private final JobScheduler jobScheduler;
     private final JobEventListener jobEventListener;
     
     @Value("${app.upload.dir:./uploads}")
     private String uploadDir;
     
-    @Value("${app.job-history.max-size:1000}")
-    private int maxJobHistorySize;
-    
     public ProcessingJobDto uploadAndProcessFile(MultipartFile file) throws IOException {
+        return uploadAndProcessFile(file, 0);
+    }
+    
+    /**
+     * @param priority Queue priority of the job; higher runs first
+     */
+    public ProcessingJobDto uploadAndProcessFile(MultipartFile file, int priority) throws IOException {
+        // Refuse before storing anything if the job could not be queued
+        jobScheduler.checkCapacity();
+        
         // Create upload directory if it doesn't exist
         File uploadDir = new File(this.uploadDir);
         if (!uploadDir.exists()) {
@@ -70,49 +82,117 @@ public class FileProcessingService {
         log.info("File saved to: {}", targetFile.getAbsolutePath());
         
         // Start the processing job
-        return startProcessingJob(targetFile, originalFilename);
+        return startProcessingJob(targetFile, originalFilename, file.getSize(), null, priority);
     }
     
-    @Transactional
-    public ProcessingJobDto startProcessingJob(File file, String filename) {
-        // Clean up old job entries if we exceed the max size
-        ((JobProgressService) jobEventListener).cleanupOldJobs(maxJobHistorySize);
+    /**
+     * Write a raw request body straight into the upload directory and start its job as soon
+     * as the last byte is on disk. The body goes to a .part file first, so a partial upload
+     * never shows up under the real name.
+     *
+     * @param filename Plain file name with a supported extension
+     * @param body The request body
+     * @param expectedChecksum Optional CRC32C (8 hex digits) sent by the client
+     * @param priority Queue priority of the job; higher runs first
+     * @return The started job, with the size and checksum of the stored file
+     */
+    public ProcessingJobDto uploadStreamAndProcess(String filename, InputStream body, String expectedChecksum,
+                                                   int priority) throws IOException {
+        jobScheduler.checkCapacity();
+        
+        Path uploadPath = Paths.get(this.uploadDir);
+        Files.createDirectories(uploadPath);
+        
+        Path targetFile = uploadPath.resolve(filename);
+        if (Files.exists(targetFile)) {
+            throw new RuntimeException("File already exists in upload directory: " + filename);
+        }
+        
+        Path partFile = uploadPath.resolve(filename + ".part");
+        FileUtils.StreamedFile streamed;
+        try {
+            streamed = FileUtils.writeStream(body, partFile);
+        } catch (FileAlreadyExistsException e) {
+            throw new RuntimeException("An upload of " + filename + " is already in progress");
+        } catch (IOException e) {
+            Files.deleteIfExists(partFile);
+            throw e;
+        }
+        
+        if (expectedChecksum != null && !expectedChecksum.equalsIgnoreCase(streamed.checksum())) {
+            Files.deleteIfExists(partFile);
+            throw new RuntimeException("Checksum mismatch for " + filename + ": expected " + expectedChecksum
+                    + ", received " + streamed.checksum());
+        }
         
-        // Generate a unique job ID and create the job
+        try {
+            FileUtils.publish(partFile, targetFile);
+        } catch (FileAlreadyExistsException e) {
+            // Another upload of the same name finished first
+            Files.deleteIfExists(partFile);
+            throw new RuntimeException("File already exists in upload directory: " + filename);
+        }
+        log.info("Streamed {} bytes to {} (crc32c {})", streamed.size(), targetFile.toAbsolutePath(), streamed.checksum());
+        
+        return startProcessingJob(targetFile.toFile(), filename, streamed.size(), streamed.checksum(), priority);
+    }
+    
+    public ProcessingJobDto startProcessingJob(File file, String filename) {
+        return startProcessingJob(file, filename, null, null, 0);
+    }
+    
+    /**
+     * Register a job for the file and hand it to the {@link JobScheduler}, which runs it now
+     * or queues it. Deliberately not transactional: the job row must be committed before another
+     * thread can pick the job up and update it.
+     *
+     * @param fileSize Size of the stored file, if known
+     * @param checksum CRC32C of the stored file, if computed
+     * @param priority Queue priority of the job; higher runs first
+     * @throws JobQueueFullException If the queue filled up while the file was stored; the file is removed
+     */
+    public ProcessingJobDto startProcessingJob(File file, String filename, Long fileSize, String checksum, int priority) {
+        // Generate a unique job ID and register the job; old jobs are evicted by the registry
         String jobId = UUID.randomUUID().toString();
-        ProcessingJobDto jobDto = ((JobProgressService) jobEventListener).createJob(jobId, filename);
+        ProcessingJobDto jobDto = ((JobProgressService) jobEventListener).createJob(jobId, filename, fileSize, checksum);
         
-        // Run job asynchronously using TaskExecutor
-        taskExecutor.execute(() -> {
-            try {
-                // Prepare job parameters
-                JobParameters parameters = new JobParametersBuilder()
-                        .addString("jobId", jobId)
-                        .addString("filePath", file.getAbsolutePath())
-                        .addLong("time", System.currentTimeMillis())
-                        .toJobParameters();
-                
-                // Launch the job
-                JobExecution jobExecution = jobLauncher.run(importFeedbackJob, parameters);
-                
-                // Update status based on job execution
-                updateJobStatus(jobId, jobExecution);
-                
-            } catch (JobExecutionAlreadyRunningException | JobRestartException |
-                     JobInstanceAlreadyCompleteException | JobParametersInvalidException e) {
-                log.error("Error running job: {}", e.getMessage(), e);
-                jobEventListener.onJobFailed(jobId, e.getMessage());
+        try {
+            jobScheduler.submit(jobId, priority, () -> runJob(jobId, file));
+        } catch (JobQueueFullException e) {
+            jobEventListener.onJobFailed(jobId, e.getMessage());
+            if (!file.delete()) {
+                log.warn("Could not remove {} after its job was refused", file);
             }
-        });
-        
+            throw e;
+        }
         return jobDto;
     }
     
+    private void runJob(String jobId, File file) {
+        try {
+            // Prepare job parameters
+            JobParameters parameters = new JobParametersBuilder()
+                    .addString("jobId", jobId)
+                    .addString("filePath", file.getAbsolutePath())
+                    .addLong("time", System.currentTimeMillis())
+                    .toJobParameters();
+            
+            // Launch the job
+            JobExecution jobExecution = jobLauncher.run(importFeedbackJob, parameters);
+            
+            // Update status based on job execution
+            updateJobStatus(jobId, jobExecution);
+            
+        } catch (JobExecutionAlreadyRunningException | JobRestartException |
+                 JobInstanceAlreadyCompleteException | JobParametersInvalidException e) {
+            log.error("Error running job: {}", e.getMessage(), e);
+            jobEventListener.onJobFailed(jobId, e.getMessage());
+        }
+    }
+    
     private void updateJobStatus(String jobId, JobExecution jobExecution) {
         if (jobExecution.getStatus() == BatchStatus.COMPLETED) {
-            int recordsProcessed = (int)jobExecution.getStepExecutions().stream()
-                    .mapToLong(StepExecution::getWriteCount)
-                    .sum();
+            int recordsProcessed = JobCompletionNotificationListener.recordsWritten(jobExecution);
             jobEventListener.onJobCompleted(jobId, recordsProcessed);
         } else if (jobExecution.getStatus() == BatchStatus.FAILED) {
             String errorMessage = jobExecution.getAllFailureExceptions().stream()
@@ -0,0 +1,265 @@
+package gov.ihd.apiservice.service;
+
+import gov.ihd.apiservice.dto.CacheStatsDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Micrometer meters of the import hot path, exposed on /actuator/prometheus. Step meters
+ * are tagged with the job id and the step name (partitions share the name of their worker
+ * step) and are registered once per step, so recording a value is a field access. The
+ * dimension caches are shared by all jobs, so their gauges are tagged by dimension only.
+ * Meters of the newest app.metrics.retained-jobs finished jobs are kept; older ones are
+ * removed so the number of series stays bounded.
+ */
+@Slf4j
+@Service
+public class IngestionMetrics {
+
+    public static final String PREFIX = "ihd.ingest";
+
+    private static final String UNKNOWN = "none";
+
+    private final MeterRegistry registry;
+    private final DimensionCacheService dimensionCache;
+    private final int retainedJobs;
+
+    private final Map<String, StepMetrics> steps = new ConcurrentHashMap<>();
+    private final Map<String, JobRate> jobRates = new ConcurrentHashMap<>();
+    private final Deque<String> finishedJobs = new ArrayDeque<>();
+
+    public IngestionMetrics(MeterRegistry registry,
+                            DimensionCacheService dimensionCache,
+                            @Value("${app.metrics.retained-jobs:20}") int retainedJobs) {
+        this.registry = registry;
+        this.dimensionCache = dimensionCache;
+        this.retainedJobs = retainedJobs;
+    }
+
+    @PostConstruct
+    public void registerCacheGauges() {
+        for (CacheStatsDto stats : dimensionCache.getStats()) {
+            String name = stats.getName();
+            Gauge.builder(PREFIX + ".dimension.cache.hit.ratio", () -> cacheStats(name).getHitRatio())
+                    .description("Share of dimension key lookups served from the cache")
+                    .tag("dimension", name)
+                    .register(registry);
+            Gauge.builder(PREFIX + ".dimension.cache.size", () -> cacheStats(name).getSize())
+                    .tag("dimension", name)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Meters of the step the execution belongs to
+     */
+    public StepMetrics forStep(StepExecution stepExecution) {
+        return forStep(stepExecution.getJobParameters().getString("jobId"), stepExecution.getStepName());
+    }
+
+    /**
+     * Meters of the step running on the current thread, for components that are not step scoped
+     */
+    public StepMetrics current() {
+        StepContext context = StepSynchronizationManager.getContext();
+        if (context == null) {
+            return forStep(null, null);
+        }
+        return forStep(context.getStepExecution());
+    }
+
+    private StepMetrics forStep(String jobId, String stepName) {
+        String job = jobId != null ? jobId : UNKNOWN;
+        // Partitions are named "<worker>:<partition>"
+        String step = stepName == null ? UNKNOWN
+                : stepName.indexOf(':') >= 0 ? stepName.substring(0, stepName.indexOf(':')) : stepName;
+        return steps.computeIfAbsent(job + '\u001F' + step, key -> new StepMetrics(job, step));
+    }
+
+    /**
+     * Start the rows per second gauge of a job
+     */
+    public void jobStarted(String jobId) {
+        JobRate rate = jobRates.computeIfAbsent(jobId, id -> new JobRate());
+        Gauge.builder(PREFIX + ".rows.per.second", rate, JobRate::rowsPerSecond)
+                .description("Fact rows written per second since the job started")
+                .tag("jobId", jobId)
+                .register(registry);
+    }
+
+    /**
+     * Freeze the rows per second of a job and drop the meters of the oldest finished jobs
+     */
+    public void jobFinished(String jobId) {
+        JobRate rate = jobRates.get(jobId);
+        if (rate != null) {
+            rate.endNanos = System.nanoTime();
+        }
+        synchronized (finishedJobs) {
+            finishedJobs.addLast(jobId);
+            while (finishedJobs.size() > retainedJobs) {
+                removeJob(finishedJobs.removeFirst());
+            }
+        }
+    }
+
+    private void removeJob(String jobId) {
+        steps.values().removeIf(step -> step.jobId.equals(jobId));
+        jobRates.remove(jobId);
+        for (Meter meter : registry.getMeters()) {
+            if (meter.getId().getName().startsWith(PREFIX) && jobId.equals(meter.getId().getTag("jobId"))) {
+                registry.remove(meter);
+            }
+        }
+    }
+
+    private CacheStatsDto cacheStats(String name) {
+        for (CacheStatsDto stats : dimensionCache.getStats()) {
+            if (stats.getName().equals(name)) {
+                return stats;
+            }
+        }
+        return new CacheStatsDto();
+    }
+
+    private static String reason(Throwable throwable) {
+        return throwable == null ? "unknown" : throwable.getClass().getSimpleName();
+    }
+
+    /**
+     * Meters of one step of one job
+     */
+    public final class StepMetrics {
+
+        private final String jobId;
+        private final String step;
+        private final Timer parse;
+        private final Timer process;
+        private final Timer factWrite;
+        private final Timer bridgeWrite;
+        private final Counter factRows;
+        private final Counter bridgeRows;
+        private final Timer chunk;
+        private final Timer commit;
+        private final Map<String, Timer> dimensionTimers = new ConcurrentHashMap<>();
+
+        private StepMetrics(String jobId, String step) {
+            this.jobId = jobId;
+            this.step = step;
+            this.parse = timer(".read.parse", "Time to decode one record");
+            this.process = timer(".process", "Time to map one record to its fact and dimension rows");
+            this.factWrite = Timer.builder(PREFIX + ".write").tags("jobId", jobId, "step", step, "rows", "fact").register(registry);
+            this.bridgeWrite = Timer.builder(PREFIX + ".write").tags("jobId", jobId, "step", step, "rows", "bridge").register(registry);
+            this.factRows = Counter.builder(PREFIX + ".rows").tags("jobId", jobId, "step", step, "rows", "fact").register(registry);
+            this.bridgeRows = Counter.builder(PREFIX + ".rows").tags("jobId", jobId, "step", step, "rows", "bridge").register(registry);
+            this.chunk = timer(".chunk", "Time from the start of a chunk until its transaction committed");
+            this.commit = timer(".chunk.commit", "Time to commit the transaction of a chunk");
+        }
+
+        private Timer timer(String name, String description) {
+            return Timer.builder(PREFIX + name)
+                    .description(description)
+                    .tags("jobId", jobId, "step", step)
+                    .register(registry);
+        }
+
+        public Timer parse() {
+            return parse;
+        }
+
+        public Timer process() {
+            return process;
+        }
+
+        /**
+         * Time to resolve the keys of one dimension for a chunk
+         */
+        public Timer dimension(String dimension) {
+            return dimensionTimers.computeIfAbsent(dimension, name -> Timer.builder(PREFIX + ".dimension.resolve")
+                    .tags("jobId", jobId, "step", step, "dimension", name)
+                    .register(registry));
+        }
+
+        public Timer factWrite() {
+            return factWrite;
+        }
+
+        public Timer bridgeWrite() {
+            return bridgeWrite;
+        }
+
+        public Timer chunk() {
+            return chunk;
+        }
+
+        public Timer commit() {
+            return commit;
+        }
+
+        public void factRowsWritten(long rows) {
+            factRows.increment(rows);
+            JobRate rate = jobRates.get(jobId);
+            if (rate != null) {
+                rate.rows.add(rows);
+            }
+        }
+
+        public void bridgeRowsWritten(long rows) {
+            bridgeRows.increment(rows);
+        }
+
+        /**
+         * @param phase read, process or write
+         */
+        public void skipped(String phase, Throwable cause) {
+            skipped(phase, reason(cause));
+        }
+
+        public void skipped(String phase, String reason) {
+            skipped(phase, reason, 1);
+        }
+
+        public void skipped(String phase, String reason, long count) {
+            Counter.builder(PREFIX + ".skips")
+                    .tags("jobId", jobId, "step", step, "phase", phase, "reason", reason)
+                    .register(registry)
+                    .increment(count);
+        }
+
+        public void retried(Throwable cause) {
+            Counter.builder(PREFIX + ".retries")
+                    .tags("jobId", jobId, "step", step, "reason", reason(cause))
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    private static class JobRate {
+        private final long startNanos = System.nanoTime();
+        private volatile long endNanos = 0;
+        private final LongAdder rows = new LongAdder();
+
+        private double rowsPerSecond() {
+            long end = endNanos != 0 ? endNanos : System.nanoTime();
+            double seconds = (end - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+            return seconds <= 0 ? 0.0 : rows.sum() / seconds;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package gov.ihd.apiservice.service;
+
+import gov.ihd.apiservice.dto.JobStatus;
+import gov.ihd.apiservice.dto.ProcessingJobDto;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes job updates to Server-Sent Event subscribers. Changes reported by
+ * {@link JobProgressService} are coalesced per job and sent once per flush interval, so a
+ * subscriber sees at most one event per job and interval however fast the job progresses.
+ * Each subscriber has at most one send in flight; if it has not finished the previous one,
+ * the update is held back and the latest state is sent on a later flush. The number of
+ * open subscriptions is bounded; a periodic heartbeat comment finds the clients that went
+ * away so their slots are released.
+ */
+@Slf4j
+@Service
+public class JobEventBroadcaster {
+
+    /**
+     * Subscription key for the stream of all jobs
+     */
+    public static final String ALL_JOBS = "*";
+
+    private final long timeoutMs;
+    private final int maxSubscribers;
+    private final ExecutorService sendExecutor;
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    // Latest state of every job that changed since the last flush
+    private final Map<String, ProcessingJobDto> changedJobs = new ConcurrentHashMap<>();
+
+    public JobEventBroadcaster(@Value("${app.job-events.timeout-ms:1800000}") long timeoutMs,
+                               @Value("${app.job-events.max-subscribers:256}") int maxSubscribers,
+                               @Value("${app.job-events.send-threads:2}") int sendThreads) {
+        this.timeoutMs = timeoutMs;
+        this.maxSubscribers = maxSubscribers;
+        this.sendExecutor = Executors.newFixedThreadPool(sendThreads, runnable -> {
+            Thread thread = new Thread(runnable, "job-events-send");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    /**
+     * Open a subscription and send the current state of the job right away
+     *
+     * @param key A job id, or {@link #ALL_JOBS}
+     * @param current The current state of the job, or of every job for {@link #ALL_JOBS}
+     * @return The emitter, or null if the subscriber limit is reached
+     */
+    public SseEmitter subscribe(String key, List<ProcessingJobDto> current) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(key, emitter);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        subscribers.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+
+        try {
+            for (ProcessingJobDto job : current) {
+                emitter.send(event(job));
+            }
+            if (!ALL_JOBS.equals(key) && current.size() == 1 && isFinished(current.get(0))) {
+                emitter.complete();
+            }
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * Record that a job changed; the update is sent on the next flush
+     */
+    public void jobChanged(ProcessingJobDto job) {
+        changedJobs.put(job.getJobId(), job);
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @Scheduled(fixedRateString = "${app.job-events.interval-ms:500}")
+    public void flush() {
+        if (changedJobs.isEmpty()) {
+            return;
+        }
+        List<ProcessingJobDto> jobs = new ArrayList<>(changedJobs.size());
+        for (String jobId : changedJobs.keySet()) {
+            ProcessingJobDto job = changedJobs.remove(jobId);
+            if (job != null) {
+                jobs.add(job);
+            }
+        }
+        for (ProcessingJobDto job : jobs) {
+            send(subscribers.get(job.getJobId()), job);
+            send(subscribers.get(ALL_JOBS), job);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${app.job-events.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Set<Subscriber> targets : subscribers.values()) {
+            for (Subscriber subscriber : targets) {
+                // A subscriber that is busy sending is alive or will fail on that send
+                trySend(subscriber, SseEmitter.event().comment("heartbeat"), false);
+            }
+        }
+    }
+
+    private void send(Set<Subscriber> targets, ProcessingJobDto job) {
+        if (targets == null) {
+            return;
+        }
+        boolean complete = isFinished(job);
+        for (Subscriber subscriber : targets) {
+            if (!trySend(subscriber, event(job), complete && !ALL_JOBS.equals(subscriber.key))) {
+                // Still busy with an earlier event; retry with the latest state next time
+                changedJobs.putIfAbsent(job.getJobId(), job);
+            }
+        }
+    }
+
+    /**
+     * Send an event on the send executor unless the subscriber has a send in flight
+     *
+     * @return false if the subscriber was busy
+     */
+    private boolean trySend(Subscriber subscriber, SseEmitter.SseEventBuilder event, boolean complete) {
+        if (!subscriber.sending.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            sendExecutor.execute(() -> {
+                try {
+                    subscriber.emitter.send(event);
+                    if (complete) {
+                        subscriber.emitter.complete();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("Dropping job event subscriber: {}", e.getMessage());
+                    remove(subscriber);
+                } finally {
+                    subscriber.sending.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            subscriber.sending.set(false);
+        }
+        return true;
+    }
+
+    private void remove(Subscriber subscriber) {
+        Set<Subscriber> set = subscribers.get(subscriber.key);
+        if (set != null && set.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder event(ProcessingJobDto job) {
+        String name = switch (job.getStatus()) {
+            case COMPLETED -> "completed";
+            case FAILED -> "failed";
+            default -> "progress";
+        };
+        return SseEmitter.event().name(name).data(job, MediaType.APPLICATION_JSON);
+    }
+
+    private static boolean isFinished(ProcessingJobDto job) {
+        return job.getStatus() == JobStatus.COMPLETED || job.getStatus() == JobStatus.FAILED;
+    }
+
+    private static class Subscriber {
+        private final String key;
+        private final SseEmitter emitter;
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private Subscriber(String key, SseEmitter emitter) {
+            this.key = key;
+            this.emitter = emitter;
+        }
+    }
+}
@@ -1,80 +1,251 @@
 package gov.ihd.apiservice.service;
 
+import gov.ihd.apiservice.dto.JobPageDto;
 import gov.ihd.apiservice.dto.JobStatus;
 import gov.ihd.apiservice.dto.ProcessingJobDto;
+import gov.ihd.apiservice.entity.ProcessingJob;
+import gov.ihd.apiservice.event.JobEventListener;
+import gov.ihd.apiservice.repository.ProcessingJobRepository;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
-import gov.ihd.apiservice.event.JobEventListener;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
 
+/**
+ * Registry of processing jobs. The newest jobs (app.job-history.max-size) are kept in skip
+ * lists ordered by start time, one over all jobs and one per status, plus a hash index by
+ * job id; every job is also written through to the processing_job table. Pages are read
+ * from memory and continue from the table once they run past the oldest job held in memory,
+ * so history survives restarts. Progress counts change constantly and are written to the
+ * table on a schedule; creation and status changes are written immediately.
+ */
 @Slf4j
 @Service
 public class JobProgressService implements JobEventListener {
-    private final Map<String, ProcessingJobDto> jobStatusMap = new ConcurrentHashMap<>();
 
-    public ProcessingJobDto createJob(String jobId, String filename) {
+    private static final String INTERRUPTED_MESSAGE = "Interrupted by an application restart";
+
+    private final JobEventBroadcaster jobEventBroadcaster;
+    private final ProcessingJobRepository processingJobRepository;
+    private final int maxJobHistorySize;
+
+    private final Map<String, ProcessingJobDto> jobsById = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<JobKey, ProcessingJobDto> jobsByStart = new ConcurrentSkipListMap<>();
+    private final Map<JobStatus, ConcurrentSkipListMap<JobKey, ProcessingJobDto>> jobsByStatus = new EnumMap<>(JobStatus.class);
+    // Jobs whose progress changed since it was last written to the table
+    private final Set<String> dirtyJobs = ConcurrentHashMap.newKeySet();
+    // Whether processing_job may hold jobs older than the oldest one in memory
+    private volatile boolean olderInDatabase = false;
+
+    public JobProgressService(JobEventBroadcaster jobEventBroadcaster,
+                              ProcessingJobRepository processingJobRepository,
+                              @Value("${app.job-history.max-size:1000}") int maxJobHistorySize) {
+        this.jobEventBroadcaster = jobEventBroadcaster;
+        this.processingJobRepository = processingJobRepository;
+        this.maxJobHistorySize = maxJobHistorySize;
+        for (JobStatus status : JobStatus.values()) {
+            jobsByStatus.put(status, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    /**
+     * Load the newest jobs from the table. Jobs still marked as queued or running were cut off
+     * by the previous shutdown and are marked as failed.
+     */
+    @PostConstruct
+    public void loadHistory() {
+        try {
+            int interrupted = processingJobRepository.failRunningJobs(List.of(JobStatus.QUEUED, JobStatus.STARTED),
+                    JobStatus.FAILED, LocalDateTime.now(), INTERRUPTED_MESSAGE);
+            if (interrupted > 0) {
+                log.warn("Marked {} jobs interrupted by the last shutdown as failed", interrupted);
+            }
+            List<ProcessingJob> newest = processingJobRepository.findNewest(maxJobHistorySize);
+            newest.forEach(entity -> index(toDto(entity)));
+            olderInDatabase = newest.size() == maxJobHistorySize;
+            log.info("Loaded {} jobs from the job history", newest.size());
+        } catch (DataAccessException e) {
+            log.error("Could not load the job history: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Register a new job as QUEUED; {@link JobScheduler} marks it started once it runs
+     */
+    public ProcessingJobDto createJob(String jobId, String filename, Long fileSize, String checksum) {
         ProcessingJobDto jobDto = new ProcessingJobDto();
         jobDto.setJobId(jobId);
         jobDto.setFilename(filename);
-        jobDto.setStartTime(LocalDateTime.now());
-        jobDto.setStatus(JobStatus.STARTED);
+        // The table stores microseconds; keep the in-memory order identical
+        jobDto.setStartTime(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        jobDto.setStatus(JobStatus.QUEUED);
         jobDto.setRecordsProcessed(0);
-        
-        jobStatusMap.put(jobId, jobDto);
+        jobDto.setFileSize(fileSize);
+        jobDto.setChecksum(checksum);
+
+        save(jobDto);
+        index(jobDto);
+        evictOldJobs();
+        jobEventBroadcaster.jobChanged(jobDto);
         return jobDto;
     }
-    
+
+    public void startJob(String jobId) {
+        ProcessingJobDto job = changeStatus(jobId, JobStatus.STARTED, dto -> dto.setQueuePosition(null));
+        if (job != null) {
+            save(job);
+            jobEventBroadcaster.jobChanged(job);
+        }
+    }
+
+    public void updateQueuePosition(String jobId, int queuePosition) {
+        ProcessingJobDto job = jobsById.get(jobId);
+        if (job != null && job.getStatus() == JobStatus.QUEUED && !Integer.valueOf(queuePosition).equals(job.getQueuePosition())) {
+            job.setQueuePosition(queuePosition);
+            jobEventBroadcaster.jobChanged(job);
+        }
+    }
+
     public void updateJobProgress(String jobId, int recordsProcessed) {
-        ProcessingJobDto job = jobStatusMap.get(jobId);
+        ProcessingJobDto job = jobsById.get(jobId);
         if (job != null) {
             job.setRecordsProcessed(recordsProcessed);
+            dirtyJobs.add(jobId);
+            jobEventBroadcaster.jobChanged(job);
         }
     }
-    
+
+    /**
+     * Add to the processed count; used when several worker steps report progress for one job
+     */
+    public void addJobProgress(String jobId, int count) {
+        jobsById.computeIfPresent(jobId, (id, job) -> {
+            job.setRecordsProcessed(job.getRecordsProcessed() + count);
+            dirtyJobs.add(jobId);
+            jobEventBroadcaster.jobChanged(job);
+            return job;
+        });
+    }
+
     public void completeJob(String jobId, int recordsProcessed) {
-        ProcessingJobDto job = jobStatusMap.get(jobId);
+        ProcessingJobDto job = changeStatus(jobId, JobStatus.COMPLETED, dto -> {
+            dto.setEndTime(LocalDateTime.now());
+            dto.setRecordsProcessed(recordsProcessed);
+        });
         if (job != null) {
-            job.setStatus(JobStatus.COMPLETED);
-            job.setEndTime(LocalDateTime.now());
-            job.setRecordsProcessed(recordsProcessed);
+            save(job);
+            jobEventBroadcaster.jobChanged(job);
         }
     }
-    
+
     public void failJob(String jobId, String errorMessage) {
-        ProcessingJobDto job = jobStatusMap.get(jobId);
+        ProcessingJobDto job = changeStatus(jobId, JobStatus.FAILED, dto -> {
+            dto.setEndTime(LocalDateTime.now());
+            dto.setErrorMessage(errorMessage);
+            dto.setQueuePosition(null);
+        });
         if (job != null) {
-            job.setStatus(JobStatus.FAILED);
-            job.setEndTime(LocalDateTime.now());
-            job.setErrorMessage(errorMessage);
+            save(job);
+            jobEventBroadcaster.jobChanged(job);
         }
     }
-    
+
+    /**
+     * @return The job, from memory or else from the job history table; null if unknown
+     */
     public ProcessingJobDto getJobStatus(String jobId) {
-        return jobStatusMap.get(jobId);
+        ProcessingJobDto job = jobsById.get(jobId);
+        if (job != null) {
+            return job;
+        }
+        try {
+            return processingJobRepository.findById(jobId).map(JobProgressService::toDto).orElse(null);
+        } catch (DataAccessException e) {
+            log.warn("Could not look up job {} in the job history: {}", jobId, e.getMessage());
+            return null;
+        }
     }
-    
+
+    /**
+     * @return The jobs held in memory, newest first
+     */
     public List<ProcessingJobDto> getAllJobs() {
-        return new ArrayList<>(jobStatusMap.values()).stream()
-                .sorted((j1, j2) -> j2.getStartTime().compareTo(j1.getStartTime()))
-                .collect(Collectors.toList());
+        return new ArrayList<>(jobsByStart.values());
+    }
+
+    /**
+     * One page of jobs, newest first
+     *
+     * @param after Cursor returned with the previous page, or null for the first page
+     * @param limit Maximum number of jobs
+     * @param status Only return jobs with this status, or null for all
+     * @return The jobs and the cursor of the next page
+     * @throws IllegalArgumentException If the cursor is malformed
+     */
+    public JobPageDto listJobs(String after, int limit, JobStatus status) {
+        JobKey afterKey = after != null ? decodeCursor(after) : null;
+        NavigableMap<JobKey, ProcessingJobDto> source = status != null ? jobsByStatus.get(status) : jobsByStart;
+        NavigableMap<JobKey, ProcessingJobDto> tail = afterKey != null ? source.tailMap(afterKey, false) : source;
+
+        List<ProcessingJobDto> page = new ArrayList<>(limit);
+        for (ProcessingJobDto job : tail.values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(job);
+        }
+
+        if (page.size() < limit && olderInDatabase && !jobsByStart.isEmpty()) {
+            // Every job newer than the oldest one in memory is in memory, so the table is
+            // only needed from there on
+            JobKey from = page.isEmpty() ? afterKey : JobKey.of(page.get(page.size() - 1));
+            JobKey oldestInMemory = jobsByStart.lastKey();
+            if (from == null || from.compareTo(oldestInMemory) < 0) {
+                from = oldestInMemory;
+            }
+            int remaining = limit - page.size();
+            List<ProcessingJob> older = status != null
+                    ? processingJobRepository.findPageBeforeWithStatus(status.name(), from.startTime(), from.jobId(), remaining)
+                    : processingJobRepository.findPageBefore(from.startTime(), from.jobId(), remaining);
+            older.forEach(entity -> page.add(toDto(entity)));
+        }
+
+        String nextCursor = page.size() == limit ? encodeCursor(JobKey.of(page.get(page.size() - 1))) : null;
+        return new JobPageDto(page, nextCursor);
     }
-    
-    public void cleanupOldJobs(int maxJobHistorySize) {
-        if (jobStatusMap.size() >= maxJobHistorySize) {
-            List<String> oldestJobs = jobStatusMap.entrySet().stream()
-                .filter(e -> e.getValue().getStatus().equals(JobStatus.COMPLETED) || 
-                           e.getValue().getStatus().equals(JobStatus.FAILED))
-                .sorted((e1, e2) -> e1.getValue().getStartTime().compareTo(e2.getValue().getStartTime()))
-                .limit(jobStatusMap.size() - maxJobHistorySize + 1)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
-            oldestJobs.forEach(jobStatusMap::remove);
+
+    /**
+     * Write the progress of running jobs to the job history table
+     */
+    @Scheduled(fixedDelayString = "${app.job-history.flush-ms:2000}")
+    public void flushProgress() {
+        for (String jobId : dirtyJobs) {
+            dirtyJobs.remove(jobId);
+            ProcessingJobDto job = jobsById.get(jobId);
+            if (job == null || job.getStatus() != JobStatus.STARTED) {
+                continue;
+            }
+            try {
+                processingJobRepository.updateRecordsProcessed(jobId, job.getRecordsProcessed(), JobStatus.STARTED);
+            } catch (DataAccessException e) {
+                log.warn("Could not write the progress of job {}: {}", jobId, e.getMessage());
+            }
         }
     }
 
@@ -83,6 +254,11 @@ public class JobProgressService implements JobEventListener {
         updateJobProgress(jobId, recordsProcessed);
     }
 
+    @Override
+    public void onRecordsProcessed(String jobId, int count) {
+        addJobProgress(jobId, count);
+    }
+
     @Override
     public void onJobCompleted(String jobId, int recordsProcessed) {
         completeJob(jobId, recordsProcessed);
@@ -92,4 +268,116 @@ public class JobProgressService implements JobEventListener {
     public void onJobFailed(String jobId, String errorMessage) {
         failJob(jobId, errorMessage);
     }
+
+    private void index(ProcessingJobDto job) {
+        JobKey key = JobKey.of(job);
+        jobsById.put(job.getJobId(), job);
+        jobsByStart.put(key, job);
+        jobsByStatus.get(job.getStatus()).put(key, job);
+    }
+
+    /**
+     * Apply a status change atomically with respect to other updates of the same job, and
+     * move the job to the skip list of its new status
+     */
+    private ProcessingJobDto changeStatus(String jobId, JobStatus status, Consumer<ProcessingJobDto> update) {
+        return jobsById.computeIfPresent(jobId, (id, job) -> {
+            JobKey key = JobKey.of(job);
+            jobsByStatus.get(job.getStatus()).remove(key);
+            job.setStatus(status);
+            update.accept(job);
+            jobsByStatus.get(status).put(key, job);
+            return job;
+        });
+    }
+
+    /**
+     * Drop the oldest jobs from memory once there are more than the history size. Queued and
+     * running jobs are never dropped, and nothing newer than them is either, so memory
+     * always holds every job newer than its oldest one.
+     */
+    private synchronized void evictOldJobs() {
+        while (jobsById.size() > maxJobHistorySize) {
+            Map.Entry<JobKey, ProcessingJobDto> oldest = jobsByStart.lastEntry();
+            if (oldest == null || isActive(oldest.getValue())) {
+                return;
+            }
+            ProcessingJobDto job = oldest.getValue();
+            jobsByStart.remove(oldest.getKey());
+            jobsByStatus.get(job.getStatus()).remove(oldest.getKey());
+            jobsById.remove(job.getJobId());
+            olderInDatabase = true;
+        }
+    }
+
+    private static boolean isActive(ProcessingJobDto job) {
+        return job.getStatus() == JobStatus.QUEUED || job.getStatus() == JobStatus.STARTED;
+    }
+
+    private void save(ProcessingJobDto job) {
+        try {
+            processingJobRepository.save(toEntity(job));
+        } catch (DataAccessException e) {
+            log.warn("Could not write job {} to the job history: {}", job.getJobId(), e.getMessage());
+        }
+    }
+
+    private static ProcessingJob toEntity(ProcessingJobDto dto) {
+        ProcessingJob entity = new ProcessingJob();
+        entity.setJobId(dto.getJobId());
+        entity.setFilename(dto.getFilename());
+        entity.setStatus(dto.getStatus());
+        entity.setStartTime(dto.getStartTime());
+        entity.setEndTime(dto.getEndTime());
+        entity.setRecordsProcessed(dto.getRecordsProcessed());
+        entity.setErrorMessage(dto.getErrorMessage());
+        entity.setFileSize(dto.getFileSize());
+        entity.setChecksum(dto.getChecksum());
+        return entity;
+    }
+
+    private static ProcessingJobDto toDto(ProcessingJob entity) {
+        ProcessingJobDto dto = new ProcessingJobDto();
+        dto.setJobId(entity.getJobId());
+        dto.setFilename(entity.getFilename());
+        dto.setStatus(entity.getStatus());
+        dto.setStartTime(entity.getStartTime());
+        dto.setEndTime(entity.getEndTime());
+        dto.setRecordsProcessed(entity.getRecordsProcessed());
+        dto.setErrorMessage(entity.getErrorMessage());
+        dto.setFileSize(entity.getFileSize());
+        dto.setChecksum(entity.getChecksum());
+        return dto;
+    }
+
+    private static String encodeCursor(JobKey key) {
+        String value = key.startTime() + "|" + key.jobId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static JobKey decodeCursor(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf('|');
+            return new JobKey(LocalDateTime.parse(value.substring(0, separator)), value.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Position of a job in the registry: newest first, ties broken by job id
+     */
+    private record JobKey(LocalDateTime startTime, String jobId) implements Comparable<JobKey> {
+
+        static JobKey of(ProcessingJobDto job) {
+            return new JobKey(job.getStartTime(), job.getJobId());
+        }
+
+        @Override
+        public int compareTo(JobKey other) {
+            int byTime = other.startTime.compareTo(startTime);
+            return byTime != 0 ? byTime : other.jobId.compareTo(jobId);
+        }
+    }
 }
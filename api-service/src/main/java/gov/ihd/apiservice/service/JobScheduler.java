@@ -0,0 +1,186 @@
+package gov.ihd.apiservice.service;
+
+import gov.ihd.apiservice.exception.JobQueueFullException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for import jobs. At most app.jobs.max-concurrent jobs run at a time; the
+ * rest wait in a queue ordered by priority (higher first) and then by arrival. Queued jobs
+ * carry their queue position, which is updated whenever the queue changes. Once
+ * app.jobs.queue-capacity jobs are waiting, new jobs are refused with a
+ * {@link JobQueueFullException}.
+ * <p>
+ * The scheduler's monitor only guards the queue and the slot count. Jobs are picked under
+ * it, but their status changes are saved and they are handed to the executor after it is
+ * released, so a slow database never holds up submissions or finishing jobs.
+ */
+@Slf4j
+@Service
+public class JobScheduler {
+
+    private final TaskExecutor taskExecutor;
+    private final JobProgressService jobProgressService;
+    private final int maxConcurrentJobs;
+    private final int queueCapacity;
+    private final int retryAfterSeconds;
+
+    private final PriorityQueue<QueuedJob> queue = new PriorityQueue<>();
+    private int runningJobs = 0;
+    private long sequence = 0;
+
+    // Serializes queue position updates so a stale snapshot cannot overwrite a newer one
+    private final ReentrantLock positionLock = new ReentrantLock();
+
+    public JobScheduler(TaskExecutor taskExecutor,
+                        JobProgressService jobProgressService,
+                        @Value("${app.jobs.max-concurrent:2}") int maxConcurrentJobs,
+                        @Value("${app.jobs.queue-capacity:50}") int queueCapacity,
+                        @Value("${app.jobs.retry-after-seconds:30}") int retryAfterSeconds) {
+        this.taskExecutor = taskExecutor;
+        this.jobProgressService = jobProgressService;
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        this.queueCapacity = queueCapacity;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Fail fast before an upload is stored if it could not be queued
+     *
+     * @throws JobQueueFullException If the queue is full
+     */
+    public synchronized void checkCapacity() {
+        if (runningJobs >= maxConcurrentJobs && queue.size() >= queueCapacity) {
+            throw new JobQueueFullException("The job queue is full (" + queueCapacity + " jobs waiting), try again later",
+                    retryAfterSeconds);
+        }
+    }
+
+    /**
+     * Run a registered job now if a slot is free, otherwise queue it
+     *
+     * @param jobId The ID of the job, already registered as QUEUED
+     * @param priority Jobs with a higher priority leave the queue first
+     * @param job Runs the job; the slot is released when it returns
+     * @return The queue position, or 0 if the job started right away
+     * @throws JobQueueFullException If the queue is full
+     */
+    public int submit(String jobId, int priority, Runnable job) {
+        List<QueuedJob> starting;
+        int position;
+        synchronized (this) {
+            checkCapacity();
+            queue.add(new QueuedJob(priority, sequence++, jobId, job));
+            starting = takeStartable();
+            position = positionOf(jobId);
+        }
+        dispatch(starting);
+        return position;
+    }
+
+    public synchronized int getQueuedJobCount() {
+        return queue.size();
+    }
+
+    public synchronized int getRunningJobCount() {
+        return runningJobs;
+    }
+
+    private void finished() {
+        List<QueuedJob> starting;
+        synchronized (this) {
+            runningJobs--;
+            starting = takeStartable();
+        }
+        dispatch(starting);
+    }
+
+    /**
+     * Take queued jobs off the queue while slots are free and claim a slot for each; called
+     * while holding the monitor
+     */
+    private List<QueuedJob> takeStartable() {
+        List<QueuedJob> starting = new ArrayList<>();
+        while (runningJobs < maxConcurrentJobs && !queue.isEmpty()) {
+            starting.add(queue.poll());
+            runningJobs++;
+        }
+        return starting;
+    }
+
+    /**
+     * Start the jobs taken off the queue, then renumber the ones still waiting; called
+     * without holding the monitor
+     */
+    private void dispatch(List<QueuedJob> starting) {
+        for (QueuedJob queued : starting) {
+            start(queued);
+        }
+        positionLock.lock();
+        try {
+            List<QueuedJob> waiting;
+            synchronized (this) {
+                waiting = new ArrayList<>(queue);
+            }
+            Collections.sort(waiting);
+            for (int i = 0; i < waiting.size(); i++) {
+                jobProgressService.updateQueuePosition(waiting.get(i).jobId(), i + 1);
+            }
+        } finally {
+            positionLock.unlock();
+        }
+    }
+
+    private void start(QueuedJob queued) {
+        jobProgressService.startJob(queued.jobId());
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    queued.job().run();
+                } finally {
+                    finished();
+                }
+            });
+        } catch (TaskRejectedException e) {
+            synchronized (this) {
+                runningJobs--;
+            }
+            log.error("Could not start job {}: {}", queued.jobId(), e.getMessage());
+            jobProgressService.failJob(queued.jobId(), "Could not start the job: " + e.getMessage());
+        }
+    }
+
+    private int positionOf(String jobId) {
+        int position = 1;
+        for (QueuedJob queued : queue) {
+            if (queued.jobId().equals(jobId)) {
+                // Count the jobs ahead of it; the heap itself is not in order
+                for (QueuedJob other : queue) {
+                    if (other.compareTo(queued) < 0) {
+                        position++;
+                    }
+                }
+                return position;
+            }
+        }
+        return 0;
+    }
+
+    private record QueuedJob(int priority, long sequence, String jobId, Runnable job) implements Comparable<QueuedJob> {
+
+        @Override
+        public int compareTo(QueuedJob other) {
+            int byPriority = Integer.compare(other.priority, priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
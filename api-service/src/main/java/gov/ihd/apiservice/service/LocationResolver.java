@@ -0,0 +1,171 @@
+package gov.ihd.apiservice.service;
+
+import gov.ihd.apiservice.entity.DimLocation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns the free text location of a user profile into a normalized dim_location member.
+ * The string is split on commas (Latin or Arabic) in one pass that also trims and collapses whitespace:
+ * one part is a country, two are "city, country", more are "city, region..., country".
+ * Each part is mapped through a table of common aliases ("UK", "KSA", ...); parts written
+ * all in one case are title cased, except short all-caps abbreviations such as "NY".
+ *
+ * <p>Profiles repeat the same few strings, so results are kept per location string and
+ * their parts and keys are interned, up to app.location.parse-cache-size strings. Returned
+ * rows are shared and must not be modified.
+ */
+@Service
+public class LocationResolver {
+
+    private static final int MAX_PART_LENGTH = 100;
+    private static final int MAX_ABBREVIATION_LENGTH = 3;
+    private static final char ARABIC_COMMA = '\u060C';
+
+    /**
+     * Lower case spelling to canonical name, including the Arabic names of the most common places
+     */
+    private static final Map<String, String> ALIASES = Map.ofEntries(
+            Map.entry("uk", "United Kingdom"),
+            Map.entry("u.k.", "United Kingdom"),
+            Map.entry("great britain", "United Kingdom"),
+            Map.entry("us", "United States"),
+            Map.entry("u.s.", "United States"),
+            Map.entry("usa", "United States"),
+            Map.entry("u.s.a.", "United States"),
+            Map.entry("united states of america", "United States"),
+            Map.entry("uae", "United Arab Emirates"),
+            Map.entry("u.a.e.", "United Arab Emirates"),
+            Map.entry("ksa", "Saudi Arabia"),
+            Map.entry("kingdom of saudi arabia", "Saudi Arabia"),
+            Map.entry("\u0645\u0635\u0631", "Egypt"),
+            Map.entry("\u0627\u0644\u0633\u0639\u0648\u062f\u064a\u0629", "Saudi Arabia"),
+            Map.entry("\u0627\u0644\u0642\u0627\u0647\u0631\u0629", "Cairo"),
+            Map.entry("\u0627\u0644\u0625\u0633\u0643\u0646\u062f\u0631\u064a\u0629", "Alexandria"),
+            Map.entry("\u0627\u0644\u0631\u064a\u0627\u0636", "Riyadh"),
+            Map.entry("nyc", "New York"));
+
+    private final int maxEntries;
+    private final Map<String, DimLocation> locations = new ConcurrentHashMap<>();
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+
+    public LocationResolver(@Value("${app.location.parse-cache-size:100000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return The normalized location with its location_key set, or null if the string has no text
+     */
+    public DimLocation resolve(String locationString) {
+        DimLocation location = locations.get(locationString);
+        if (location == null) {
+            location = parse(locationString);
+            if (location != null && locations.size() < maxEntries) {
+                locations.putIfAbsent(locationString, location);
+            }
+        }
+        return location;
+    }
+
+    DimLocation parse(String locationString) {
+        List<String> parts = new ArrayList<>(3);
+        int length = locationString.length();
+        StringBuilder part = new StringBuilder(Math.min(length, 64));
+        boolean pendingSpace = false;
+        boolean upper = false;
+        boolean lower = false;
+        int letters = 0;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? locationString.charAt(i) : ',';
+            if (c == ',' || c == ARABIC_COMMA) {
+                if (!part.isEmpty()) {
+                    parts.add(normalize(part.toString(), upper, lower, letters));
+                }
+                part.setLength(0);
+                pendingSpace = false;
+                upper = false;
+                lower = false;
+                letters = 0;
+            } else if (Character.isWhitespace(c)) {
+                pendingSpace = !part.isEmpty();
+            } else {
+                if (pendingSpace) {
+                    part.append(' ');
+                    pendingSpace = false;
+                }
+                part.append(c);
+                if (Character.isLetter(c)) {
+                    letters++;
+                    upper |= Character.isUpperCase(c);
+                    lower |= Character.isLowerCase(c);
+                }
+            }
+        }
+        if (parts.isEmpty()) {
+            return null;
+        }
+
+        DimLocation location = new DimLocation();
+        location.setLocationString(locationString);
+        location.setCountry(parts.get(parts.size() - 1));
+        if (parts.size() > 1) {
+            location.setCity(parts.get(0));
+        }
+        if (parts.size() > 2) {
+            location.setRegion(parts.size() == 3 ? parts.get(1)
+                    : intern(truncate(String.join(", ", parts.subList(1, parts.size() - 1)))));
+        }
+        location.setLocationKey(intern(DimensionCacheService.locationKey(
+                location.getCountry(), location.getCity(), location.getRegion())));
+        return location;
+    }
+
+    private String normalize(String part, boolean upper, boolean lower, int letters) {
+        String alias = ALIASES.get(part.toLowerCase(Locale.ROOT));
+        if (alias != null) {
+            return alias;
+        }
+        // Mixed case is kept as written ("McAllen", "DeKalb")
+        boolean singleCase = upper != lower;
+        boolean abbreviation = upper && letters <= MAX_ABBREVIATION_LENGTH;
+        return intern(truncate(singleCase && !abbreviation ? titleCase(part) : part));
+    }
+
+    private static String titleCase(String part) {
+        StringBuilder titled = new StringBuilder(part.length());
+        boolean wordStart = true;
+        int wordBegin = 0;
+        for (int i = 0; i < part.length(); i++) {
+            char c = part.charAt(i);
+            if (wordStart) {
+                wordBegin = i;
+            }
+            titled.append(wordStart ? Character.toTitleCase(c) : Character.toLowerCase(c));
+            // An apostrophe starts a word after a one letter prefix ("O'Fallon") but not a suffix ("John's")
+            wordStart = c == ' ' || c == '-' || c == '.' || c == '(' || (c == '\'' && i == wordBegin + 1);
+        }
+        return titled.toString();
+    }
+
+    private static String truncate(String part) {
+        return part.length() > MAX_PART_LENGTH ? part.substring(0, MAX_PART_LENGTH).trim() : part;
+    }
+
+    private String intern(String value) {
+        String interned = strings.get(value);
+        if (interned != null) {
+            return interned;
+        }
+        if (strings.size() >= maxEntries) {
+            return value;
+        }
+        interned = strings.putIfAbsent(value, value);
+        return interned != null ? interned : value;
+    }
+}
@@ -1,43 +1,286 @@
 package gov.ihd.apiservice.service;
 
+import gov.ihd.apiservice.dto.CacheStatsDto;
 import gov.ihd.apiservice.entity.DimTime;
 import gov.ihd.apiservice.repository.DimTimeRepository;
-import lombok.RequiredArgsConstructor;
+import gov.ihd.apiservice.repository.DimensionBulkRepository;
+import gov.ihd.apiservice.util.BoundedCache;
+import gov.ihd.apiservice.util.CalendarIndex;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.format.TextStyle;
-import java.time.temporal.WeekFields;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Owner of the time dimension. Dates are resolved to their time_id through an in-memory
+ * {@link CalendarIndex} covering whole years, loaded from dim_time at startup. A date outside
+ * the index adds the missing years to dim_time in one upsert and extends the index, so
+ * resolving a date is an array access except for the first date of a new year. Dates more
+ * than app.calendar.max-years away from the indexed years are stored and looked up one by one.
+ *
+ * <p>The upsert runs on the connection of the calling transaction, so a chunk never needs a
+ * second connection. Until that transaction commits, the extended index is only visible to
+ * it; other transactions see it after the commit and a rollback discards it.
+ *
+ * <p>The attributes of a date follow ISO 8601 and match populate_dim_time: day_of_week 1
+ * (Monday) to 7 (Sunday), the ISO week of the week-based year, and English names without padding.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class TimeService {
 
     private final DimTimeRepository timeRepository;
+    private final DimensionBulkRepository dimensionBulkRepository;
+    private final int maxYears;
 
-    @Transactional
-    public DimTime createTimeForDate(LocalDate date) {
-        return timeRepository.findByFullDate(date)
-                .orElseGet(() -> {
-                    DimTime time = new DimTime();
-                    time.setFullDate(date);
-                    time.setYear(date.getYear());
-                    time.setQuarter((date.getMonthValue() - 1) / 3 + 1);
-                    time.setMonth(date.getMonthValue());
-                    time.setMonthName(date.getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH));
-                    time.setDay(date.getDayOfMonth());
-                    time.setDayOfWeek(date.getDayOfWeek().getValue());
-                    time.setDayName(date.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH));
-                    time.setWeekOfYear(date.get(WeekFields.of(Locale.getDefault()).weekOfYear()));
-                    time.setIsWeekend(date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY);
-                    time.setIsHoliday(false); // Would require a holiday calendar to set properly
-                    
-                    return timeRepository.save(time);
-                });
+    private volatile CalendarIndex calendar = CalendarIndex.EMPTY;
+    private final BoundedCache<LocalDate, Integer> outliers = new BoundedCache<>("time-outliers", 4096);
+    // Not a monitor: the upsert under it must not pin a virtual thread to its carrier
+    private final ReentrantLock extendLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public TimeService(DimTimeRepository timeRepository,
+                       DimensionBulkRepository dimensionBulkRepository,
+                       @Value("${app.calendar.max-years:200}") int maxYears) {
+        this.timeRepository = timeRepository;
+        this.dimensionBulkRepository = dimensionBulkRepository;
+        this.maxYears = maxYears;
+    }
+
+    /**
+     * Index the years already in dim_time. If the database is not reachable yet, the first
+     * lookup loads them instead.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadCalendar() {
+        try {
+            getTimeId(LocalDate.now());
+        } catch (RuntimeException e) {
+            log.warn("Could not load the calendar: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return The time_id of the date, creating the dim_time rows of its year if needed
+     */
+    public int getTimeId(LocalDate date) {
+        int timeId = calendar.timeId(date);
+        if (timeId != 0) {
+            hits.increment();
+            return timeId;
+        }
+        misses.increment();
+        Extension extension = pendingExtension();
+        timeId = extension != null ? extension.timeId(date) : 0;
+        return timeId != 0 ? timeId : extend(List.of(date)).timeId(date);
+    }
+
+    /**
+     * Add every date the calendar lacks with a single upsert, so that {@link #getTimeId}
+     * resolves all of them from memory for the rest of the transaction. A chunk calls this
+     * with all its dates before resolving them one by one.
+     */
+    public void extendTo(Collection<LocalDate> dates) {
+        CalendarIndex current = calendar;
+        List<LocalDate> missing = dates.stream().filter(date -> current.timeId(date) == 0).sorted().toList();
+        if (!missing.isEmpty()) {
+            extend(missing);
+        }
+    }
+
+    /**
+     * Drop the index; the next lookup loads it again from dim_time
+     */
+    public void resetCalendar() {
+        extendLock.lock();
+        try {
+            calendar = CalendarIndex.EMPTY;
+            outliers.clear();
+        } finally {
+            extendLock.unlock();
+        }
+    }
+
+    public CacheStatsDto getStats() {
+        CalendarIndex current = calendar;
+        CacheStatsDto stats = new CacheStatsDto();
+        stats.setName("time");
+        stats.setSize(current.size());
+        stats.setMaxSize(maxYears * 366);
+        stats.setHits(hits.sum());
+        stats.setMisses(misses.sum());
+        long lookups = stats.getHits() + stats.getMisses();
+        stats.setHitRatio(lookups == 0 ? 0.0 : (double) stats.getHits() / lookups);
+        return stats;
+    }
+
+    /**
+     * @param dates Sorted dates, some of them missing from the calendar
+     * @return The calendar of the current transaction, covering all of the dates
+     */
+    private Extension extend(List<LocalDate> dates) {
+        extendLock.lock();
+        try {
+            Extension pending = pendingExtension();
+            CalendarIndex current = pending != null ? pending.calendar : calendar;
+            Map<LocalDate, Integer> pendingOutliers = pending != null ? pending.outliers : new HashMap<>();
+
+            int first = current.isEmpty() ? Integer.MAX_VALUE : current.getFirstYear();
+            int last = current.isEmpty() ? Integer.MIN_VALUE : current.getLastYear();
+            if (current.isEmpty() && !dates.isEmpty()) {
+                // Cover the years already stored as well, up to the newest max-years of them
+                int year = dates.get(0).getYear();
+                LocalDate stored = timeRepository.findFirstByOrderByFullDateDesc().map(DimTime::getFullDate).orElse(null);
+                if (stored != null && Math.abs(stored.getYear() - year) < maxYears) {
+                    last = stored.getYear();
+                    first = timeRepository.findFirstByOrderByFullDateAsc()
+                            .map(time -> Math.max(time.getFullDate().getYear(), stored.getYear() - maxYears + 1))
+                            .orElse(last);
+                }
+            }
+
+            List<DimTime> rows = new ArrayList<>();
+            for (LocalDate date : dates) {
+                if (current.timeId(date) != 0 || pendingOutliers.containsKey(date)) {
+                    continue;
+                }
+                Integer outlier = outliers.get(date);
+                if (outlier != null) {
+                    pendingOutliers.put(date, outlier);
+                } else if (Math.max(last, date.getYear()) - Math.min(first, date.getYear()) >= maxYears) {
+                    log.warn("{} is more than {} years away from the calendar {}; resolving it on its own",
+                            date, maxYears, current);
+                    rows.add(buildTimeForDate(date));
+                } else {
+                    first = Math.min(first, date.getYear());
+                    last = Math.max(last, date.getYear());
+                }
+            }
+            List<LocalDate> outlierDates = rows.stream().map(DimTime::getFullDate).toList();
+            for (int year = first; year <= last; year++) {
+                if (current.isEmpty() || year < current.getFirstYear() || year > current.getLastYear()) {
+                    for (LocalDate day = LocalDate.of(year, 1, 1); day.getYear() == year; day = day.plusDays(1)) {
+                        rows.add(buildTimeForDate(day));
+                    }
+                }
+            }
+            if (rows.isEmpty()) {
+                return pending != null ? pending : new Extension(current, pendingOutliers);
+            }
+
+            rows.sort(Comparator.comparing(DimTime::getFullDate));
+            Map<LocalDate, Integer> timeIds = dimensionBulkRepository.upsertTimes(rows);
+            outlierDates.forEach(date -> pendingOutliers.put(date, timeIds.get(date)));
+            CalendarIndex extended = current;
+            if (current.isEmpty() ? first <= last : first < current.getFirstYear() || last > current.getLastYear()) {
+                extended = current.extend(first, last, timeIds);
+                log.info("Calendar extended from {} to {}", current, extended);
+            }
+            Extension extension = new Extension(extended, pendingOutliers);
+            publishAfterCommit(extension);
+            return extension;
+        } finally {
+            extendLock.unlock();
+        }
+    }
+
+    private Extension pendingExtension() {
+        return (Extension) TransactionSynchronizationManager.getResource(this);
+    }
+
+    /**
+     * Rows upserted inside a transaction must not be visible to others before it commits,
+     * otherwise a rolled back chunk would leave ids behind that do not exist
+     */
+    private void publishAfterCommit(Extension extension) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(extension);
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            // Registered with the first extension of this transaction already
+            TransactionSynchronizationManager.unbindResource(this);
+            TransactionSynchronizationManager.bindResource(this, extension);
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, extension);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(pendingExtension());
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(TimeService.this);
+            }
+        });
+    }
+
+    private void publish(Extension extension) {
+        extendLock.lock();
+        try {
+            extension.outliers.forEach(outliers::put);
+            CalendarIndex current = calendar;
+            // Another transaction may have published a wider calendar in the meantime
+            if (current.isEmpty() || (!extension.calendar.isEmpty()
+                    && extension.calendar.getFirstYear() <= current.getFirstYear()
+                    && extension.calendar.getLastYear() >= current.getLastYear())) {
+                calendar = extension.calendar;
+            }
+        } finally {
+            extendLock.unlock();
+        }
+    }
+
+    /**
+     * The calendar as extended by one transaction, and the outlier dates it resolved
+     */
+    private record Extension(CalendarIndex calendar, Map<LocalDate, Integer> outliers) {
+
+        int timeId(LocalDate date) {
+            int timeId = calendar.timeId(date);
+            return timeId != 0 ? timeId : outliers.getOrDefault(date, 0);
+        }
+    }
+
+    /**
+     * Compute the calendar attributes of a date without touching the database
+     *
+     * @param date The date to describe
+     * @return An unsaved DimTime row for the date
+     */
+    public static DimTime buildTimeForDate(LocalDate date) {
+        DimTime time = new DimTime();
+        time.setFullDate(date);
+        time.setYear(date.getYear());
+        time.setQuarter((date.getMonthValue() - 1) / 3 + 1);
+        time.setMonth(date.getMonthValue());
+        time.setMonthName(date.getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH));
+        time.setDay(date.getDayOfMonth());
+        time.setDayOfWeek(date.getDayOfWeek().getValue());
+        time.setDayName(date.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH));
+        time.setWeekOfYear(date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+        time.setIsWeekend(date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY);
+        time.setIsHoliday(false); // Would require a holiday calendar to set properly
+        return time;
     }
 }
@@ -0,0 +1,110 @@
+package gov.ihd.apiservice.util;
+
+import gov.ihd.apiservice.dto.CacheStatsDto;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe, size-bounded key/value cache with hit, miss and eviction counters.
+ * Entries are evicted in insertion order once the cache grows past its maximum size.
+ * A maximum size of zero or less disables caching entirely.
+ *
+ * @param <K> The natural key type
+ * @param <V> The cached value type
+ */
+public class BoundedCache<K, V> {
+
+    private final String name;
+    private final int maxSize;
+    private final Map<K, V> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<K> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCache(String name, int maxSize) {
+        this.name = name;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Look up a key, counting the lookup as a hit or a miss
+     *
+     * @param key The key to look up
+     * @return The cached value, or null if the key is not cached
+     */
+    public V get(K key) {
+        V value = key != null ? entries.get(key) : null;
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Cache a value, evicting the oldest entries if the cache is full
+     *
+     * @param key The key to cache
+     * @param value The value to cache
+     */
+    public void put(K key, V value) {
+        if (maxSize <= 0 || key == null || value == null) {
+            return;
+        }
+        if (entries.putIfAbsent(key, value) == null) {
+            insertionOrder.add(key);
+            evictIfNecessary();
+        }
+    }
+
+    /**
+     * @return true once the cache holds as many entries as it is allowed to
+     */
+    public boolean isFull() {
+        return entries.size() >= maxSize;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void clear() {
+        entries.clear();
+        insertionOrder.clear();
+    }
+
+    public CacheStatsDto stats() {
+        CacheStatsDto stats = new CacheStatsDto();
+        stats.setName(name);
+        stats.setSize(entries.size());
+        stats.setMaxSize(maxSize);
+        stats.setHits(hits.sum());
+        stats.setMisses(misses.sum());
+        stats.setEvictions(evictions.sum());
+        long lookups = stats.getHits() + stats.getMisses();
+        stats.setHitRatio(lookups == 0 ? 0.0 : (double) stats.getHits() / lookups);
+        return stats;
+    }
+
+    private void evictIfNecessary() {
+        while (entries.size() > maxSize) {
+            K eldest = insertionOrder.poll();
+            if (eldest == null) {
+                return;
+            }
+            if (entries.remove(eldest) != null) {
+                evictions.increment();
+            }
+        }
+    }
+}
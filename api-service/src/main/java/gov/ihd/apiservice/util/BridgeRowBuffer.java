@@ -0,0 +1,61 @@
+package gov.ihd.apiservice.util;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Column buffer for the rows of a bridge table: feedback id, dimension id and created_date
+ * as an epoch day, each in a primitive array. The rows of a chunk are appended without an
+ * entity per row, and each column is bound to the insert as a single array.
+ */
+public class BridgeRowBuffer {
+
+    private long[] feedbackIds;
+    private int[] dimensionIds;
+    private int[] epochDays;
+    private int rowCount = 0;
+
+    public BridgeRowBuffer(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        this.feedbackIds = new long[capacity];
+        this.dimensionIds = new int[capacity];
+        this.epochDays = new int[capacity];
+    }
+
+    public void add(long feedbackId, int dimensionId, LocalDate createdDate) {
+        if (rowCount == feedbackIds.length) {
+            int capacity = rowCount * 2;
+            feedbackIds = Arrays.copyOf(feedbackIds, capacity);
+            dimensionIds = Arrays.copyOf(dimensionIds, capacity);
+            epochDays = Arrays.copyOf(epochDays, capacity);
+        }
+        feedbackIds[rowCount] = feedbackId;
+        dimensionIds[rowCount] = dimensionId;
+        epochDays[rowCount] = (int) createdDate.toEpochDay();
+        rowCount++;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    public long[] getFeedbackIds() {
+        return Arrays.copyOf(feedbackIds, rowCount);
+    }
+
+    public int[] getDimensionIds() {
+        return Arrays.copyOf(dimensionIds, rowCount);
+    }
+
+    public int[] getEpochDays() {
+        return Arrays.copyOf(epochDays, rowCount);
+    }
+
+    public void clear() {
+        rowCount = 0;
+    }
+}
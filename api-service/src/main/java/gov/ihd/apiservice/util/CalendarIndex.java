@@ -0,0 +1,95 @@
+package gov.ihd.apiservice.util;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Immutable date to time_id index covering whole calendar years. Ids are kept in an array
+ * indexed by the number of days since January 1 of the first year, so a lookup is a
+ * subtraction and an array access. Extending the index returns a new one, so readers never
+ * need a lock.
+ */
+public final class CalendarIndex {
+
+    public static final CalendarIndex EMPTY = new CalendarIndex(0, -1, new int[0]);
+
+    private final int firstYear;
+    private final int lastYear;
+    private final long firstEpochDay;
+    private final int[] timeIds;
+
+    private CalendarIndex(int firstYear, int lastYear, int[] timeIds) {
+        this.firstYear = firstYear;
+        this.lastYear = lastYear;
+        this.firstEpochDay = timeIds.length == 0 ? 0 : LocalDate.of(firstYear, 1, 1).toEpochDay();
+        this.timeIds = timeIds;
+    }
+
+    /**
+     * @param timeIds time_id of every date from January 1 of firstYear to December 31 of lastYear
+     * @throws IllegalArgumentException If a date of those years has no id
+     */
+    public static CalendarIndex of(int firstYear, int lastYear, Map<LocalDate, Integer> timeIds) {
+        return EMPTY.extend(firstYear, lastYear, timeIds);
+    }
+
+    /**
+     * @param timeIds time_id of every date of the years added to the index
+     * @return An index covering firstYear to lastYear as well as the years of this one
+     * @throws IllegalArgumentException If a date of an added year has no id
+     */
+    public CalendarIndex extend(int firstYear, int lastYear, Map<LocalDate, Integer> timeIds) {
+        int newFirst = isEmpty() ? firstYear : Math.min(firstYear, this.firstYear);
+        int newLast = isEmpty() ? lastYear : Math.max(lastYear, this.lastYear);
+        long newFirstEpochDay = LocalDate.of(newFirst, 1, 1).toEpochDay();
+        int[] ids = new int[(int) (LocalDate.of(newLast + 1, 1, 1).toEpochDay() - newFirstEpochDay)];
+        if (!isEmpty()) {
+            System.arraycopy(this.timeIds, 0, ids, (int) (this.firstEpochDay - newFirstEpochDay), this.timeIds.length);
+        }
+
+        timeIds.forEach((date, timeId) -> {
+            long offset = date.toEpochDay() - newFirstEpochDay;
+            if (offset >= 0 && offset < ids.length) {
+                ids[(int) offset] = timeId;
+            }
+        });
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == 0) {
+                throw new IllegalArgumentException("No time_id for " + LocalDate.ofEpochDay(newFirstEpochDay + i));
+            }
+        }
+        return new CalendarIndex(newFirst, newLast, ids);
+    }
+
+    /**
+     * @return The time_id of the date, or 0 if the index does not cover it
+     */
+    public int timeId(LocalDate date) {
+        long offset = date.toEpochDay() - firstEpochDay;
+        return offset >= 0 && offset < timeIds.length ? timeIds[(int) offset] : 0;
+    }
+
+    public boolean isEmpty() {
+        return timeIds.length == 0;
+    }
+
+    public int getFirstYear() {
+        return firstYear;
+    }
+
+    public int getLastYear() {
+        return lastYear;
+    }
+
+    /**
+     * Number of dates covered
+     */
+    public int size() {
+        return timeIds.length;
+    }
+
+    @Override
+    public String toString() {
+        return isEmpty() ? "CalendarIndex[]" : "CalendarIndex[" + firstYear + ".." + lastYear + ", " + timeIds.length + " days]";
+    }
+}
@@ -0,0 +1,130 @@
+package gov.ihd.apiservice.util;
+
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Reusable row buffer in PostgreSQL COPY CSV format (comma separated, double quote
+ * escaped, unquoted empty field for NULL). Rows are appended field by field and the
+ * buffer is streamed to the server with a single COPY ... FROM STDIN.
+ */
+public class CsvCopyBuffer {
+
+    private final StringBuilder buffer;
+    private boolean rowStarted = false;
+    private int rowCount = 0;
+
+    public CsvCopyBuffer(int initialCapacity) {
+        this.buffer = new StringBuilder(initialCapacity);
+    }
+
+    public CsvCopyBuffer append(long value) {
+        separator();
+        buffer.append(value);
+        return this;
+    }
+
+    public CsvCopyBuffer append(Number value) {
+        separator();
+        if (value != null) {
+            buffer.append(value);
+        }
+        return this;
+    }
+
+    public CsvCopyBuffer append(LocalDate value) {
+        separator();
+        if (value != null) {
+            buffer.append(value);
+        }
+        return this;
+    }
+
+    public CsvCopyBuffer append(String value) {
+        separator();
+        if (value == null) {
+            return this;
+        }
+        // Empty strings must be quoted, otherwise they are read as NULL
+        if (value.isEmpty() || needsQuoting(value)) {
+            buffer.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    buffer.append('"');
+                }
+                buffer.append(c);
+            }
+            buffer.append('"');
+        } else {
+            buffer.append(value);
+        }
+        return this;
+    }
+
+    public void endRow() {
+        buffer.append('\n');
+        rowStarted = false;
+        rowCount++;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    public void clear() {
+        buffer.setLength(0);
+        rowStarted = false;
+        rowCount = 0;
+    }
+
+    /**
+     * Stream the buffered rows to the server
+     *
+     * @param copyManager The COPY API of the connection bound to the current transaction
+     * @param copySql A COPY ... FROM STDIN statement using CSV format
+     * @return The number of rows the server accepted
+     */
+    public long copyTo(CopyManager copyManager, String copySql) throws SQLException {
+        if (isEmpty()) {
+            return 0;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        CopyIn copyIn = copyManager.copyIn(copySql);
+        try {
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            return copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private void separator() {
+        if (rowStarted) {
+            buffer.append(',');
+        } else {
+            rowStarted = true;
+        }
+    }
+
+    private static boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            // Backslashes are quoted so that a lone \. is never read as the end-of-data marker
+            if (c == ',' || c == '"' || c == '\n' || c == '\r' || c == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
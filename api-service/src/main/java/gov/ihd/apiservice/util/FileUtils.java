@@ -1,18 +1,49 @@
 package gov.ihd.apiservice.util;
 
+import com.github.luben.zstd.ZstdInputStream;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPInputStream;
 
 @Slf4j
 public class FileUtils {
 
+    private static final int STREAM_BUFFER_SIZE = 1024 * 1024;
+    private static final int DECOMPRESS_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Extensions of newline delimited JSON files, read one record per line
+     */
+    public static final List<String> NDJSON_EXTENSIONS = List.of(".ndjson", ".jsonl");
+
+    /**
+     * Extensions accepted for upload; .json files hold a single top-level array
+     */
+    public static final List<String> SUPPORTED_EXTENSIONS = List.of(".json", ".ndjson", ".jsonl");
+
+    /**
+     * Compression suffixes allowed after a supported extension, e.g. .ndjson.zst
+     */
+    public static final List<String> COMPRESSION_EXTENSIONS = List.of(".gz", ".zst");
+
     /**
      * Saves a multipart file to the given directory
      *
@@ -46,13 +77,157 @@ public class FileUtils {
     }
     
     /**
-     * Validates if the file is a JSON file
+     * Writes a request body to a file through a direct buffer, computing its CRC32C on the way.
+     * The target must not exist yet.
+     *
+     * @param body The raw request body
+     * @param target The file to create
+     * @return The written file with its size and checksum
+     * @throws IOException If an error occurs while writing
+     */
+    public static StreamedFile writeStream(InputStream body, Path target) throws IOException {
+        CRC32C checksum = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+        long size = 0;
+        try (ReadableByteChannel in = Channels.newChannel(body);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                checksum.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    size += out.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+        return new StreamedFile(target, size, String.format("%08x", checksum.getValue()));
+    }
+    
+    /**
+     * Gives a finished file its final name, never replacing a file that holds the name already.
+     * A hard link fails atomically when the name exists, unlike a rename, which would silently
+     * replace a file created after any existence check. On file systems without hard links the
+     * file is moved instead, with the check and the move as two steps.
+     *
+     * @param source The finished file, removed once it has the new name
+     * @param target The final name
+     * @throws FileAlreadyExistsException If target exists; source is left in place
+     * @throws IOException If an error occurs while renaming
+     */
+    public static void publish(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.move(source, target);
+            return;
+        }
+        Files.delete(source);
+    }
+    
+    /**
+     * Checks that a client supplied file name is a plain name without directories
+     *
+     * @param filename The file name
+     * @return true if the name can be used inside the upload directory
+     */
+    public static boolean isPlainFilename(String filename) {
+        if (filename == null || filename.isBlank() || filename.startsWith(".")) {
+            return false;
+        }
+        Path name = Paths.get(filename).getFileName();
+        return name != null && name.toString().equals(filename) && !filename.contains("\\");
+    }
+    
+    /**
+     * A file written by {@link #writeStream}, with its CRC32C as 8 hex digits
+     */
+    public record StreamedFile(Path path, long size, String checksum) {
+    }
+    
+    /**
+     * Validates if the file is a JSON, NDJSON or JSON Lines file
      *
      * @param file The file to validate
      * @return true if valid, false otherwise
      */
     public static boolean isValidJsonFile(MultipartFile file) {
-        String filename = file.getOriginalFilename();
-        return filename != null && filename.toLowerCase().endsWith(".json");
+        return isValidJsonFile(file.getOriginalFilename());
+    }
+    
+    /**
+     * Validates if the file name has a supported extension
+     *
+     * @param filename The file name
+     * @return true if valid, false otherwise
+     */
+    public static boolean isValidJsonFile(String filename) {
+        return hasExtension(stripCompression(filename), SUPPORTED_EXTENSIONS);
+    }
+    
+    /**
+     * Checks if the file holds newline delimited JSON records
+     *
+     * @param filename The file name or path
+     * @return true for .ndjson and .jsonl files, compressed or not
+     */
+    public static boolean isNdjsonFile(String filename) {
+        return hasExtension(stripCompression(filename), NDJSON_EXTENSIONS);
+    }
+    
+    /**
+     * Checks if the file is stored gzip or Zstandard compressed
+     *
+     * @param filename The file name or path
+     * @return true for .gz and .zst files
+     */
+    public static boolean isCompressed(String filename) {
+        return hasExtension(filename, COMPRESSION_EXTENSIONS);
+    }
+    
+    /**
+     * Opens a file for reading, decompressing it on the fly if it has a compression suffix
+     *
+     * @param path The file to read
+     * @return A stream of the uncompressed bytes
+     * @throws IOException If the file cannot be opened
+     */
+    public static InputStream openDecompressed(Path path) throws IOException {
+        String name = path.getFileName().toString().toLowerCase();
+        InputStream in = Files.newInputStream(path);
+        try {
+            if (name.endsWith(".gz")) {
+                return new GZIPInputStream(in, DECOMPRESS_BUFFER_SIZE);
+            }
+            if (name.endsWith(".zst")) {
+                return new ZstdInputStream(new BufferedInputStream(in, DECOMPRESS_BUFFER_SIZE));
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+    
+    private static String stripCompression(String filename) {
+        if (filename == null) {
+            return null;
+        }
+        String lowerCase = filename.toLowerCase();
+        for (String extension : COMPRESSION_EXTENSIONS) {
+            if (lowerCase.endsWith(extension)) {
+                return filename.substring(0, filename.length() - extension.length());
+            }
+        }
+        return filename;
+    }
+    
+    private static boolean hasExtension(String filename, List<String> extensions) {
+        if (filename == null) {
+            return false;
+        }
+        String lowerCase = filename.toLowerCase();
+        return extensions.stream().anyMatch(lowerCase::endsWith);
     }
 }
@@ -0,0 +1,100 @@
+package gov.ihd.apiservice.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Byte offsets of the objects in a file holding one top-level JSON array. The file is
+ * memory-mapped and scanned with a {@link JsonObjectScanner}; files larger than the
+ * mapping window (1 GB) are mapped one window at a time.
+ */
+@Slf4j
+public class JsonArrayIndex {
+
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    private final long[] objectStarts;
+    private final int objectCount;
+    private final long arrayEnd;
+
+    private JsonArrayIndex(long[] objectStarts, int objectCount, long arrayEnd) {
+        this.objectStarts = objectStarts;
+        this.objectCount = objectCount;
+        this.arrayEnd = arrayEnd;
+    }
+
+    /**
+     * Scan a file and record the offset of every top-level object in its root array
+     *
+     * @param path The JSON array file
+     * @return The index
+     * @throws IOException If the file cannot be read or is not a JSON array
+     */
+    public static JsonArrayIndex build(Path path) throws IOException {
+        return build(path, WINDOW_SIZE);
+    }
+
+    static JsonArrayIndex build(Path path, int windowSize) throws IOException {
+        long startTime = System.nanoTime();
+        long[] starts = new long[1024];
+        int count = 0;
+        long lastObjectEnd = 0;
+        JsonObjectScanner scanner = new JsonObjectScanner();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long base = 0; base < size; base += windowSize) {
+                int length = (int) Math.min(windowSize, size - base);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+                int i = 0;
+                while ((i = scanner.next(window, i, length)) >= 0) {
+                    byte b = window.get(i);
+                    int depth = scanner.getDepth();
+                    if (depth == 1 && b == '{') {
+                        throw new IOException("Expected a top-level JSON array in " + path.getFileName());
+                    }
+                    if (depth == 2 && b == '{') {
+                        if (count == starts.length) {
+                            starts = Arrays.copyOf(starts, count * 2);
+                        }
+                        starts[count++] = base + i;
+                    } else if (depth == 1 && b == '}') {
+                        lastObjectEnd = base + i + 1;
+                    }
+                    i++;
+                }
+            }
+
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            log.info("Indexed {} objects in {} ({} MB) in {} ms, {} MB/s",
+                    count, path.getFileName(), size >> 20, Math.round(seconds * 1000),
+                    seconds > 0 ? Math.round((size >> 20) / seconds) : 0);
+        }
+        return new JsonArrayIndex(starts, count, lastObjectEnd);
+    }
+
+    public int getObjectCount() {
+        return objectCount;
+    }
+
+    /**
+     * @param index Position of the object in the array
+     * @return The offset of its opening brace
+     */
+    public long getObjectStart(int index) {
+        return objectStarts[index];
+    }
+
+    /**
+     * @return The offset just after the closing brace of the last object
+     */
+    public long getArrayEnd() {
+        return arrayEnd;
+    }
+}
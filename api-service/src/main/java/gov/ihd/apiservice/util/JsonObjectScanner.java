@@ -0,0 +1,62 @@
+package gov.ihd.apiservice.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Minimal structural scanner for UTF-8 JSON. It only tracks bracket depth and whether the
+ * current byte is inside a string (including backslash escapes), which is enough to find
+ * where objects start and end without parsing them. The state carries over between calls,
+ * so a document can be scanned in consecutive slices.
+ */
+public class JsonObjectScanner {
+
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escaped = false;
+
+    /**
+     * Find the next '{', '}', '[' or ']' outside a string
+     *
+     * @param buffer The bytes to scan, read with absolute gets
+     * @param from First index to scan
+     * @param to Index after the last byte to scan
+     * @return The index of the bracket, with {@link #getDepth()} already updated for it,
+     *         or -1 if there is none before {@code to}
+     */
+    public int next(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == '{' || b == '[') {
+                depth++;
+                return i;
+            } else if (b == '}' || b == ']') {
+                depth--;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The number of open objects and arrays
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public void reset() {
+        depth = 0;
+        inString = false;
+        escaped = false;
+    }
+}
@@ -0,0 +1,194 @@
+package gov.ihd.apiservice.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+/**
+ * Rewrites a feedback file as NDJSON with its records ordered by the day of their top-level
+ * created_at, keeping the file order within a day. Records are found without parsing them
+ * (the lines of an NDJSON file, the {@link JsonArrayIndex} of a JSON array file), and only the
+ * fields before created_at are tokenized. The sort runs on one long per record packing the
+ * day and the record number. Records without a readable date go last.
+ */
+public final class RecordDateSorter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int UNDATED = Integer.MAX_VALUE;
+    private static final int SCAN_BUFFER_SIZE = 1 << 20;
+
+    private RecordDateSorter() {
+    }
+
+    /**
+     * Write the records of an uncompressed .json, .ndjson or .jsonl file to target, one per line
+     *
+     * @return The number of records written
+     */
+    public static int sort(Path source, Path target) throws IOException {
+        Spans spans = FileUtils.isNdjsonFile(source.toString()) ? lineSpans(source) : arraySpans(source);
+        int count = spans.count;
+
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            byte[] record = new byte[4096];
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                record = read(channel, spans.starts[i], spans.lengths[i], record);
+                keys[i] = ((long) day(record, recordLength(record, spans.lengths[i])) << 32) | i;
+            }
+            Arrays.sort(keys);
+
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target), SCAN_BUFFER_SIZE)) {
+                for (long key : keys) {
+                    int i = (int) key;
+                    record = read(channel, spans.starts[i], spans.lengths[i], record);
+                    int length = recordLength(record, spans.lengths[i]);
+                    // Line breaks outside strings are whitespace, and JSON strings cannot hold raw ones
+                    for (int b = 0; b < length; b++) {
+                        if (record[b] == '\n' || record[b] == '\r') {
+                            record[b] = ' ';
+                        }
+                    }
+                    out.write(record, 0, length);
+                    out.write('\n');
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Epoch day of the top-level created_at of a record, or {@link #UNDATED}
+     */
+    static int day(byte[] record, int length) {
+        try (JsonParser parser = JSON_FACTORY.createParser(record, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return UNDATED;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("created_at".equals(name)) {
+                    String text = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    return text != null && text.length() >= 10
+                            ? (int) LocalDate.parse(text.substring(0, 10)).toEpochDay() : UNDATED;
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException | DateTimeParseException e) {
+            // The reader reports the record when the step gets to it
+        }
+        return UNDATED;
+    }
+
+    /**
+     * Length of a record without the whitespace and comma that separate array elements
+     */
+    private static int recordLength(byte[] record, int length) {
+        while (length > 0) {
+            byte b = record[length - 1];
+            if (b != ',' && b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                break;
+            }
+            length--;
+        }
+        return length;
+    }
+
+    private static byte[] read(FileChannel channel, long start, int length, byte[] buffer) throws IOException {
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        ByteBuffer target = ByteBuffer.wrap(buffer, 0, length);
+        long position = start;
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at offset " + position);
+            }
+            position += read;
+        }
+        return buffer;
+    }
+
+    /**
+     * Non-blank lines, without surrounding whitespace
+     */
+    private static Spans lineSpans(Path source) throws IOException {
+        Spans spans = new Spans();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            long offset = 0;
+            long first = -1;
+            long last = -1;
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                int limit = buffer.limit();
+                for (int i = 0; i < limit; i++, offset++) {
+                    byte b = buffer.get(i);
+                    if (b == '\n') {
+                        if (first >= 0) {
+                            spans.add(first, last + 1);
+                        }
+                        first = -1;
+                    } else if (b != ' ' && b != '\t' && b != '\r') {
+                        if (first < 0) {
+                            first = offset;
+                        }
+                        last = offset;
+                    }
+                }
+                buffer.clear();
+            }
+            if (first >= 0) {
+                spans.add(first, last + 1);
+            }
+        }
+        return spans;
+    }
+
+    /**
+     * From each object of the root array to the next one, or to the end of the array
+     */
+    private static Spans arraySpans(Path source) throws IOException {
+        JsonArrayIndex index = JsonArrayIndex.build(source);
+        Spans spans = new Spans();
+        int count = index.getObjectCount();
+        for (int i = 0; i < count; i++) {
+            spans.add(index.getObjectStart(i), i + 1 < count ? index.getObjectStart(i + 1) : index.getArrayEnd());
+        }
+        return spans;
+    }
+
+    private static final class Spans {
+        private long[] starts = new long[1024];
+        private int[] lengths = new int[1024];
+        private int count;
+
+        void add(long start, long end) throws IOException {
+            if (end - start > Integer.MAX_VALUE - 8) {
+                throw new IOException("Record at offset " + start + " is too large to sort");
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+            }
+            starts[count] = start;
+            lengths[count] = (int) (end - start);
+            count++;
+        }
+    }
+}
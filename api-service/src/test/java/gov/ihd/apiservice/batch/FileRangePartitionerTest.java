@@ -0,0 +1,95 @@
+package gov.ihd.apiservice.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Each partition is read the way a worker step reads it; together they must return every
+ * record exactly once and in file order.
+ */
+class FileRangePartitionerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void partitionsCoverEveryRecordOnce() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int id = 1; id <= 100; id++) {
+            content.append("{\"id\":").append(id).append(",\"text\":\"").append("x".repeat(id % 13 * 5)).append("\"}\n");
+            if (id % 10 == 0) {
+                content.append("\n  \n");
+            }
+        }
+        Path file = write("feedback.ndjson", content.toString());
+        List<Integer> expected = IntStream.rangeClosed(1, 100).boxed().toList();
+
+        for (int gridSize = 1; gridSize <= 12; gridSize++) {
+            Map<String, ExecutionContext> partitions = new FileRangePartitioner(file).partition(gridSize);
+
+            assertThat(partitions).hasSize(gridSize);
+            assertThat(readPartitions(file, partitions)).as("gridSize %d", gridSize).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void cutsInsideOneLongRecordCollapse() throws Exception {
+        String longRecord = "{\"id\":2,\"text\":\"" + "x".repeat(10_000) + "\"}\n";
+        Path file = write("feedback.jsonl", "{\"id\":1}\n" + longRecord + "{\"id\":3}");
+
+        Map<String, ExecutionContext> partitions = new FileRangePartitioner(file).partition(8);
+
+        assertThat(partitions.size()).isLessThan(8);
+        assertThat(readPartitions(file, partitions)).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void moreCutsThanLinesLeaveNoEmptyPartitions() throws Exception {
+        Path file = write("feedback.ndjson", "{\"id\":1}\n{\"id\":2}\n");
+
+        Map<String, ExecutionContext> partitions = new FileRangePartitioner(file).partition(16);
+
+        assertThat(partitions).hasSizeLessThanOrEqualTo(2);
+        assertThat(readPartitions(file, partitions)).containsExactly(1, 2);
+    }
+
+    @Test
+    void compressedFilesAreReadByOnePartition() {
+        Map<String, ExecutionContext> partitions =
+                new FileRangePartitioner(dir.resolve("feedback.ndjson.gz")).partition(4);
+
+        assertThat(partitions).hasSize(1);
+        ExecutionContext only = partitions.values().iterator().next();
+        assertThat(only.getLong(FileRangePartitioner.START_OFFSET_KEY)).isZero();
+        assertThat(only.getLong(FileRangePartitioner.END_OFFSET_KEY)).isEqualTo(Long.MAX_VALUE);
+    }
+
+    private Path write(String name, String content) throws Exception {
+        return Files.writeString(dir.resolve(name), content, StandardCharsets.UTF_8);
+    }
+
+    private static List<Integer> readPartitions(Path file, Map<String, ExecutionContext> partitions) throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (ExecutionContext partition : partitions.values()) {
+            NdjsonItemReader<JsonNode> reader =
+                    new NdjsonItemReader<>(file, new ObjectMapper().readerFor(JsonNode.class), 32);
+            reader.setStartOffset(partition.getLong(FileRangePartitioner.START_OFFSET_KEY));
+            reader.setEndOffset(partition.getLong(FileRangePartitioner.END_OFFSET_KEY));
+            ids.addAll(NdjsonItemReaderTest.readIds(reader, new ExecutionContext()));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,98 @@
+package gov.ihd.apiservice.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ParseException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonArrayItemReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsObjectsAcrossWhitespaceAndATrailingComma() throws Exception {
+        Path file = write("""
+                  [
+                    {"id": 1, "text": "a } inside a string"},
+
+                    {"id": 2, "nested": {"tags": ["x", {"y": "]"}]}} ,{"id": 3},
+                  ]
+                """);
+
+        assertThat(NdjsonItemReaderTest.readIds(reader(file, 8), new ExecutionContext())).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void stopsAtTheClosingBracket() throws Exception {
+        Path file = write("[{\"id\": 1}]\n{\"id\": 2}");
+
+        assertThat(NdjsonItemReaderTest.readIds(reader(file, 64), new ExecutionContext())).containsExactly(1);
+    }
+
+    @Test
+    void partitionsCoverEveryObjectOnce() throws Exception {
+        StringBuilder content = new StringBuilder("[\n");
+        for (int id = 1; id <= 60; id++) {
+            content.append("  {\"id\": ").append(id).append(", \"text\": \"").append("}".repeat(id % 7)).append("\"},\n");
+        }
+        Path file = write(content.append("]\n").toString());
+        List<Integer> expected = IntStream.rangeClosed(1, 60).boxed().toList();
+
+        for (int gridSize = 1; gridSize <= 8; gridSize++) {
+            Map<String, ExecutionContext> partitions = new FileRangePartitioner(file).partition(gridSize);
+
+            List<Integer> ids = new ArrayList<>();
+            for (ExecutionContext partition : partitions.values()) {
+                JsonArrayItemReader<JsonNode> reader = reader(file, 16);
+                reader.setStartOffset(partition.getLong(FileRangePartitioner.START_OFFSET_KEY));
+                reader.setEndOffset(partition.getLong(FileRangePartitioner.END_OFFSET_KEY));
+                ids.addAll(NdjsonItemReaderTest.readIds(reader, new ExecutionContext()));
+            }
+
+            assertThat(partitions).hasSize(gridSize);
+            assertThat(ids).as("gridSize %d", gridSize).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void rejectsValuesThatAreNotObjects() throws Exception {
+        JsonArrayItemReader<JsonNode> reader = reader(write("[{\"id\": 1}, 2]"), 64);
+        reader.open(new ExecutionContext());
+        reader.read();
+
+        assertThatThrownBy(reader::read).isInstanceOf(ParseException.class).hasMessageContaining("Expected a JSON object");
+        reader.close();
+    }
+
+    @Test
+    void rejectsATruncatedObject() throws Exception {
+        JsonArrayItemReader<JsonNode> reader = reader(write("[{\"id\": 1}, {\"id\": 2"), 4);
+        reader.open(new ExecutionContext());
+        reader.read();
+
+        assertThatThrownBy(reader::read).isInstanceOf(ParseException.class).hasMessageContaining("Truncated");
+        reader.close();
+    }
+
+    private Path write(String content) throws Exception {
+        return Files.writeString(dir.resolve("feedback.json"), content, StandardCharsets.UTF_8);
+    }
+
+    private static JsonArrayItemReader<JsonNode> reader(Path file, int bufferSize) {
+        return new JsonArrayItemReader<>(file, new ObjectMapper().readerFor(JsonNode.class), bufferSize);
+    }
+}
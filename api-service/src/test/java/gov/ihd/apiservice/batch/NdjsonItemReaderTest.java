@@ -0,0 +1,113 @@
+package gov.ihd.apiservice.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ParseException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NdjsonItemReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void skipsBlankLinesAndToleratesCrlfAndAMissingFinalNewline() throws Exception {
+        Path file = write("""
+                {"id":1}\r
+                \r
+
+                   \t
+                {"id":2}
+                  {"id":3}  \r
+                {"id":4}""");
+
+        assertThat(readIds(reader(file, 64), new ExecutionContext())).containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    void readsRecordsLargerThanTheBuffer() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int id = 1; id <= 50; id++) {
+            content.append("{\"id\":").append(id).append(",\"text\":\"").append("x".repeat(id * 7)).append("\"}\n");
+        }
+        Path file = write(content.toString());
+
+        List<Integer> ids = readIds(reader(file, 8), new ExecutionContext());
+
+        assertThat(ids).hasSize(50).startsWith(1, 2).endsWith(49, 50);
+    }
+
+    @Test
+    void restartsAfterTheLastRecordRead() throws Exception {
+        Path file = write("{\"id\":1}\n\n{\"id\":2}\n{\"id\":3}\n{\"id\":4}\n");
+        ExecutionContext context = new ExecutionContext();
+
+        NdjsonItemReader<JsonNode> first = reader(file, 16);
+        first.open(context);
+        assertThat(first.read().get("id").asInt()).isEqualTo(1);
+        assertThat(first.read().get("id").asInt()).isEqualTo(2);
+        first.update(context);
+        first.close();
+
+        assertThat(readIds(reader(file, 16), context)).containsExactly(3, 4);
+    }
+
+    @Test
+    void readsOnlyTheRecordsStartingInsideItsRange() throws Exception {
+        String line = "{\"id\":1}\n";
+        Path file = write(line + "{\"id\":2}\n" + "{\"id\":3}\n");
+
+        NdjsonItemReader<JsonNode> head = reader(file, 4);
+        head.setEndOffset(line.length());
+        NdjsonItemReader<JsonNode> tail = reader(file, 4);
+        tail.setStartOffset(line.length());
+
+        assertThat(readIds(head, new ExecutionContext())).containsExactly(1);
+        assertThat(readIds(tail, new ExecutionContext())).containsExactly(2, 3);
+    }
+
+    @Test
+    void reportsTheOffsetOfAnInvalidRecord() throws Exception {
+        Path file = write("{\"id\":1}\n{\"id\":\n");
+        NdjsonItemReader<JsonNode> reader = reader(file, 64);
+        reader.open(new ExecutionContext());
+        reader.read();
+
+        assertThatThrownBy(reader::read)
+                .isInstanceOf(ParseException.class)
+                .hasMessageContaining("byte offset 9");
+        reader.close();
+    }
+
+    private Path write(String content) throws Exception {
+        return Files.writeString(dir.resolve("feedback.ndjson"), content, StandardCharsets.UTF_8);
+    }
+
+    private static NdjsonItemReader<JsonNode> reader(Path file, int bufferSize) {
+        return new NdjsonItemReader<>(file, new ObjectMapper().readerFor(JsonNode.class), bufferSize);
+    }
+
+    static List<Integer> readIds(ByteRangeItemReader<JsonNode> reader, ExecutionContext context) throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        reader.open(context);
+        try {
+            for (JsonNode record = reader.read(); record != null; record = reader.read()) {
+                ids.add(record.get("id").asInt());
+            }
+        } finally {
+            reader.close();
+        }
+        return ids;
+    }
+}
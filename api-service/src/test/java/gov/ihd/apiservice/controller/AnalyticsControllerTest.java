@@ -0,0 +1,72 @@
+package gov.ihd.apiservice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.ihd.apiservice.dto.DailyFeedbackDto;
+import gov.ihd.apiservice.repository.AnalyticsRepository;
+import gov.ihd.apiservice.service.AnalyticsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AnalyticsControllerTest {
+
+    private final AnalyticsRepository repository = mock(AnalyticsRepository.class);
+    private final AnalyticsService analyticsService =
+            new AnalyticsService(repository, new ObjectMapper().findAndRegisterModules(), 60, 100);
+    private final MockMvc mockMvc;
+
+    AnalyticsControllerTest() {
+        AnalyticsController controller = new AnalyticsController(analyticsService);
+        ReflectionTestUtils.setField(controller, "maxLimit", 500);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        when(repository.findDailyFeedback(any(), any(), any())).thenReturn(List.of(day(10)));
+    }
+
+    @Test
+    void aMatchingEtagGetsNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/api/v1/analytics/daily"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertThat(etag).isNotBlank();
+        mockMvc.perform(get("/api/v1/analytics/daily").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void changedTotalsGetANewEtagAfterInvalidation() throws Exception {
+        String etag = mockMvc.perform(get("/api/v1/analytics/daily"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        when(repository.findDailyFeedback(any(), any(), any())).thenReturn(List.of(day(11)));
+        analyticsService.invalidate();
+
+        mockMvc.perform(get("/api/v1/analytics/daily").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+    }
+
+    private static DailyFeedbackDto day(long feedbackCount) {
+        DailyFeedbackDto day = new DailyFeedbackDto();
+        day.setDate(LocalDate.of(2025, 1, 1));
+        day.setFeedbackCount(feedbackCount);
+        return day;
+    }
+}
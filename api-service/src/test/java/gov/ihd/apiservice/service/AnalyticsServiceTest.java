@@ -0,0 +1,145 @@
+package gov.ihd.apiservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.ihd.apiservice.dto.DailyFeedbackDto;
+import gov.ihd.apiservice.dto.HashtagUsageDto;
+import gov.ihd.apiservice.repository.AnalyticsRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AnalyticsServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2025, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2025, 1, 31);
+
+    private final AnalyticsRepository repository = mock(AnalyticsRepository.class);
+    // Total of the daily report; a job that refreshes the summaries changes it
+    private final AtomicLong feedbackCount = new AtomicLong(10);
+
+    AnalyticsServiceTest() {
+        when(repository.findDailyFeedback(any(), any(), any())).thenAnswer(call -> List.of(day(feedbackCount.get())));
+        when(repository.findTopHashtags(any(), any(), any(), anyInt())).thenAnswer(call -> List.of(new HashtagUsageDto()));
+    }
+
+    @Test
+    void repeatedReportsComeFromTheCache() {
+        AnalyticsService service = service(60, 100);
+
+        AnalyticsService.CachedReport<List<DailyFeedbackDto>> first = service.getDailyFeedback(FROM, TO, "en");
+        AnalyticsService.CachedReport<List<DailyFeedbackDto>> second = service.getDailyFeedback(FROM, TO, "en");
+
+        assertThat(second).isSameAs(first);
+        verify(repository, times(1)).findDailyFeedback(FROM, TO, "en");
+        assertThat(service.getStats().getHits()).isEqualTo(1);
+        assertThat(service.getStats().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void eachRangeLanguageAndLimitIsCachedSeparately() {
+        AnalyticsService service = service(60, 100);
+
+        service.getDailyFeedback(FROM, TO, "en");
+        service.getDailyFeedback(FROM, TO, "ar");
+        service.getDailyFeedback(FROM, TO.plusDays(1), "en");
+        service.getTopHashtags(FROM, TO, null, 10);
+        service.getTopHashtags(FROM, TO, null, 20);
+
+        assertThat(service.getStats().getSize()).isEqualTo(5);
+        assertThat(service.getStats().getHits()).isZero();
+    }
+
+    @Test
+    void theEtagFollowsTheContent() {
+        AnalyticsService service = service(60, 100);
+
+        String etag = service.getDailyFeedback(FROM, TO, null).etag();
+        service.invalidate();
+        String sameContent = service.getDailyFeedback(FROM, TO, null).etag();
+        feedbackCount.set(11);
+        service.invalidate();
+        String changedContent = service.getDailyFeedback(FROM, TO, null).etag();
+
+        assertThat(etag).matches("\"[0-9a-f]{32}\"");
+        assertThat(sameContent).isEqualTo(etag);
+        assertThat(changedContent).isNotEqualTo(etag);
+    }
+
+    @Test
+    void invalidateDropsEveryReport() {
+        AnalyticsService service = service(60, 100);
+        service.getDailyFeedback(FROM, TO, null);
+        service.getTopHashtags(FROM, TO, null, 10);
+
+        feedbackCount.set(25);
+        service.invalidate();
+
+        assertThat(service.getStats().getSize()).isZero();
+        assertThat(service.getDailyFeedback(FROM, TO, null).data().get(0).getFeedbackCount()).isEqualTo(25);
+        verify(repository, times(2)).findDailyFeedback(FROM, TO, null);
+    }
+
+    @Test
+    void aReportLoadedDuringInvalidationIsNotKept() {
+        AnalyticsService service = service(60, 100);
+        when(repository.findDailyFeedback(any(), any(), any())).thenAnswer(call -> {
+            List<DailyFeedbackDto> stale = List.of(day(feedbackCount.get()));
+            // A job refreshes the summaries while the report is being read
+            feedbackCount.set(99);
+            service.invalidate();
+            return stale;
+        });
+
+        assertThat(service.getDailyFeedback(FROM, TO, null).data().get(0).getFeedbackCount()).isEqualTo(10);
+
+        assertThat(service.getStats().getSize()).isZero();
+        assertThat(service.getDailyFeedback(FROM, TO, null).data().get(0).getFeedbackCount()).isEqualTo(99);
+    }
+
+    @Test
+    void expiredReportsAreReloaded() {
+        AnalyticsService service = service(0, 100);
+
+        service.getDailyFeedback(FROM, TO, null);
+        service.getDailyFeedback(FROM, TO, null);
+
+        verify(repository, times(2)).findDailyFeedback(FROM, TO, null);
+        assertThat(service.getStats().getSize()).isZero();
+    }
+
+    @Test
+    void aFullCacheServesNewReportsWithoutKeepingThem() {
+        AnalyticsService service = service(60, 2);
+
+        service.getDailyFeedback(FROM, TO, "en");
+        service.getDailyFeedback(FROM, TO, "ar");
+        service.getDailyFeedback(FROM, TO, "fr");
+        service.getDailyFeedback(FROM, TO, "fr");
+        service.getDailyFeedback(FROM, TO, "en");
+
+        assertThat(service.getStats().getSize()).isEqualTo(2);
+        verify(repository, times(2)).findDailyFeedback(FROM, TO, "fr");
+        verify(repository, times(1)).findDailyFeedback(FROM, TO, "en");
+    }
+
+    private AnalyticsService service(long ttlSeconds, int maxEntries) {
+        return new AnalyticsService(repository, new ObjectMapper().findAndRegisterModules(), ttlSeconds, maxEntries);
+    }
+
+    private static DailyFeedbackDto day(long feedbackCount) {
+        DailyFeedbackDto day = new DailyFeedbackDto();
+        day.setDate(FROM);
+        day.setFeedbackCount(feedbackCount);
+        return day;
+    }
+}
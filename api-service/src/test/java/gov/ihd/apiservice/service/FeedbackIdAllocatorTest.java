@@ -0,0 +1,123 @@
+package gov.ihd.apiservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stress test of the block handoff: two allocators, standing in for two jobs or two
+ * application instances, draw from one sequence on many threads across thousands of block
+ * rollovers.
+ */
+class FeedbackIdAllocatorTest {
+
+    private static final long BLOCK_SIZE = 64;
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 20_000;
+
+    private final SequenceStub sequence = new SequenceStub();
+    private final FeedbackIdAllocator first = new FeedbackIdAllocator(sequence, 0.5);
+    private final FeedbackIdAllocator second = new FeedbackIdAllocator(sequence, 0.5);
+
+    @AfterEach
+    void shutdown() {
+        first.shutdown();
+        second.shutdown();
+    }
+
+    @Test
+    void idsAreUniqueAcrossThreadsAndAllocators() throws Exception {
+        List<Long> ids = allocateConcurrently();
+
+        Set<Long> unique = new HashSet<>(ids);
+        assertThat(unique).hasSize(THREADS * IDS_PER_THREAD);
+        assertThat(sequence.blocksReserved()).isGreaterThanOrEqualTo(THREADS * IDS_PER_THREAD / BLOCK_SIZE);
+    }
+
+    @Test
+    void blocksAreUsedWithoutGaps() throws Exception {
+        Map<Long, Long> idsPerBlock = new HashMap<>();
+        for (long id : allocateConcurrently()) {
+            idsPerBlock.merge((id - SequenceStub.START) / BLOCK_SIZE, 1L, Long::sum);
+        }
+
+        // Only the block each allocator is still taking ids from may be partly used
+        long partial = idsPerBlock.values().stream().filter(count -> count != BLOCK_SIZE).count();
+        assertThat(partial).isLessThanOrEqualTo(2);
+        assertThat(idsPerBlock.values()).allMatch(count -> count <= BLOCK_SIZE);
+    }
+
+    private List<Long> allocateConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                // Half the threads per allocator, as two concurrent jobs would
+                FeedbackIdAllocator allocator = t % 2 == 0 ? first : second;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long[] ids = new long[IDS_PER_THREAD];
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        ids[i] = allocator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+
+            List<Long> ids = new ArrayList<>(THREADS * IDS_PER_THREAD);
+            for (Future<long[]> future : futures) {
+                for (long id : future.get(60, TimeUnit.SECONDS)) {
+                    ids.add(id);
+                }
+            }
+            return ids;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * seq_feedback_id with INCREMENT BY {@link #BLOCK_SIZE}. Each nextval() takes a little
+     * while, so threads pile up at the block boundary.
+     */
+    private static final class SequenceStub extends JdbcTemplate {
+
+        static final long START = 1;
+
+        private final AtomicLong next = new AtomicLong(START);
+        private final AtomicLong calls = new AtomicLong();
+
+        long blocksReserved() {
+            return calls.get();
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType) {
+            if (sql.contains("increment_by")) {
+                return requiredType.cast(BLOCK_SIZE);
+            }
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(50_000, 200_000));
+            calls.incrementAndGet();
+            return requiredType.cast(next.getAndAdd(BLOCK_SIZE));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package gov.ihd.apiservice.service;
+
+import gov.ihd.apiservice.dto.JobPageDto;
+import gov.ihd.apiservice.dto.JobStatus;
+import gov.ihd.apiservice.dto.ProcessingJobDto;
+import gov.ihd.apiservice.entity.ProcessingJob;
+import gov.ihd.apiservice.repository.ProcessingJobRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cursor pagination over the jobs in memory and, past the oldest of them, over an
+ * in-memory stand-in for the processing_job table
+ */
+class JobProgressServiceTest {
+
+    // Newest first, ties broken by job id, as in the table's page order
+    private static final Comparator<ProcessingJob> PAGE_ORDER = Comparator
+            .comparing(ProcessingJob::getStartTime, Comparator.reverseOrder())
+            .thenComparing(ProcessingJob::getJobId, Comparator.reverseOrder());
+
+    private final Map<String, ProcessingJob> table = new ConcurrentHashMap<>();
+
+    @Test
+    void pagesCoverEveryJobOnceNewestFirst() {
+        JobProgressService service = service(100);
+        for (int i = 0; i < 25; i++) {
+            service.createJob(jobId(i), "file" + i + ".json", 100L, null);
+        }
+
+        List<String> paged = pageThrough(service, 10, null);
+
+        assertThat(paged).hasSize(25).doesNotHaveDuplicates();
+        assertThat(paged).isEqualTo(service.getAllJobs().stream().map(ProcessingJobDto::getJobId).toList());
+        assertThat(paged).isEqualTo(tableOrder(null));
+    }
+
+    @Test
+    void theLastPageHasNoCursor() {
+        JobProgressService service = service(100);
+        for (int i = 0; i < 3; i++) {
+            service.createJob(jobId(i), "file.json", 1L, null);
+        }
+
+        JobPageDto first = service.listJobs(null, 2, null);
+        JobPageDto second = service.listJobs(first.getNextCursor(), 2, null);
+
+        assertThat(first.getJobs()).hasSize(2);
+        assertThat(first.getNextCursor()).isNotNull();
+        assertThat(second.getJobs()).hasSize(1);
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    void filtersByStatus() {
+        JobProgressService service = service(100);
+        for (int i = 0; i < 12; i++) {
+            service.createJob(jobId(i), "file.json", 1L, null);
+            if (i % 3 == 0) {
+                service.completeJob(jobId(i), 10);
+            }
+        }
+
+        assertThat(pageThrough(service, 3, JobStatus.COMPLETED)).isEqualTo(tableOrder(JobStatus.COMPLETED)).hasSize(4);
+        assertThat(pageThrough(service, 5, JobStatus.QUEUED)).isEqualTo(tableOrder(JobStatus.QUEUED)).hasSize(8);
+    }
+
+    @Test
+    void pagesContinueFromTheTablePastTheJobsInMemory() {
+        JobProgressService service = service(5);
+        for (int i = 0; i < 17; i++) {
+            service.createJob(jobId(i), "file.json", 1L, null);
+            service.completeJob(jobId(i), 1);
+        }
+
+        assertThat(service.getAllJobs()).hasSize(5);
+        for (int limit : new int[] {1, 3, 4, 5, 7, 20}) {
+            assertThat(pageThrough(service, limit, null)).as("limit %d", limit).isEqualTo(tableOrder(null)).hasSize(17);
+        }
+        assertThat(pageThrough(service, 4, JobStatus.COMPLETED)).isEqualTo(tableOrder(null));
+    }
+
+    @Test
+    void newJobsDoNotShiftLaterPages() {
+        JobProgressService service = service(100);
+        for (int i = 0; i < 6; i++) {
+            service.createJob(jobId(i), "file.json", 1L, null);
+        }
+        List<String> expected = tableOrder(null);
+
+        JobPageDto first = service.listJobs(null, 3, null);
+        service.createJob("newer", "file.json", 1L, null);
+        JobPageDto second = service.listJobs(first.getNextCursor(), 3, null);
+
+        List<String> paged = new ArrayList<>();
+        first.getJobs().forEach(job -> paged.add(job.getJobId()));
+        second.getJobs().forEach(job -> paged.add(job.getJobId()));
+        assertThat(paged).isEqualTo(expected);
+    }
+
+    @Test
+    void rejectsAMalformedCursor() {
+        JobProgressService service = service(100);
+
+        assertThatThrownBy(() -> service.listJobs("not-a-cursor", 10, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<String> pageThrough(JobProgressService service, int limit, JobStatus status) {
+        List<String> jobIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            JobPageDto page = service.listJobs(cursor, limit, status);
+            assertThat(page.getJobs()).hasSizeLessThanOrEqualTo(limit);
+            page.getJobs().forEach(job -> jobIds.add(job.getJobId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return jobIds;
+    }
+
+    private List<String> tableOrder(JobStatus status) {
+        return table.values().stream()
+                .filter(job -> status == null || job.getStatus() == status)
+                .sorted(PAGE_ORDER)
+                .map(ProcessingJob::getJobId)
+                .toList();
+    }
+
+    private static String jobId(int i) {
+        return "job-" + (char) ('a' + i % 26) + i;
+    }
+
+    private JobProgressService service(int maxJobHistorySize) {
+        ProcessingJobRepository repository = mock(ProcessingJobRepository.class);
+        when(repository.save(any(ProcessingJob.class))).thenAnswer(call -> {
+            ProcessingJob job = call.getArgument(0);
+            table.put(job.getJobId(), job);
+            return job;
+        });
+        when(repository.findPageBefore(any(LocalDateTime.class), anyString(), anyInt())).thenAnswer(call ->
+                pageBefore(null, call.getArgument(0), call.getArgument(1), call.getArgument(2)));
+        when(repository.findPageBeforeWithStatus(anyString(), any(LocalDateTime.class), anyString(), anyInt())).thenAnswer(call ->
+                pageBefore(JobStatus.valueOf(call.getArgument(0)), call.getArgument(1), call.getArgument(2), call.getArgument(3)));
+        return new JobProgressService(mock(JobEventBroadcaster.class), repository, maxJobHistorySize);
+    }
+
+    private List<ProcessingJob> pageBefore(JobStatus status, LocalDateTime startTime, String jobId, int limit) {
+        ProcessingJob from = new ProcessingJob();
+        from.setStartTime(startTime);
+        from.setJobId(jobId);
+        return table.values().stream()
+                .filter(job -> status == null || job.getStatus() == status)
+                .filter(job -> PAGE_ORDER.compare(job, from) > 0)
+                .sorted(PAGE_ORDER)
+                .limit(limit)
+                .toList();
+    }
+}
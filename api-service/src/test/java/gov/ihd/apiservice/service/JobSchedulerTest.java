@@ -0,0 +1,153 @@
+package gov.ihd.apiservice.service;
+
+import gov.ihd.apiservice.exception.JobQueueFullException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class JobSchedulerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final JobProgressService jobProgressService = mock(JobProgressService.class);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void runsAtMostMaxConcurrentJobsAtATime() throws Exception {
+        JobScheduler scheduler = new JobScheduler(executor::execute, jobProgressService, 2, 50, 30);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(10);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        for (int i = 0; i < 10; i++) {
+            scheduler.submit("job" + i, 0, () -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                await(release);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertThat(scheduler.getRunningJobCount()).isEqualTo(2);
+        assertThat(scheduler.getQueuedJobCount()).isEqualTo(8);
+        release.countDown();
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(peak.get()).isEqualTo(2);
+        verify(jobProgressService, timeout(5000).times(10)).startJob(anyString());
+    }
+
+    @Test
+    void queuedJobsStartByPriorityThenArrival() throws Exception {
+        JobScheduler scheduler = new JobScheduler(executor::execute, jobProgressService, 1, 50, 30);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(6);
+
+        assertThat(scheduler.submit("blocker", 0, () -> {
+            await(release);
+            done.countDown();
+        })).isZero();
+        List<Integer> positions = new ArrayList<>();
+        for (String jobId : List.of("low1", "high1", "low2", "urgent", "high2")) {
+            int priority = jobId.startsWith("urgent") ? 9 : jobId.startsWith("high") ? 5 : 0;
+            positions.add(scheduler.submit(jobId, priority, () -> {
+                started.add(jobId);
+                done.countDown();
+            }));
+        }
+
+        // Each job counts the waiting jobs it would leave after
+        assertThat(positions).containsExactly(1, 1, 3, 1, 3);
+        verify(jobProgressService, timeout(5000)).updateQueuePosition("low2", 5);
+        release.countDown();
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(started).containsExactly("urgent", "high1", "high2", "low1", "low2");
+    }
+
+    @Test
+    void refusesJobsOnceTheQueueIsFull() {
+        JobScheduler scheduler = new JobScheduler(executor::execute, jobProgressService, 1, 2, 45);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 3; i++) {
+                scheduler.submit("job" + i, 0, () -> await(release));
+            }
+
+            assertThatThrownBy(() -> scheduler.submit("job3", 0, () -> { }))
+                    .isInstanceOfSatisfying(JobQueueFullException.class,
+                            e -> assertThat(e.getRetryAfterSeconds()).isEqualTo(45));
+            assertThatThrownBy(scheduler::checkCapacity).isInstanceOf(JobQueueFullException.class);
+            assertThat(scheduler.getQueuedJobCount()).isEqualTo(2);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void aRejectedJobFailsAndFreesItsSlot() {
+        JobScheduler scheduler = new JobScheduler(task -> {
+            throw new TaskRejectedException("executor shut down");
+        }, jobProgressService, 1, 50, 30);
+
+        scheduler.submit("job1", 0, () -> { });
+
+        verify(jobProgressService).failJob(eq("job1"), contains("executor shut down"));
+        assertThat(scheduler.getRunningJobCount()).isZero();
+    }
+
+    @Test
+    void slowStatusUpdatesDoNotBlockTheScheduler() throws Exception {
+        JobScheduler scheduler = new JobScheduler(executor::execute, jobProgressService, 2, 50, 30);
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch saved = new CountDownLatch(1);
+        doAnswer(call -> {
+            saving.countDown();
+            await(saved);
+            return null;
+        }).when(jobProgressService).startJob("slow");
+
+        CompletableFuture<Integer> submit = CompletableFuture.supplyAsync(
+                () -> scheduler.submit("slow", 0, () -> { }), executor);
+        assertThat(saving.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // The save of the first job is still running; the scheduler must answer meanwhile
+        CompletableFuture<Integer> other = CompletableFuture.supplyAsync(
+                () -> scheduler.submit("other", 0, () -> { }), executor);
+        assertThat(other.get(5, TimeUnit.SECONDS)).isZero();
+        assertThat(submit).isNotDone();
+        saved.countDown();
+        assertThat(submit.get(5, TimeUnit.SECONDS)).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package gov.ihd.apiservice.service;
+
+import gov.ihd.apiservice.entity.DimLocation;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocationResolverTest {
+
+    private final LocationResolver resolver = new LocationResolver(1000);
+
+    @Test
+    void splitsCityRegionAndCountry() {
+        assertLocation("Iraq", "Iraq", null, null);
+        assertLocation("Baghdad, Iraq", "Iraq", "Baghdad", null);
+        assertLocation("McAllen, Texas, USA", "United States", "McAllen", "Texas");
+        assertLocation("Soho, Westminster, London, UK", "United Kingdom", "Soho", "Westminster, London");
+    }
+
+    @Test
+    void mapsAliasesInAnyCase() {
+        assertLocation("London, uk", "United Kingdom", "London", null);
+        assertLocation("Dubai, U.A.E.", "United Arab Emirates", "Dubai", null);
+        assertLocation("nyc, United States of America", "United States", "New York", null);
+        assertLocation("Riyadh, KSA", "Saudi Arabia", "Riyadh", null);
+    }
+
+    @Test
+    void splitsOnTheArabicComma() {
+        assertLocation("القاهرة، مصر", "Egypt", "Cairo", null);
+        assertLocation("الرياض ،السعودية", "Saudi Arabia", "Riyadh", null);
+        assertLocation("Mosul، Nineveh, Iraq", "Iraq", "Mosul", "Nineveh");
+    }
+
+    @Test
+    void trimsAndCollapsesWhitespace() {
+        assertLocation("  new \t  york  ,\n  usa  ", "United States", "New York", null);
+        assertLocation("Baghdad ,, Iraq", "Iraq", "Baghdad", null);
+    }
+
+    @Test
+    void titleCasesSingleCasePartsButKeepsAbbreviationsAndMixedCase() {
+        assertLocation("SAN FRANCISCO, CA, usa", "United States", "San Francisco", "CA");
+        assertLocation("baghdad, iraq", "Iraq", "Baghdad", null);
+        assertLocation("DeKalb, IL, US", "United States", "DeKalb", "IL");
+        assertLocation("st. john's, o'fallon-east, usa", "United States", "St. John's", "O'Fallon-East");
+    }
+
+    @Test
+    void differentSpellingsShareTheLocationKey() {
+        DimLocation plain = resolver.resolve("London, United Kingdom");
+        DimLocation spelled = resolver.resolve("  LONDON ، u.k. ");
+
+        assertThat(spelled.getLocationKey()).isEqualTo(plain.getLocationKey());
+        assertThat(spelled.getLocationString()).isEqualTo("  LONDON ، u.k. ");
+    }
+
+    @Test
+    void stringsWithoutTextHaveNoLocation() {
+        assertThat(resolver.resolve("")).isNull();
+        assertThat(resolver.resolve("  ,، ,  ")).isNull();
+    }
+
+    @Test
+    void longPartsAreTruncated() {
+        DimLocation location = resolver.resolve("Baghdad, " + "Iraq".repeat(40));
+
+        assertThat(location.getCountry()).hasSize(100);
+    }
+
+    @Test
+    void repeatedStringsReturnTheCachedLocation() {
+        assertThat(resolver.resolve("Basra, Iraq")).isSameAs(resolver.resolve("Basra, Iraq"));
+    }
+
+    private void assertLocation(String locationString, String country, String city, String region) {
+        DimLocation location = resolver.resolve(locationString);
+        assertThat(location.getCountry()).as("country of %s", locationString).isEqualTo(country);
+        assertThat(location.getCity()).as("city of %s", locationString).isEqualTo(city);
+        assertThat(location.getRegion()).as("region of %s", locationString).isEqualTo(region);
+        assertThat(location.getLocationKey())
+                .isEqualTo(DimensionCacheService.locationKey(country, city, region));
+    }
+}
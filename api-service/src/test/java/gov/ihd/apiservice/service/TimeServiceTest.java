@@ -0,0 +1,183 @@
+package gov.ihd.apiservice.service;
+
+import gov.ihd.apiservice.entity.DimTime;
+import gov.ihd.apiservice.repository.DimTimeRepository;
+import gov.ihd.apiservice.repository.DimensionBulkRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TimeServiceTest {
+
+    private final TreeMap<LocalDate, Integer> stored = new TreeMap<>();
+    private final List<Integer> upserts = new ArrayList<>();
+    private final TimeService timeService = timeService(200);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void weeksAndWeekdaysFollowIsoAroundYearEnds() {
+        assertTime(LocalDate.of(2020, 12, 31), 4, 53, false);
+        assertTime(LocalDate.of(2021, 1, 1), 5, 53, false);
+        assertTime(LocalDate.of(2021, 1, 3), 7, 53, true);
+        assertTime(LocalDate.of(2021, 1, 4), 1, 1, false);
+        assertTime(LocalDate.of(2024, 12, 29), 7, 52, true);
+        assertTime(LocalDate.of(2024, 12, 30), 1, 1, false);
+        assertTime(LocalDate.of(2025, 12, 29), 1, 1, false);
+        assertTime(LocalDate.of(2026, 12, 31), 4, 53, false);
+
+        DimTime leapDay = TimeService.buildTimeForDate(LocalDate.of(2024, 2, 29));
+        assertThat(leapDay.getQuarter()).isEqualTo(1);
+        assertThat(leapDay.getMonthName()).isEqualTo("February");
+        assertThat(leapDay.getDayName()).isEqualTo("Thursday");
+    }
+
+    @Test
+    void aMissingDateAddsItsWholeYearOnce() {
+        int timeId = timeService.getTimeId(LocalDate.of(2023, 7, 14));
+
+        assertThat(timeId).isEqualTo(stored.get(LocalDate.of(2023, 7, 14)));
+        assertThat(upserts).containsExactly(365);
+
+        timeService.getTimeId(LocalDate.of(2023, 1, 1));
+        timeService.getTimeId(LocalDate.of(2023, 12, 31));
+        assertThat(upserts).hasSize(1);
+    }
+
+    @Test
+    void extendingFillsTheYearsBetweenInOneUpsert() {
+        timeService.extendTo(List.of(LocalDate.of(2025, 3, 1), LocalDate.of(2022, 11, 5), LocalDate.of(2025, 3, 2)));
+
+        assertThat(upserts).containsExactly(365 + 365 + 366 + 365);
+        for (LocalDate day : List.of(LocalDate.of(2022, 1, 1), LocalDate.of(2024, 2, 29), LocalDate.of(2025, 12, 31))) {
+            assertThat(timeService.getTimeId(day)).isEqualTo(stored.get(day));
+        }
+        assertThat(upserts).hasSize(1);
+    }
+
+    @Test
+    void anEmptyCalendarCoversTheYearsAlreadyStored() {
+        timeService.extendTo(List.of(LocalDate.of(2024, 1, 1)));
+        upserts.clear();
+        TimeService restarted = timeService(200);
+
+        int timeId = restarted.getTimeId(LocalDate.of(2026, 5, 1));
+
+        assertThat(timeId).isEqualTo(stored.get(LocalDate.of(2026, 5, 1)));
+        // 2024 is upserted again, which keeps its ids, so the index covers 2024 to 2026
+        assertThat(upserts).containsExactly(366 + 365 + 365);
+        assertThat(restarted.getTimeId(LocalDate.of(2024, 6, 1))).isEqualTo(stored.get(LocalDate.of(2024, 6, 1)));
+        assertThat(upserts).hasSize(1);
+    }
+
+    @Test
+    void datesFarFromTheCalendarAreResolvedOnTheirOwn() {
+        TimeService service = timeService(5);
+        service.getTimeId(LocalDate.of(2024, 1, 1));
+
+        int outlier = service.getTimeId(LocalDate.of(1900, 1, 1));
+        service.getTimeId(LocalDate.of(1900, 1, 1));
+
+        assertThat(outlier).isEqualTo(stored.get(LocalDate.of(1900, 1, 1)));
+        assertThat(upserts).containsExactly(366, 1);
+        assertThat(stored.firstKey().getYear()).isEqualTo(1900);
+        assertThat(stored.higherKey(LocalDate.of(1900, 1, 1))).isEqualTo(LocalDate.of(2024, 1, 1));
+    }
+
+    @Test
+    void aRolledBackExtensionIsDiscarded() {
+        LocalDate date = LocalDate.of(2023, 4, 1);
+
+        inTransaction(false, () -> {
+            timeService.extendTo(List.of(date));
+            // Resolved from the pending extension inside the transaction
+            assertThat(timeService.getTimeId(date)).isEqualTo(stored.get(date));
+        });
+        assertThat(upserts).hasSize(1);
+
+        timeService.getTimeId(date);
+        assertThat(upserts).hasSize(2);
+    }
+
+    @Test
+    void aCommittedExtensionIsPublished() {
+        LocalDate date = LocalDate.of(2023, 4, 1);
+
+        inTransaction(true, () -> timeService.extendTo(List.of(date, LocalDate.of(2024, 1, 1))));
+        timeService.getTimeId(date);
+        timeService.getTimeId(LocalDate.of(2024, 12, 31));
+
+        assertThat(upserts).hasSize(1);
+    }
+
+    private void assertTime(LocalDate date, int dayOfWeek, int weekOfYear, boolean weekend) {
+        DimTime time = TimeService.buildTimeForDate(date);
+        assertThat(time.getDayOfWeek()).as("day of week of %s", date).isEqualTo(dayOfWeek);
+        assertThat(time.getWeekOfYear()).as("week of %s", date).isEqualTo(weekOfYear);
+        assertThat(time.getIsWeekend()).as("weekend %s", date).isEqualTo(weekend);
+        assertThat(time.getYear()).isEqualTo(date.getYear());
+    }
+
+    private static void inTransaction(boolean commit, Runnable work) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            work.run();
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            if (commit) {
+                synchronizations.forEach(TransactionSynchronization::afterCommit);
+            }
+            int status = commit ? TransactionSynchronization.STATUS_COMMITTED : TransactionSynchronization.STATUS_ROLLED_BACK;
+            synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * A service over an in-memory dim_time: the upsert keeps the id of a date already stored
+     */
+    private TimeService timeService(int maxYears) {
+        DimTimeRepository timeRepository = mock(DimTimeRepository.class);
+        when(timeRepository.findFirstByOrderByFullDateAsc())
+                .thenAnswer(call -> Optional.ofNullable(stored.isEmpty() ? null : time(stored.firstKey())));
+        when(timeRepository.findFirstByOrderByFullDateDesc())
+                .thenAnswer(call -> Optional.ofNullable(stored.isEmpty() ? null : time(stored.lastKey())));
+
+        DimensionBulkRepository bulkRepository = mock(DimensionBulkRepository.class);
+        when(bulkRepository.upsertTimes(anyList())).thenAnswer(call -> {
+            List<DimTime> rows = call.getArgument(0);
+            upserts.add(rows.size());
+            Map<LocalDate, Integer> ids = new HashMap<>();
+            for (DimTime row : rows) {
+                ids.put(row.getFullDate(), stored.computeIfAbsent(row.getFullDate(), date -> stored.size() + 1));
+            }
+            return ids;
+        });
+        return new TimeService(timeRepository, bulkRepository, maxYears);
+    }
+
+    private static DimTime time(LocalDate date) {
+        DimTime time = new DimTime();
+        time.setFullDate(date);
+        return time;
+    }
+}
@@ -0,0 +1,70 @@
+package gov.ihd.apiservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CalendarIndexTest {
+
+    @Test
+    void coversEveryDayOfItsYears() {
+        CalendarIndex index = CalendarIndex.of(2023, 2024, ids(2023, 2024));
+
+        assertThat(index.size()).isEqualTo(365 + 366);
+        assertThat(index.timeId(LocalDate.of(2023, 1, 1))).isEqualTo(id(LocalDate.of(2023, 1, 1)));
+        assertThat(index.timeId(LocalDate.of(2024, 2, 29))).isEqualTo(id(LocalDate.of(2024, 2, 29)));
+        assertThat(index.timeId(LocalDate.of(2024, 12, 31))).isEqualTo(id(LocalDate.of(2024, 12, 31)));
+        assertThat(index.timeId(LocalDate.of(2022, 12, 31))).isZero();
+        assertThat(index.timeId(LocalDate.of(2025, 1, 1))).isZero();
+    }
+
+    @Test
+    void extendingKeepsTheIdsAlreadyIndexed() {
+        CalendarIndex index = CalendarIndex.of(2024, 2024, ids(2024, 2024));
+
+        CalendarIndex later = index.extend(2026, 2026, ids(2025, 2026));
+        CalendarIndex earlier = later.extend(2020, 2020, ids(2020, 2023));
+
+        assertThat(later.getFirstYear()).isEqualTo(2024);
+        assertThat(later.getLastYear()).isEqualTo(2026);
+        assertThat(earlier.getFirstYear()).isEqualTo(2020);
+        for (LocalDate day = LocalDate.of(2020, 1, 1); day.getYear() <= 2026; day = day.plusDays(1)) {
+            assertThat(earlier.timeId(day)).as(day.toString()).isEqualTo(id(day));
+        }
+        // The original is unchanged
+        assertThat(index.timeId(LocalDate.of(2025, 6, 1))).isZero();
+    }
+
+    @Test
+    void rejectsAYearWithAMissingDay() {
+        Map<LocalDate, Integer> ids = ids(2024, 2024);
+        ids.remove(LocalDate.of(2024, 12, 31));
+
+        assertThatThrownBy(() -> CalendarIndex.of(2024, 2024, ids))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("2024-12-31");
+    }
+
+    @Test
+    void emptyIndexResolvesNothing() {
+        assertThat(CalendarIndex.EMPTY.isEmpty()).isTrue();
+        assertThat(CalendarIndex.EMPTY.timeId(LocalDate.of(2024, 1, 1))).isZero();
+    }
+
+    private static Map<LocalDate, Integer> ids(int firstYear, int lastYear) {
+        Map<LocalDate, Integer> ids = new HashMap<>();
+        for (LocalDate day = LocalDate.of(firstYear, 1, 1); day.getYear() <= lastYear; day = day.plusDays(1)) {
+            ids.put(day, id(day));
+        }
+        return ids;
+    }
+
+    private static int id(LocalDate date) {
+        return (int) date.toEpochDay();
+    }
+}
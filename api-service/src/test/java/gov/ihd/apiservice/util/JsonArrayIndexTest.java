@@ -0,0 +1,76 @@
+package gov.ihd.apiservice.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonArrayIndexTest {
+
+    private static final String ARRAY = """
+            [
+              {"id": 1, "text": "braces } and ] in a string", "tags": [{"a": 1}]},
+              {"id": 2, "text": "an escaped quote \\" then {"},
+              {"id": 3, "user": {"location": {"city": "Baghdad"}}},
+            ]
+            """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsTheStartOfEachTopLevelObject() throws Exception {
+        Path file = write(ARRAY);
+
+        JsonArrayIndex index = JsonArrayIndex.build(file);
+
+        assertThat(index.getObjectCount()).isEqualTo(3);
+        for (int i = 0; i < 3; i++) {
+            assertThat(ARRAY.substring((int) index.getObjectStart(i))).startsWith("{\"id\": " + (i + 1));
+        }
+        assertThat(ARRAY.substring((int) index.getArrayEnd())).isEqualTo(",\n]\n");
+    }
+
+    @Test
+    void objectsSpanningMappingWindowsAreIndexedOnce() throws Exception {
+        Path file = write(ARRAY);
+        JsonArrayIndex whole = JsonArrayIndex.build(file);
+
+        for (int windowSize = 1; windowSize <= 16; windowSize++) {
+            JsonArrayIndex windowed = JsonArrayIndex.build(file, windowSize);
+
+            assertThat(windowed.getObjectCount()).as("window %d", windowSize).isEqualTo(3);
+            for (int i = 0; i < 3; i++) {
+                assertThat(windowed.getObjectStart(i)).isEqualTo(whole.getObjectStart(i));
+            }
+            assertThat(windowed.getArrayEnd()).isEqualTo(whole.getArrayEnd());
+        }
+    }
+
+    @Test
+    void emptyArrayHasNoObjects() throws Exception {
+        JsonArrayIndex index = JsonArrayIndex.build(write(" [ ] "));
+
+        assertThat(index.getObjectCount()).isZero();
+        assertThat(index.getArrayEnd()).isZero();
+    }
+
+    @Test
+    void rejectsATopLevelObject() throws Exception {
+        Path file = write("{\"id\": 1}");
+
+        assertThatThrownBy(() -> JsonArrayIndex.build(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("top-level JSON array");
+    }
+
+    private Path write(String content) throws Exception {
+        return Files.writeString(dir.resolve("feedback.json"), content, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,37 @@
+-- Natural key constraints needed by the chunk-level dimension upserts
+SET search_path TO ihd_analytics;
+
+-- Locations are identified by (country, city, region); NULL and empty parts are treated alike
+-- so that INSERT ... ON CONFLICT DO NOTHING can deduplicate them. Concurrent inserts made
+-- before the index existed may have stored a location more than once: the lowest
+-- location_id of each key is kept, fact rows are pointed at it and the others are deleted.
+DO $$
+BEGIN
+    IF to_regclass('ihd_analytics.uk_dim_location_natural_key') IS NOT NULL THEN
+        RETURN;
+    END IF;
+    -- Blocks new locations until the index is in place
+    LOCK TABLE dim_location IN SHARE ROW EXCLUSIVE MODE;
+
+    CREATE TEMP TABLE location_duplicates ON COMMIT DROP AS
+        SELECT location_id, keep_id
+        FROM (SELECT location_id,
+                     min(location_id) OVER (PARTITION BY COALESCE(country, ''), COALESCE(city, ''),
+                                                         COALESCE(region, '')) AS keep_id
+              FROM dim_location) ranked
+        WHERE location_id <> keep_id;
+
+    IF EXISTS (SELECT 1 FROM location_duplicates) THEN
+        UPDATE fact_feedback f SET location_id = d.keep_id
+        FROM location_duplicates d
+        WHERE f.location_id = d.location_id;
+        DELETE FROM dim_location l USING location_duplicates d WHERE l.location_id = d.location_id;
+        RAISE NOTICE 'Merged % duplicate locations', (SELECT count(*) FROM location_duplicates);
+    END IF;
+
+    CREATE UNIQUE INDEX uk_dim_location_natural_key
+        ON dim_location (COALESCE(country, ''), COALESCE(city, ''), COALESCE(region, ''));
+END;
+$$;
+
+ANALYZE dim_location;
@@ -0,0 +1,44 @@
+-- Staging tables for the set-based merge load mode (app.batch.writer=staging)
+-- Each job COPYs its raw rows here, keyed by job_id, and merges them into the
+-- star schema with one INSERT ... SELECT ... ON CONFLICT DO NOTHING per table.
+-- The tables are UNLOGGED: staged rows are transient and are rebuilt by re-running the job.
+SET search_path TO ihd_analytics;
+
+CREATE UNLOGGED TABLE IF NOT EXISTS stg_fact_feedback (
+    job_id VARCHAR(100) NOT NULL,
+    feedback_id BIGINT NOT NULL,
+    tweet_id VARCHAR(50) NOT NULL,
+    time_id INT NOT NULL,
+    user_id VARCHAR(50) NOT NULL,
+    location_id INT,
+    issue_id INT,
+    platform VARCHAR(50) NOT NULL,
+    text TEXT,
+    language VARCHAR(10),
+    retweet_count INT,
+    reply_count INT,
+    like_count INT,
+    quote_count INT,
+    bookmark_count INT,
+    impression_count INT,
+    created_date DATE NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_stg_fact_feedback_job_id ON stg_fact_feedback(job_id);
+
+CREATE UNLOGGED TABLE IF NOT EXISTS stg_bridge_feedback_hashtag (
+    job_id VARCHAR(100) NOT NULL,
+    feedback_id BIGINT NOT NULL,
+    hashtag_id INT NOT NULL,
+    created_date DATE NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_stg_bridge_feedback_hashtag_job_id ON stg_bridge_feedback_hashtag(job_id);
+
+CREATE UNLOGGED TABLE IF NOT EXISTS stg_bridge_feedback_agency (
+    job_id VARCHAR(100) NOT NULL,
+    feedback_id BIGINT NOT NULL,
+    agency_id INT NOT NULL,
+    created_date DATE NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_stg_bridge_feedback_agency_job_id ON stg_bridge_feedback_agency(job_id);
+
+GRANT ALL PRIVILEGES ON stg_fact_feedback, stg_bridge_feedback_hashtag, stg_bridge_feedback_agency TO ihd_user;
@@ -0,0 +1,6 @@
+-- Feedback ids are reserved in blocks: each nextval() hands the application a range of
+-- INCREMENT ids (see FeedbackIdAllocator), so the sequence is only hit once per block.
+-- The application reads the block size from pg_sequences, so it only needs changing here.
+SET search_path TO ihd_analytics;
+
+ALTER SEQUENCE seq_feedback_id INCREMENT BY 10000;
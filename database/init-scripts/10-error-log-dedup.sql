@@ -0,0 +1,7 @@
+-- Errors of a job that share a stack trace are stored with its hash; only the first one
+-- carries the rendered stack_trace (see ErrorLogService).
+SET search_path TO ihd_analytics;
+
+ALTER TABLE job_error_log ADD COLUMN IF NOT EXISTS stack_hash VARCHAR(16);
+
+CREATE INDEX IF NOT EXISTS idx_job_error_log_job_hash ON job_error_log(job_id, stack_hash);
@@ -0,0 +1,18 @@
+-- Job history written through by JobProgressService. Pages are read newest first with
+-- keyset pagination on (start_time, job_id), so both indexes lead with start_time DESC.
+SET search_path TO ihd_analytics;
+
+CREATE TABLE IF NOT EXISTS processing_job (
+    job_id VARCHAR(100) PRIMARY KEY,
+    filename VARCHAR(255) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    start_time TIMESTAMP NOT NULL,
+    end_time TIMESTAMP,
+    records_processed INTEGER NOT NULL DEFAULT 0,
+    error_message TEXT,
+    file_size BIGINT,
+    checksum VARCHAR(8)
+);
+
+CREATE INDEX IF NOT EXISTS idx_processing_job_start ON processing_job(start_time DESC, job_id COLLATE "C" DESC);
+CREATE INDEX IF NOT EXISTS idx_processing_job_status_start ON processing_job(status, start_time DESC, job_id COLLATE "C" DESC);
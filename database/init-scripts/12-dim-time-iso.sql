@@ -0,0 +1,86 @@
+-- One definition of the time dimension for SQL and Java (TimeService.buildTimeForDate):
+-- ISO 8601 day of week (1 = Monday .. 7 = Sunday), ISO week of the week-based year, and
+-- English month and day names without the blank padding of TO_CHAR. dim_time is filled a
+-- whole year at a time, as the application's calendar index expects.
+SET search_path TO ihd_analytics;
+
+CREATE OR REPLACE FUNCTION populate_dim_time(start_date DATE, end_date DATE)
+RETURNS VOID AS $$
+    INSERT INTO dim_time (
+        full_date,
+        year,
+        quarter,
+        month,
+        month_name,
+        day,
+        day_of_week,
+        day_name,
+        week_of_year,
+        is_weekend,
+        is_holiday
+    )
+    SELECT
+        d,
+        EXTRACT(YEAR FROM d),
+        EXTRACT(QUARTER FROM d),
+        EXTRACT(MONTH FROM d),
+        TO_CHAR(d, 'FMMonth'),
+        EXTRACT(DAY FROM d),
+        EXTRACT(ISODOW FROM d),
+        TO_CHAR(d, 'FMDay'),
+        EXTRACT(WEEK FROM d),
+        EXTRACT(ISODOW FROM d) IN (6, 7),
+        false  -- Default is_holiday to false, can be updated later
+    FROM (SELECT generate_series(start_date, end_date, INTERVAL '1 day')::DATE AS d) AS days
+    ORDER BY d
+    ON CONFLICT (full_date) DO NOTHING;
+$$ LANGUAGE sql;
+
+-- Fill the whole year of a missing date
+CREATE OR REPLACE FUNCTION get_time_id(
+    p_timestamp TIMESTAMP
+) RETURNS INT AS $$
+DECLARE
+    v_time_id INT;
+    v_date DATE;
+BEGIN
+    v_date := date_trunc('day', p_timestamp)::DATE;
+
+    SELECT time_id INTO v_time_id
+    FROM dim_time
+    WHERE full_date = v_date;
+
+    IF v_time_id IS NULL THEN
+        PERFORM populate_dim_time(date_trunc('year', v_date)::DATE,
+                                  (date_trunc('year', v_date) + INTERVAL '1 year - 1 day')::DATE);
+
+        SELECT time_id INTO v_time_id
+        FROM dim_time
+        WHERE full_date = v_date;
+    END IF;
+
+    RETURN v_time_id;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Rows written by the old definitions: Sunday-based day_of_week, padded names, and week
+-- numbers of the JVM's default locale
+UPDATE dim_time
+SET month_name = TO_CHAR(full_date, 'FMMonth'),
+    day_of_week = EXTRACT(ISODOW FROM full_date),
+    day_name = TO_CHAR(full_date, 'FMDay'),
+    week_of_year = EXTRACT(WEEK FROM full_date),
+    is_weekend = EXTRACT(ISODOW FROM full_date) IN (6, 7)
+WHERE (month_name, day_of_week, day_name, week_of_year, is_weekend) IS DISTINCT FROM
+      (TO_CHAR(full_date, 'FMMonth'), EXTRACT(ISODOW FROM full_date)::INT, TO_CHAR(full_date, 'FMDay'),
+       EXTRACT(WEEK FROM full_date)::INT, EXTRACT(ISODOW FROM full_date) IN (6, 7));
+
+-- Complete the years that only have some of their dates
+DO $$
+DECLARE
+    v_year INT;
+BEGIN
+    FOR v_year IN SELECT DISTINCT year FROM dim_time LOOP
+        PERFORM populate_dim_time(make_date(v_year, 1, 1), make_date(v_year, 12, 31));
+    END LOOP;
+END $$;
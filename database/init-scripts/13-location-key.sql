@@ -0,0 +1,45 @@
+-- Single-column natural key of dim_location, built like DimensionCacheService.locationKey:
+-- country, city and region joined by the unit separator, NULL and empty parts alike. The
+-- application caches location ids by this key and upserts on its unique index, which
+-- replaces the expression index of 07-dimension-natural-keys.sql.
+SET search_path TO ihd_analytics;
+
+ALTER TABLE dim_location
+    ADD COLUMN IF NOT EXISTS location_key VARCHAR(310)
+    GENERATED ALWAYS AS (COALESCE(country::TEXT, '') || chr(31) || COALESCE(city::TEXT, '') || chr(31)
+                         || COALESCE(region::TEXT, '')) STORED;
+
+-- Merge locations stored more than once under the same key before indexing it, as in
+-- 07-dimension-natural-keys.sql; staged fact rows of unfinished jobs are pointed at the kept
+-- row as well
+DO $$
+BEGIN
+    IF to_regclass('ihd_analytics.uk_dim_location_key') IS NOT NULL THEN
+        RETURN;
+    END IF;
+    LOCK TABLE dim_location IN SHARE ROW EXCLUSIVE MODE;
+
+    CREATE TEMP TABLE location_key_duplicates ON COMMIT DROP AS
+        SELECT location_id, keep_id
+        FROM (SELECT location_id, min(location_id) OVER (PARTITION BY location_key) AS keep_id
+              FROM dim_location) ranked
+        WHERE location_id <> keep_id;
+
+    IF EXISTS (SELECT 1 FROM location_key_duplicates) THEN
+        UPDATE fact_feedback f SET location_id = d.keep_id
+        FROM location_key_duplicates d
+        WHERE f.location_id = d.location_id;
+        UPDATE stg_fact_feedback s SET location_id = d.keep_id
+        FROM location_key_duplicates d
+        WHERE s.location_id = d.location_id;
+        DELETE FROM dim_location l USING location_key_duplicates d WHERE l.location_id = d.location_id;
+        RAISE NOTICE 'Merged % duplicate locations', (SELECT count(*) FROM location_key_duplicates);
+    END IF;
+
+    CREATE UNIQUE INDEX uk_dim_location_key ON dim_location (location_key);
+END;
+$$;
+
+DROP INDEX IF EXISTS uk_dim_location_natural_key;
+
+ANALYZE dim_location;
@@ -0,0 +1,197 @@
+-- Per-day summary tables behind the analytics views. A job only changes the days of the
+-- feedback it loads, so after each job the application recomputes those days from the fact
+-- table with refresh_feedback_aggregates(dates) instead of refreshing the materialized views
+-- over the whole history. The former materialized views become plain views over the summary
+-- tables with the same names and columns. refresh_all_materialized_views() now rebuilds
+-- every day, for recovery.
+SET search_path TO ihd_analytics;
+
+-- Feedback without a language is summarized under ''
+CREATE TABLE IF NOT EXISTS agg_daily_feedback (
+    full_date DATE NOT NULL,
+    language VARCHAR(10) NOT NULL,
+    feedback_count BIGINT NOT NULL,
+    total_retweets BIGINT NOT NULL,
+    total_replies BIGINT NOT NULL,
+    total_likes BIGINT NOT NULL,
+    total_quotes BIGINT NOT NULL,
+    total_bookmarks BIGINT NOT NULL,
+    total_impressions BIGINT NOT NULL,
+    total_interactions BIGINT NOT NULL,
+    PRIMARY KEY (full_date, language)
+);
+
+CREATE TABLE IF NOT EXISTS agg_daily_issue (
+    full_date DATE NOT NULL,
+    language VARCHAR(10) NOT NULL,
+    issue_id INT NOT NULL,
+    feedback_count BIGINT NOT NULL,
+    total_interactions BIGINT NOT NULL,
+    PRIMARY KEY (full_date, language, issue_id)
+);
+
+CREATE TABLE IF NOT EXISTS agg_daily_agency (
+    full_date DATE NOT NULL,
+    language VARCHAR(10) NOT NULL,
+    agency_id INT NOT NULL,
+    mention_count BIGINT NOT NULL,
+    total_retweets BIGINT NOT NULL,
+    total_replies BIGINT NOT NULL,
+    total_likes BIGINT NOT NULL,
+    total_interactions BIGINT NOT NULL,
+    PRIMARY KEY (full_date, language, agency_id)
+);
+
+CREATE TABLE IF NOT EXISTS agg_daily_hashtag (
+    full_date DATE NOT NULL,
+    language VARCHAR(10) NOT NULL,
+    hashtag_id INT NOT NULL,
+    usage_count BIGINT NOT NULL,
+    total_interactions BIGINT NOT NULL,
+    PRIMARY KEY (full_date, language, hashtag_id)
+);
+
+-- Recompute the summary rows of the given days. Refreshes are serialized, so two jobs that
+-- finish together cannot both delete and then both insert the same day.
+CREATE OR REPLACE FUNCTION refresh_feedback_aggregates(p_dates DATE[])
+RETURNS VOID AS $$
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('ihd_analytics.refresh_feedback_aggregates'));
+
+    DELETE FROM agg_daily_feedback WHERE full_date = ANY(p_dates);
+    DELETE FROM agg_daily_issue WHERE full_date = ANY(p_dates);
+    DELETE FROM agg_daily_agency WHERE full_date = ANY(p_dates);
+    DELETE FROM agg_daily_hashtag WHERE full_date = ANY(p_dates);
+
+    INSERT INTO agg_daily_feedback
+    SELECT
+        ff.created_date,
+        COALESCE(ff.language, ''),
+        COUNT(*),
+        COALESCE(SUM(ff.retweet_count), 0),
+        COALESCE(SUM(ff.reply_count), 0),
+        COALESCE(SUM(ff.like_count), 0),
+        COALESCE(SUM(ff.quote_count), 0),
+        COALESCE(SUM(ff.bookmark_count), 0),
+        COALESCE(SUM(ff.impression_count), 0),
+        COALESCE(SUM(ff.retweet_count + ff.reply_count + ff.like_count), 0)
+    FROM fact_feedback ff
+    WHERE ff.created_date = ANY(p_dates)
+    GROUP BY ff.created_date, COALESCE(ff.language, '');
+
+    INSERT INTO agg_daily_issue
+    SELECT
+        ff.created_date,
+        COALESCE(ff.language, ''),
+        ff.issue_id,
+        COUNT(*),
+        COALESCE(SUM(ff.retweet_count + ff.reply_count + ff.like_count), 0)
+    FROM fact_feedback ff
+    WHERE ff.created_date = ANY(p_dates)
+      AND ff.issue_id IS NOT NULL
+    GROUP BY ff.created_date, COALESCE(ff.language, ''), ff.issue_id;
+
+    INSERT INTO agg_daily_agency
+    SELECT
+        ff.created_date,
+        COALESCE(ff.language, ''),
+        bfa.agency_id,
+        COUNT(DISTINCT bfa.feedback_id),
+        COALESCE(SUM(ff.retweet_count), 0),
+        COALESCE(SUM(ff.reply_count), 0),
+        COALESCE(SUM(ff.like_count), 0),
+        COALESCE(SUM(ff.retweet_count + ff.reply_count + ff.like_count), 0)
+    FROM fact_feedback ff
+    JOIN bridge_feedback_agency bfa ON bfa.feedback_id = ff.feedback_id AND bfa.created_date = ff.created_date
+    WHERE ff.created_date = ANY(p_dates)
+    GROUP BY ff.created_date, COALESCE(ff.language, ''), bfa.agency_id;
+
+    INSERT INTO agg_daily_hashtag
+    SELECT
+        ff.created_date,
+        COALESCE(ff.language, ''),
+        bfh.hashtag_id,
+        COUNT(DISTINCT bfh.feedback_id),
+        COALESCE(SUM(ff.retweet_count + ff.reply_count + ff.like_count), 0)
+    FROM fact_feedback ff
+    JOIN bridge_feedback_hashtag bfh ON bfh.feedback_id = ff.feedback_id AND bfh.created_date = ff.created_date
+    WHERE ff.created_date = ANY(p_dates)
+    GROUP BY ff.created_date, COALESCE(ff.language, ''), bfh.hashtag_id;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Full rebuild, one month of days at a time
+CREATE OR REPLACE FUNCTION refresh_all_materialized_views()
+RETURNS VOID AS $$
+DECLARE
+    v_month DATE;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('ihd_analytics.refresh_feedback_aggregates'));
+
+    TRUNCATE agg_daily_feedback, agg_daily_issue, agg_daily_agency, agg_daily_hashtag;
+    FOR v_month IN
+        SELECT DISTINCT date_trunc('month', created_date)::DATE FROM fact_feedback ORDER BY 1
+    LOOP
+        PERFORM refresh_feedback_aggregates(ARRAY(
+            SELECT generate_series(v_month, (v_month + INTERVAL '1 month - 1 day')::DATE, INTERVAL '1 day')::DATE));
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- The analytics views keep their names and columns for existing dashboards
+DROP MATERIALIZED VIEW IF EXISTS mv_daily_feedback_count;
+DROP MATERIALIZED VIEW IF EXISTS mv_issue_distribution;
+DROP MATERIALIZED VIEW IF EXISTS mv_agency_performance;
+DROP MATERIALIZED VIEW IF EXISTS mv_top_hashtags;
+
+CREATE OR REPLACE VIEW mv_daily_feedback_count AS
+SELECT
+    full_date,
+    SUM(feedback_count)::BIGINT AS feedback_count,
+    SUM(total_retweets)::BIGINT AS total_retweets,
+    SUM(total_replies)::BIGINT AS total_replies,
+    SUM(total_likes)::BIGINT AS total_likes,
+    SUM(total_quotes)::BIGINT AS total_quotes,
+    SUM(total_bookmarks)::BIGINT AS total_bookmarks,
+    SUM(total_impressions)::BIGINT AS total_impressions,
+    SUM(total_interactions)::BIGINT AS total_interactions
+FROM agg_daily_feedback
+GROUP BY full_date;
+
+CREATE OR REPLACE VIEW mv_issue_distribution AS
+SELECT
+    di.issue_class_code,
+    SUM(a.feedback_count)::BIGINT AS feedback_count,
+    SUM(a.total_interactions)::BIGINT AS total_interactions
+FROM agg_daily_issue a
+JOIN dim_issue di ON a.issue_id = di.issue_id
+GROUP BY di.issue_class_code;
+
+CREATE OR REPLACE VIEW mv_agency_performance AS
+SELECT
+    da.agency_name,
+    da.sector,
+    da.department,
+    SUM(a.mention_count)::BIGINT AS mention_count,
+    SUM(a.total_retweets)::BIGINT AS total_retweets,
+    SUM(a.total_replies)::BIGINT AS total_replies,
+    SUM(a.total_likes)::BIGINT AS total_likes,
+    SUM(a.total_interactions)::BIGINT AS total_interactions
+FROM agg_daily_agency a
+JOIN dim_agency da ON a.agency_id = da.agency_id
+GROUP BY da.agency_name, da.sector, da.department;
+
+CREATE OR REPLACE VIEW mv_top_hashtags AS
+SELECT
+    dh.hashtag_text,
+    SUM(a.usage_count)::BIGINT AS usage_count,
+    SUM(a.total_interactions)::BIGINT AS total_interactions
+FROM agg_daily_hashtag a
+JOIN dim_hashtag dh ON a.hashtag_id = dh.hashtag_id
+GROUP BY dh.hashtag_text;
+
+-- Summarize the feedback loaded before this script
+SELECT refresh_all_materialized_views();
+
+GRANT ALL PRIVILEGES ON agg_daily_feedback, agg_daily_issue, agg_daily_agency, agg_daily_hashtag TO ihd_user;
+GRANT SELECT ON mv_daily_feedback_count, mv_issue_distribution, mv_agency_performance, mv_top_hashtags TO ihd_user;
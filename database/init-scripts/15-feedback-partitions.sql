@@ -0,0 +1,135 @@
+-- Rolling monthly partitions of fact_feedback. The application creates the partitions of the
+-- coming months on a schedule and any missing month before a chunk is written, through
+-- ensure_feedback_partitions(from, to). Feedback of a month without a partition lands in the
+-- DEFAULT partition instead of failing, and is moved into its own partition when that month
+-- is created. Months older than the retention window can be moved to the ihd_archive schema
+-- with archive_feedback_partition(month).
+SET search_path TO ihd_analytics;
+
+CREATE SCHEMA IF NOT EXISTS ihd_archive;
+
+-- Bridge rows of archived months; the archived fact partitions keep their own names
+CREATE TABLE IF NOT EXISTS ihd_archive.bridge_feedback_hashtag (LIKE bridge_feedback_hashtag);
+CREATE TABLE IF NOT EXISTS ihd_archive.bridge_feedback_agency (LIKE bridge_feedback_agency);
+
+CREATE TABLE IF NOT EXISTS fact_feedback_default PARTITION OF fact_feedback DEFAULT;
+
+CREATE OR REPLACE FUNCTION feedback_partition_name(p_month DATE)
+RETURNS TEXT AS $$
+    SELECT 'fact_feedback_' || to_char(date_trunc('month', p_month), '"y"YYYY"m"MM');
+$$ LANGUAGE sql IMMUTABLE;
+
+-- Whether ihd_analytics has a table of that name. Unlike to_regclass(), which reads the
+-- session's catalog cache, this sees a partition another session committed while we waited
+-- for the partitions lock.
+CREATE OR REPLACE FUNCTION feedback_partition_exists(p_name TEXT)
+RETURNS BOOLEAN AS $$
+    SELECT EXISTS (SELECT 1 FROM pg_class
+                   WHERE relname = p_name AND relnamespace = 'ihd_analytics'::regnamespace);
+$$ LANGUAGE sql STABLE;
+
+-- Create the partition of the month of p_month unless it exists. Rows of that month already
+-- in the DEFAULT partition are moved into it together with their bridge rows.
+-- Returns whether the partition was created.
+CREATE OR REPLACE FUNCTION ensure_feedback_partition(p_month DATE)
+RETURNS BOOLEAN AS $$
+DECLARE
+    v_start DATE := date_trunc('month', p_month)::DATE;
+    v_end DATE := (date_trunc('month', p_month) + INTERVAL '1 month')::DATE;
+    v_name TEXT := feedback_partition_name(p_month);
+BEGIN
+    IF to_regclass('ihd_analytics.' || v_name) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+
+    PERFORM pg_advisory_xact_lock(hashtext('ihd_analytics.fact_feedback_partitions'));
+    IF feedback_partition_exists(v_name) THEN
+        RETURN FALSE;
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM fact_feedback_default WHERE created_date >= v_start AND created_date < v_end) THEN
+        LOCK TABLE fact_feedback IN ACCESS EXCLUSIVE MODE;
+
+        DROP TABLE IF EXISTS moved_feedback, moved_hashtag_bridges, moved_agency_bridges;
+        CREATE TEMP TABLE moved_feedback ON COMMIT DROP AS
+            SELECT * FROM fact_feedback_default WHERE created_date >= v_start AND created_date < v_end;
+        CREATE TEMP TABLE moved_hashtag_bridges ON COMMIT DROP AS
+            SELECT b.* FROM bridge_feedback_hashtag b
+            JOIN moved_feedback f ON f.feedback_id = b.feedback_id AND f.created_date = b.created_date;
+        CREATE TEMP TABLE moved_agency_bridges ON COMMIT DROP AS
+            SELECT b.* FROM bridge_feedback_agency b
+            JOIN moved_feedback f ON f.feedback_id = b.feedback_id AND f.created_date = b.created_date;
+
+        -- Cascades to the bridge rows saved above
+        DELETE FROM fact_feedback_default WHERE created_date >= v_start AND created_date < v_end;
+        EXECUTE format('CREATE TABLE %I PARTITION OF fact_feedback FOR VALUES FROM (%L) TO (%L)',
+                       v_name, v_start, v_end);
+        INSERT INTO fact_feedback SELECT * FROM moved_feedback;
+        INSERT INTO bridge_feedback_hashtag SELECT * FROM moved_hashtag_bridges;
+        INSERT INTO bridge_feedback_agency SELECT * FROM moved_agency_bridges;
+
+        RAISE NOTICE 'Moved % rows of % out of the default partition', (SELECT count(*) FROM moved_feedback), v_name;
+    ELSE
+        EXECUTE format('CREATE TABLE %I PARTITION OF fact_feedback FOR VALUES FROM (%L) TO (%L)',
+                       v_name, v_start, v_end);
+    END IF;
+    RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Create the partitions of every month from p_from to p_to, returning how many were created
+CREATE OR REPLACE FUNCTION ensure_feedback_partitions(p_from DATE, p_to DATE)
+RETURNS INT AS $$
+DECLARE
+    v_month DATE;
+    v_created INT := 0;
+BEGIN
+    FOR v_month IN
+        SELECT generate_series(date_trunc('month', p_from), date_trunc('month', p_to), INTERVAL '1 month')::DATE
+    LOOP
+        IF ensure_feedback_partition(v_month) THEN
+            v_created := v_created + 1;
+        END IF;
+    END LOOP;
+    RETURN v_created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Detach the partition of the month of p_month and move it to the ihd_archive schema, with
+-- its bridge rows. The agg_daily_* summary rows of the month are kept, so the analytics views
+-- still cover it. Returns whether a partition was archived.
+CREATE OR REPLACE FUNCTION archive_feedback_partition(p_month DATE)
+RETURNS BOOLEAN AS $$
+DECLARE
+    v_name TEXT := feedback_partition_name(p_month);
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('ihd_analytics.fact_feedback_partitions'));
+    IF NOT feedback_partition_exists(v_name) THEN
+        RETURN FALSE;
+    END IF;
+
+    -- The bridge tables reference fact_feedback, so their rows must go before the detach
+    EXECUTE format('INSERT INTO ihd_archive.bridge_feedback_hashtag SELECT b.* FROM bridge_feedback_hashtag b '
+                   'JOIN %I f ON f.feedback_id = b.feedback_id AND f.created_date = b.created_date', v_name);
+    EXECUTE format('DELETE FROM bridge_feedback_hashtag b USING %I f '
+                   'WHERE f.feedback_id = b.feedback_id AND f.created_date = b.created_date', v_name);
+    EXECUTE format('INSERT INTO ihd_archive.bridge_feedback_agency SELECT b.* FROM bridge_feedback_agency b '
+                   'JOIN %I f ON f.feedback_id = b.feedback_id AND f.created_date = b.created_date', v_name);
+    EXECUTE format('DELETE FROM bridge_feedback_agency b USING %I f '
+                   'WHERE f.feedback_id = b.feedback_id AND f.created_date = b.created_date', v_name);
+
+    EXECUTE format('ALTER TABLE fact_feedback DETACH PARTITION %I', v_name);
+    IF to_regclass('ihd_archive.' || v_name) IS NULL THEN
+        EXECUTE format('ALTER TABLE %I SET SCHEMA ihd_archive', v_name);
+    ELSE
+        -- The month was loaded again after an earlier archive
+        EXECUTE format('INSERT INTO ihd_archive.%I SELECT * FROM %I', v_name, v_name);
+        EXECUTE format('DROP TABLE %I', v_name);
+    END IF;
+    RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+
+GRANT USAGE ON SCHEMA ihd_archive TO ihd_user;
+GRANT ALL PRIVILEGES ON ALL TABLES IN SCHEMA ihd_archive TO ihd_user;
+GRANT ALL PRIVILEGES ON fact_feedback_default TO ihd_user;
@@ -115,6 +115,9 @@ const FileUploader = ({ onUploadSuccess, onUploadError }) => {
     onDrop, 
     accept: {
       'application/json': ['.json'],
+      'application/x-ndjson': ['.ndjson', '.jsonl'],
+      'application/gzip': ['.json.gz', '.ndjson.gz', '.jsonl.gz'],
+      'application/zstd': ['.json.zst', '.ndjson.zst', '.jsonl.zst'],
     },
     disabled: isUploading,
     multiple: false,
@@ -143,9 +146,9 @@ const FileUploader = ({ onUploadSuccess, onUploadError }) => {
       <DropzoneContainer {...getRootProps()} isDragActive={isDragActive}>
         <input {...getInputProps()} />
         {isDragActive ? (
-          <UploadText>Drop the JSON file here...</UploadText>
+          <UploadText>Drop the JSON / NDJSON file here...</UploadText>
         ) : (
-          <UploadText>Drag & drop a JSON file here, or click to select a file</UploadText>
+          <UploadText>Drag & drop a JSON or NDJSON file here, or click to select a file</UploadText>
         )}
         {currentFile && (
           <FileInfo>
@@ -27,6 +27,7 @@ const JobItem = styled.div`
     if (props.status === 'COMPLETED') return '#e8f5e9';
     if (props.status === 'FAILED') return '#ffebee';
     if (props.status === 'PROCESSING') return '#e3f2fd';
+    if (props.status === 'QUEUED') return '#fff8e1';
     return '#fff';
   }};
   
@@ -58,6 +59,7 @@ const StatusBadge = styled.span`
     if (props.status === 'COMPLETED') return '#4caf50';
     if (props.status === 'FAILED') return '#f44336';
     if (props.status === 'PROCESSING') return '#2196f3';
+    if (props.status === 'QUEUED') return '#ff9800';
     return '#9e9e9e';
   }};
 `;
@@ -134,7 +136,9 @@ const JobsList = () => {
                 <JobTitle>
                   {job.filename || 'Unknown file'}
                 </JobTitle>
-                <StatusBadge status={job.status}>{job.status}</StatusBadge>
+                <StatusBadge status={job.status}>
+                  {job.status === 'QUEUED' && job.queuePosition ? `QUEUED #${job.queuePosition}` : job.status}
+                </StatusBadge>
               </div>
               <JobDetail><strong>Job ID:</strong> {job.id}</JobDetail>
               <JobDetail><strong>Started:</strong> {job.startTime ? formatDate(job.startTime) : 'N/A'}</JobDetail>
@@ -8,29 +8,37 @@ export const API_CONFIG = {
   ENDPOINTS: {
     UPLOAD: '/api/v1/feedback/upload',
     JOBS: '/api/v1/jobs',
-    JOB_STATUS: (id) => `/api/v1/jobs/${id}`
+    JOB_STATUS: (id) => `/api/v1/jobs/${id}`,
+    JOB_EVENTS: '/api/v1/jobs/events'
   }
 };
 
 // Upload Configuration
 export const UPLOAD_CONFIG = {
   MAX_FILE_SIZE: 100 * 1024 * 1024, // 100MB
-  ALLOWED_EXTENSIONS: ['.json'],
-  MIME_TYPES: ['application/json']
+  ALLOWED_EXTENSIONS: [
+    '.json', '.ndjson', '.jsonl',
+    '.json.gz', '.ndjson.gz', '.jsonl.gz',
+    '.json.zst', '.ndjson.zst', '.jsonl.zst'
+  ],
+  MIME_TYPES: ['application/json', 'application/x-ndjson', 'application/gzip', 'application/zstd']
 };
 
 // UI Configuration
 export const UI_CONFIG = {
   JOB_POLLING_INTERVAL: parseInt(process.env.REACT_APP_POLLING_INTERVAL) || 10000, // 10 seconds
   TOAST_AUTO_CLOSE: 5000, // 5 seconds
-  USE_MOCK_API: process.env.REACT_APP_USE_MOCK_API === 'true'
+  USE_MOCK_API: process.env.REACT_APP_USE_MOCK_API === 'true',
+  // Receive job updates over Server-Sent Events instead of polling
+  USE_JOB_EVENTS: process.env.REACT_APP_USE_JOB_EVENTS !== 'false'
 };
 
 // Log configuration on startup (for debugging)
 console.log('Frontend configuration:', {
   API_BASE_URL: API_CONFIG.BASE_URL,
   USE_MOCK_API: UI_CONFIG.USE_MOCK_API,
-  POLLING_INTERVAL: UI_CONFIG.JOB_POLLING_INTERVAL
+  POLLING_INTERVAL: UI_CONFIG.JOB_POLLING_INTERVAL,
+  USE_JOB_EVENTS: UI_CONFIG.USE_JOB_EVENTS
 });
 
 export default {
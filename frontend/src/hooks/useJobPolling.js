@@ -1,10 +1,16 @@
 import { useState, useEffect, useCallback } from 'react';
-import { getProcessingJobs } from '../services/api';
+import { getProcessingJobs, openJobEvents } from '../services/api';
 import { formatErrorMessage } from '../utils/errorHandling';
 import { UI_CONFIG } from '../config';
 
+const JOB_EVENT_TYPES = ['progress', 'completed', 'failed'];
+
+const byStartTimeDesc = (a, b) => new Date(b.startTime) - new Date(a.startTime);
+
 /**
- * Custom hook for fetching and polling job status
+ * Custom hook for fetching job status and keeping it up to date. While live updates are on,
+ * jobs are streamed from the server over Server-Sent Events; if the stream is unavailable or
+ * refused, the hook falls back to polling.
  * @param {number} pollInterval - Interval in ms between polling
  * @returns {Object} State and control functions for jobs
  */
@@ -14,6 +20,7 @@ const useJobPolling = (pollInterval = UI_CONFIG.JOB_POLLING_INTERVAL) => {
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState(null);
   const [polling, setPolling] = useState(true);
+  const [streaming, setStreaming] = useState(true);
 
   const fetchJobs = useCallback(async () => {
     try {
@@ -29,18 +36,58 @@ const useJobPolling = (pollInterval = UI_CONFIG.JOB_POLLING_INTERVAL) => {
     }
   }, []);
 
+  // Replace or add a job received from the event stream
+  const applyJobEvent = useCallback((event) => {
+    const job = JSON.parse(event.data);
+    setJobs(prevJobs => {
+      const others = prevJobs.filter(existing => existing.jobId !== job.jobId);
+      return [job, ...others].sort(byStartTimeDesc);
+    });
+    setLoading(false);
+    setError(null);
+  }, []);
+
   // Manual refresh function
   const refresh = useCallback(() => {
     return fetchJobs();
   }, [fetchJobs]);
 
-  // Toggle polling on/off
+  // Toggle live updates on/off
   const togglePolling = useCallback(() => {
     setPolling(prevState => !prevState);
   }, []);
 
-  // Set up polling
+  // Subscribe to job events; the server sends the current state of all jobs first
+  useEffect(() => {
+    if (!polling || !streaming) return;
+
+    const source = openJobEvents();
+    if (!source) {
+      setStreaming(false);
+      return;
+    }
+
+    // Every (re)connect starts with a full snapshot, so drop what we had
+    source.onopen = () => {
+      setJobs([]);
+      setLoading(false);
+    };
+    JOB_EVENT_TYPES.forEach(type => source.addEventListener(type, applyJobEvent));
+    source.onerror = () => {
+      // EventSource reconnects by itself unless the server refused the stream
+      if (source.readyState === EventSource.CLOSED) {
+        console.warn('Job event stream unavailable, falling back to polling');
+        setStreaming(false);
+      }
+    };
+
+    return () => source.close();
+  }, [applyJobEvent, polling, streaming]);
+
+  // Set up polling when events are not available
   useEffect(() => {
+    if (streaming && polling) return;
+
     // Initial fetch
     fetchJobs();
 
@@ -53,7 +100,7 @@ const useJobPolling = (pollInterval = UI_CONFIG.JOB_POLLING_INTERVAL) => {
 
     // Clean up interval on unmount or when polling changes
     return () => clearInterval(interval);
-  }, [fetchJobs, pollInterval, polling]);
+  }, [fetchJobs, pollInterval, polling, streaming]);
 
   return {
     jobs,
@@ -56,4 +56,12 @@ export const getJobStatus = (jobId) => {
   return api.get(API_CONFIG.ENDPOINTS.JOB_STATUS(jobId));
 };
 
+// Open a Server-Sent Events stream of job updates; returns null when events are not available
+export const openJobEvents = () => {
+  if (USE_MOCK_API || !UI_CONFIG.USE_JOB_EVENTS || typeof EventSource === 'undefined') {
+    return null;
+  }
+  return new EventSource(`${API_CONFIG.BASE_URL}${API_CONFIG.ENDPOINTS.JOB_EVENTS}`);
+};
+
 export default api;
@@ -1,5 +1,5 @@
 // Error handling utility functions
-import { UI_CONFIG } from '../config';
+import { UI_CONFIG, UPLOAD_CONFIG } from '../config';
 
 /**
  * Format error message from API response
@@ -48,13 +48,15 @@ export const formatErrorMessage = (error) => {
 export const validateJsonFile = (file) => {
   return new Promise((resolve, reject) => {
     // Check file extension
-    if (!file.name.toLowerCase().endsWith('.json')) {
-      reject('File must have a .json extension');
+    const name = file.name.toLowerCase();
+    if (!UPLOAD_CONFIG.ALLOWED_EXTENSIONS.some(extension => name.endsWith(extension))) {
+      reject(`File must have one of these extensions: ${UPLOAD_CONFIG.ALLOWED_EXTENSIONS.join(', ')}`);
       return;
     }
     
-    // For larger files, we might only want to check the extension
-    if (file.size > 10 * 1024 * 1024) { // 10MB
+    // Only plain .json files can be checked with JSON.parse; for NDJSON, compressed
+    // and larger files we only check the extension
+    if (!name.endsWith('.json') || file.size > 10 * 1024 * 1024) { // 10MB
       resolve(true);
       return;
     }